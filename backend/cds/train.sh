@@ -0,0 +1,53 @@
+#!/usr/bin/env bash
+# Records the AppCDS archive for the cds image (mvn -Pcds verify).
+#
+# The archive only maps in when the JVM, the class path and the jar
+# modification times match what it was recorded with, so the training run uses
+# the base image's java and lays the jars out as jib does: the application jar
+# in /app/classpath, the dependencies in /app/libs, all stamped one second past
+# the epoch. The application starts against a throwaway Postgres, so Flyway,
+# Hibernate and the pool load the classes they load in production, and exits
+# once started (atom.startup.exit-after-start).
+#
+# usage: train.sh <target directory> <application jar> <base image>
+set -euo pipefail
+
+target=$1
+jar=$2
+image=$3
+app=$target/cds-app
+name=atom-cds-$$
+
+mkdir -p "$app/classpath" "$app/cds"
+cp "$target/$jar" "$app/classpath/$jar"
+rm -f "$app/cds/app.jsa"
+find "$app/classpath" "$app/libs" -type f -exec touch -d @1 {} +
+
+cleanup() {
+    docker rm -f "$name-db" >/dev/null 2>&1 || true
+    docker network rm "$name" >/dev/null 2>&1 || true
+}
+trap cleanup EXIT
+
+docker network create "$name" >/dev/null
+docker run -d --name "$name-db" --network "$name" --network-alias db \
+    -e POSTGRES_USER=atom -e POSTGRES_PASSWORD=password -e POSTGRES_DB=customer \
+    postgres:16.2 >/dev/null
+until docker exec "$name-db" pg_isready -h 127.0.0.1 -U atom -d customer >/dev/null 2>&1; do
+    sleep 1
+done
+
+docker run --rm --network "$name" --user "$(id -u):$(id -g)" \
+    -v "$(cd "$app" && pwd):/app" -w /app \
+    --platform linux/amd64 \
+    "$image" \
+    java -XX:ArchiveClassesAtExit=/app/cds/app.jsa -Dspring.aot.enabled=true \
+    -jar "/app/classpath/$jar" \
+    --spring.datasource.url=jdbc:postgresql://db:5432/customer \
+    --spring.datasource.username=atom \
+    --spring.datasource.password=password \
+    --atom.startup.exit-after-start=true \
+    --atom.faker.enabled=false
+
+test -s "$app/cds/app.jsa"
+echo "Recorded $app/cds/app.jsa"
@@ -0,0 +1,37 @@
+package com.atom.fullstack;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Closes the context and exits as soon as it has started when
+ * {@code atom.startup.exit-after-start} is set. The CDS training run in
+ * {@code cds/train.sh} uses it to record the classes a startup loads; Spring
+ * Framework 6.1 has {@code spring.context.exit=onRefresh} for this.
+ * <p>
+ * The property is read when the event arrives rather than used as a condition,
+ * since AOT processing would settle a condition at build time.
+ */
+@Component
+@Slf4j
+public class ExitAfterStartupListener implements ApplicationListener<ApplicationStartedEvent> {
+
+    private final boolean exitAfterStart;
+
+    public ExitAfterStartupListener(@Value("${atom.startup.exit-after-start:false}") boolean exitAfterStart) {
+        this.exitAfterStart = exitAfterStart;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationStartedEvent event) {
+        if (!exitAfterStart) {
+            return;
+        }
+        log.info("Started in {} ms, exiting", event.getTimeTaken().toMillis());
+        System.exit(SpringApplication.exit(event.getApplicationContext(), () -> 0));
+    }
+}
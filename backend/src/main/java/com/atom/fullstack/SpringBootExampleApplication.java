@@ -3,6 +3,7 @@ package com.atom.fullstack;
 import com.atom.fullstack.customer.Customer;
 import com.atom.fullstack.customer.CustomerRepository;
 import com.github.javafaker.Faker;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
@@ -15,9 +16,14 @@ public class SpringBootExampleApplication {
 		SpringApplication.run(SpringBootExampleApplication.class, args);
 		// pull request 
 	}
+	// Faker loads a few hundred classes and its YAML, skip it where nobody wants the sample customer
 	@Bean
-	CommandLineRunner runner(CustomerRepository customerRepository){
+	CommandLineRunner runner(CustomerRepository customerRepository,
+							 @Value("${atom.faker.enabled:true}") boolean fakerEnabled){
 		return args -> {
+			if (!fakerEnabled) {
+				return;
+			}
 			Faker faker = new Faker();
 			Customer customer = Customer.builder()
 					.name(faker.name().fullName())
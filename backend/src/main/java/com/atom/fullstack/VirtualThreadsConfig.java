@@ -0,0 +1,58 @@
+package com.atom.fullstack;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs Tomcat requests and async work (the NDJSON export, {@code @Async}
+ * methods) on virtual threads when {@code atom.virtual-threads.enabled} is set.
+ * Blocking JDBC calls then park a cheap virtual thread instead of holding one
+ * of 200 workers, so the request concurrency limit becomes the connection pool:
+ * size it with {@code spring.datasource.hikari.maximum-pool-size} and bound the
+ * wait with {@code spring.datasource.hikari.connection-timeout}.
+ * <p>
+ * The build targets Java 17, so the executor is looked up reflectively and
+ * startup fails when the runtime is older than 21.
+ */
+@Configuration
+@ConditionalOnProperty(name = "atom.virtual-threads.enabled", havingValue = "true")
+@Slf4j
+public class VirtualThreadsConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService virtualThreadExecutor() {
+        int feature = Runtime.version().feature();
+        if (feature < 21) {
+            throw new IllegalStateException(
+                    "atom.virtual-threads.enabled needs Java 21 or later, running on " + feature);
+        }
+        try {
+            ExecutorService executor = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+            log.info("Serving requests on virtual threads");
+            return executor;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not create a virtual thread executor", e);
+        }
+    }
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandler(ExecutorService virtualThreadExecutor) {
+        return protocolHandler -> protocolHandler.setExecutor(virtualThreadExecutor);
+    }
+
+    @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME, "taskExecutor"})
+    public AsyncTaskExecutor applicationTaskExecutor(ExecutorService virtualThreadExecutor) {
+        return new TaskExecutorAdapter(virtualThreadExecutor);
+    }
+}
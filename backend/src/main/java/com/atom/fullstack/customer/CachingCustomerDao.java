@@ -0,0 +1,293 @@
+package com.atom.fullstack.customer;
+
+import com.atom.fullstack.replica.PrimaryPin;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Read-through cache of customers by id in front of another {@link CustomerDao}.
+ * Misses are cached too, for a shorter time, so polling an unknown id does not
+ * reach the database on every request. Every write through this DAO evicts the
+ * entries it could have made stale.
+ * <p>
+ * Entries are futures so a load never runs inside the cache's map lock: that
+ * would pin a virtual thread to its carrier for the length of the query. A
+ * write that evicts an id while it is loading drops the load, so it cannot put
+ * back the row as it was before the write. Loads always read the primary, for
+ * the same reason.
+ * <p>
+ * Writes made by other instances reach the cache through a
+ * {@link CustomerCacheInvalidator}. While it cannot tell whether it missed any,
+ * the cache is bypassed.
+ */
+class CachingCustomerDao extends DelegatingCustomerDao implements CustomerCacheInvalidator.Target {
+
+    private final AsyncCache<Long, Optional<Customer>> cache;
+    private volatile boolean bypassed;
+
+    CachingCustomerDao(CustomerDao delegate, CustomerDaoProperties.Cache properties) {
+        super(delegate);
+        long foundNanos = properties.expireAfterWrite().toNanos();
+        long notFoundNanos = properties.notFoundExpireAfterWrite().toNanos();
+        // Caffeine evicts with W-TinyLFU once the size bound is reached
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.maximumSize())
+                .expireAfter(new Expiry<Long, Optional<Customer>>() {
+                    @Override
+                    public long expireAfterCreate(Long id, Optional<Customer> customer, long currentTime) {
+                        return customer.isPresent() ? foundNanos : notFoundNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Long id, Optional<Customer> customer, long currentTime,
+                                                  long currentDuration) {
+                        return expireAfterCreate(id, customer, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(Long id, Optional<Customer> customer, long currentTime,
+                                                long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .buildAsync();
+    }
+
+    Cache<Long, Optional<Customer>> cache() {
+        return cache.synchronous();
+    }
+
+    /**
+     * Drops these ids, including loads still running, which then are not kept.
+     */
+    @Override
+    public void invalidate(Collection<Long> ids) {
+        cache().invalidateAll(ids);
+    }
+
+    @Override
+    public void invalidateAll() {
+        cache().invalidateAll();
+    }
+
+    /**
+     * While bypassed, reads go to the database and nothing is cached.
+     */
+    @Override
+    public void bypass(boolean bypassed) {
+        this.bypassed = bypassed;
+    }
+
+    boolean bypassed() {
+        return bypassed;
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Long id) {
+        if (bypassed) {
+            return delegate().selectCustomerById(id);
+        }
+        CompletableFuture<Optional<Customer>> loading = new CompletableFuture<>();
+        // the mapping function only hands over the future, the query runs below it
+        CompletableFuture<Optional<Customer>> cached = cache.get(id, (key, executor) -> loading);
+        if (cached != loading) {
+            return join(cached);
+        }
+        Optional<Customer> customer;
+        try {
+            // a replica could refill an id a write just evicted with the old row
+            customer = PrimaryPin.call(() -> delegate().selectCustomerById(id));
+        } catch (RuntimeException e) {
+            // a failed future is removed by the cache, the next call retries
+            loading.completeExceptionally(e);
+            throw e;
+        }
+        loading.complete(customer);
+        return customer;
+    }
+
+    /**
+     * Cached ids are answered from the cache and all the others are loaded with
+     * one query, then cached like single lookups, misses included.
+     */
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Long> ids) {
+        if (bypassed) {
+            return delegate().selectCustomersByIds(ids);
+        }
+        CompletableFuture<Map<Long, Optional<Customer>>> loading = new CompletableFuture<>();
+        List<Long> toLoad = new ArrayList<>();
+        // as above, the bulk mapping function only hands over the future
+        CompletableFuture<Map<Long, Optional<Customer>>> cached = cache.getAll(ids, (keys, executor) -> {
+            toLoad.addAll(keys);
+            return loading;
+        });
+        if (!toLoad.isEmpty()) {
+            Map<Long, Optional<Customer>> loaded = new HashMap<>();
+            try {
+                toLoad.forEach(id -> loaded.put(id, Optional.empty()));
+                PrimaryPin.call(() -> delegate().selectCustomersByIds(toLoad))
+                        .forEach(customer -> loaded.put(customer.getId(), Optional.of(customer)));
+            } catch (RuntimeException e) {
+                loading.completeExceptionally(e);
+                throw e;
+            }
+            loading.complete(loaded);
+        }
+        return join(cached).values().stream()
+                .flatMap(Optional::stream)
+                .toList();
+    }
+
+    /**
+     * Narrowed from a cached row when there is one. A projection is never
+     * cached itself, it would not answer a lookup of the whole customer.
+     */
+    @Override
+    public Optional<CustomerProjection> selectCustomerProjectionById(Long id, CustomerFields fields) {
+        Optional<Customer> cached = bypassed ? null : cache().getIfPresent(id);
+        if (cached != null) {
+            return cached.map(customer -> CustomerProjection.of(customer, fields));
+        }
+        return delegate().selectCustomerProjectionById(id, fields);
+    }
+
+    /**
+     * Cached ids are narrowed from the cache as above, the others read with
+     * one projection query.
+     */
+    @Override
+    public List<CustomerProjection> selectCustomerProjectionsByIds(Collection<Long> ids, CustomerFields fields) {
+        if (bypassed) {
+            return delegate().selectCustomerProjectionsByIds(ids, fields);
+        }
+        List<CustomerProjection> projections = new ArrayList<>(ids.size());
+        List<Long> uncached = new ArrayList<>();
+        for (Long id : ids) {
+            Optional<Customer> cached = cache().getIfPresent(id);
+            if (cached == null) {
+                uncached.add(id);
+            } else {
+                cached.ifPresent(customer -> projections.add(CustomerProjection.of(customer, fields)));
+            }
+        }
+        if (!uncached.isEmpty()) {
+            projections.addAll(delegate().selectCustomerProjectionsByIds(uncached, fields));
+        }
+        return projections;
+    }
+
+    /**
+     * Answered from a cached row when there is one, so a conditional GET of a
+     * cached customer never reaches the database.
+     */
+    @Override
+    public Optional<Long> selectCustomerVersion(Long id) {
+        Optional<Customer> cached = bypassed ? null : cache().getIfPresent(id);
+        if (cached != null) {
+            return cached.map(Customer::getVersion);
+        }
+        return delegate().selectCustomerVersion(id);
+    }
+
+    /**
+     * Loads the row through {@link #selectCustomerById}, whose loads a write
+     * can drop, rather than putting a miss after the fact: an insert landing
+     * between our query and the put would be hidden until the miss expires.
+     * Reading a row by id costs about what the existence check does.
+     */
+    @Override
+    public boolean existsCustomerById(Long id) {
+        if (bypassed) {
+            return delegate().existsCustomerById(id);
+        }
+        return selectCustomerById(id).isPresent();
+    }
+
+    @Override
+    public boolean insertCustomer(Customer customer) {
+        try {
+            return delegate().insertCustomer(customer);
+        } finally {
+            evictInserted(List.of(customer));
+        }
+    }
+
+    @Override
+    public void insertCustomers(List<Customer> customers) {
+        try {
+            delegate().insertCustomers(customers);
+        } finally {
+            evictInserted(customers);
+        }
+    }
+
+    @Override
+    public int insertCustomersIfEmailAbsent(List<Customer> customers) {
+        try {
+            return delegate().insertCustomersIfEmailAbsent(customers);
+        } finally {
+            evictInserted(customers);
+        }
+    }
+
+    @Override
+    public boolean deleteCustomer(Long id) {
+        try {
+            return delegate().deleteCustomer(id);
+        } finally {
+            cache().invalidate(id);
+        }
+    }
+
+    @Override
+    public boolean deleteCustomerIfVersion(Long id, Long version) {
+        try {
+            return delegate().deleteCustomerIfVersion(id, version);
+        } finally {
+            cache().invalidate(id);
+        }
+    }
+
+    @Override
+    public Optional<Customer> updateCustomer(Customer update) {
+        try {
+            return delegate().updateCustomer(update);
+        } finally {
+            cache().invalidate(update.getId());
+        }
+    }
+
+    // waiting on a future parks a virtual thread instead of pinning it
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    // a cached miss for a new id is stale; a customer left without an id was not stored
+    private void evictInserted(List<Customer> customers) {
+        cache().invalidateAll(customers.stream()
+                .map(Customer::getId)
+                .filter(Objects::nonNull)
+                .toList());
+    }
+}
@@ -1,9 +1,11 @@
 package com.atom.fullstack.customer;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 
 @Entity
@@ -18,7 +20,9 @@ import lombok.NoArgsConstructor;
 )
 public class Customer {
     @Id
-    @SequenceGenerator(name = "customer_id_seq", sequenceName = "customer_id_seq", allocationSize = 1)
+    // the sequence increments by 50, see CustomerIdAllocator
+    @SequenceGenerator(name = "customer_id_seq", sequenceName = "customer_id_seq",
+            allocationSize = CustomerIdAllocator.BLOCK_SIZE)
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "customer_id_seq")
     private Long id;
     @Column(nullable = false)
@@ -27,6 +31,16 @@ public class Customer {
     private String email;
     @Column(nullable = false)
     private Integer age;
+    // exposed to clients as the ETag, not as part of the body
+    @Version
+    @Column(nullable = false)
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    private Long version;
+
+    public Customer(Long id, String name, String email, Integer age){
+        this(id, name, email, age, null);
+    }
 
     public Customer(String name, String email, Integer age){
         this.name = name;
@@ -0,0 +1,9 @@
+package com.atom.fullstack.customer;
+
+/**
+ * Customers whose age falls in {@code [fromAge, fromAge + width)}, with the
+ * youngest and oldest of them and their summed ages, so buckets can be folded
+ * into overall statistics without going back to the table.
+ */
+public record CustomerAgeBucket(int fromAge, long customers, int minAge, int maxAge, long ageSum) {
+}
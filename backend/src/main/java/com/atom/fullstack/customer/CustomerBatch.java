@@ -0,0 +1,10 @@
+package com.atom.fullstack.customer;
+
+import java.util.List;
+
+/**
+ * Customers in the order their ids were asked for, and the ids that have no
+ * customer.
+ */
+public record CustomerBatch(List<Customer> customers, List<Long> missingIds) {
+}
@@ -0,0 +1,6 @@
+package com.atom.fullstack.customer;
+
+import java.util.List;
+
+public record CustomerBatchRequest(List<Long> ids) {
+}
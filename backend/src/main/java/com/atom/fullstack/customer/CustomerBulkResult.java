@@ -0,0 +1,21 @@
+package com.atom.fullstack.customer;
+
+public record CustomerBulkResult(int index, String email, CustomerBulkStatus status, String message) {
+
+    static CustomerBulkResult created(int index, String email) {
+        return new CustomerBulkResult(index, email, CustomerBulkStatus.CREATED, null);
+    }
+
+    static CustomerBulkResult duplicate(int index, String email, String message) {
+        return new CustomerBulkResult(index, email, CustomerBulkStatus.DUPLICATE, message);
+    }
+
+    static CustomerBulkResult invalid(int index, String email) {
+        return new CustomerBulkResult(index, email, CustomerBulkStatus.INVALID, "name, email and age are required");
+    }
+
+    static CustomerBulkResult malformed(int index, int firstNotRegistered) {
+        return new CustomerBulkResult(index, null, CustomerBulkStatus.MALFORMED,
+                "Malformed customer, nothing from index " + firstNotRegistered + " on was registered");
+    }
+}
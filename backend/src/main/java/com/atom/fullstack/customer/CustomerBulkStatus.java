@@ -0,0 +1,8 @@
+package com.atom.fullstack.customer;
+
+public enum CustomerBulkStatus {
+    CREATED,
+    DUPLICATE,
+    INVALID,
+    MALFORMED
+}
@@ -0,0 +1,187 @@
+package com.atom.fullstack.customer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Keeps the caches of this instance, the {@link CachingCustomerDao} and the
+ * {@link CustomerResponseCacheFilter} when they are on, coherent with the
+ * writes of every other instance, reactive ones included. The triggers of V8 send the ids a committed statement changed on
+ * the {@code customer_changes} channel; they only exist once an instance has
+ * installed them (V9), which this does before every {@code LISTEN}. It
+ * listens on a connection of its own, outside the pool, and drops those ids
+ * from every cache.
+ * The connection has to reach the primary, replicas do not relay
+ * notifications.
+ * <p>
+ * Notifications sent while nobody listens are lost, so until the first
+ * {@code LISTEN} and whenever the connection is lost the caches are bypassed,
+ * and after every {@code LISTEN} they are flushed before they are used again. The
+ * connection is checked every half {@code max-staleness}, which bounds how
+ * long a silently dead connection leaves stale entries in use.
+ */
+@Slf4j
+class CustomerCacheInvalidator implements AutoCloseable {
+
+    static final String CHANNEL = "customer_changes";
+    // sent instead of ids when a statement changed too many rows, or on truncate
+    static final String EVERYTHING = "*";
+
+    private final List<Target> caches;
+    private final DataSource connections;
+    private final int checkMillis;
+    private final int checkTimeoutSeconds;
+    private final long reconnectDelayMillis;
+    private final Thread listener;
+    private final Counter invalidatedCustomers;
+    private final Counter flushes;
+    private volatile boolean running = true;
+    private volatile boolean listening;
+    private volatile Connection connection;
+
+    CustomerCacheInvalidator(List<Target> caches, DataSource connections,
+                             CustomerDaoProperties.Invalidation properties, MeterRegistry meterRegistry) {
+        this.caches = List.copyOf(caches);
+        this.connections = connections;
+        this.checkMillis = (int) Math.max(1, properties.maxStaleness().toMillis() / 2);
+        this.checkTimeoutSeconds = (int) Math.max(1, properties.maxStaleness().toSeconds() / 2);
+        this.reconnectDelayMillis = properties.reconnectDelay().toMillis();
+        this.listener = new Thread(this::listen, "customer-cache-invalidation");
+        listener.setDaemon(true);
+        this.invalidatedCustomers = Counter.builder("customer.cache.invalidations")
+                .description("Customers dropped from the cache after a write on any instance")
+                .tag("scope", "customer")
+                .register(meterRegistry);
+        this.flushes = Counter.builder("customer.cache.invalidations")
+                .description("Whole cache flushes, after a reconnect or a write too large to list")
+                .tag("scope", "all")
+                .register(meterRegistry);
+        Gauge.builder("customer.cache.listening", this, invalidator -> invalidator.listening ? 1 : 0)
+                .description("1 while the cache hears about every write, 0 while it is bypassed")
+                .register(meterRegistry);
+        bypass(true);
+    }
+
+    void start() {
+        listener.start();
+    }
+
+    boolean listening() {
+        return listening;
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = connections.getConnection()) {
+                this.connection = connection;
+                try (Statement statement = connection.createStatement()) {
+                    // returns once the writes that could not see the triggers are done
+                    statement.execute("SELECT install_customer_notify_triggers()");
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                // anything cached so far may have missed its notification
+                flush();
+                bypass(false);
+                listening = true;
+                log.info("Listening on {}, the customer caches are in use", CHANNEL);
+                receive(connection);
+            } catch (SQLException | RuntimeException e) {
+                if (running) {
+                    log.warn("Lost the connection listening on {}, bypassing the customer caches", CHANNEL, e);
+                }
+            } finally {
+                listening = false;
+                bypass(true);
+            }
+            try {
+                Thread.sleep(reconnectDelayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void receive(Connection connection) throws SQLException {
+        PGConnection pgConnection = connection.unwrap(PGConnection.class);
+        long lastCheck = System.nanoTime();
+        while (running) {
+            // returns early with whatever arrived, an empty array after checkMillis
+            for (PGNotification notification : pgConnection.getNotifications(checkMillis)) {
+                apply(notification.getParameter());
+            }
+            if ((System.nanoTime() - lastCheck) / 1_000_000 >= checkMillis) {
+                if (!connection.isValid(checkTimeoutSeconds)) {
+                    throw new SQLException("Connection listening on " + CHANNEL + " did not answer");
+                }
+                lastCheck = System.nanoTime();
+            }
+        }
+    }
+
+    void apply(String payload) {
+        if (EVERYTHING.equals(payload)) {
+            flush();
+            return;
+        }
+        List<Long> ids = Arrays.stream(payload.split(","))
+                .map(Long::valueOf)
+                .toList();
+        caches.forEach(cache -> cache.invalidate(ids));
+        invalidatedCustomers.increment(ids.size());
+    }
+
+    private void flush() {
+        caches.forEach(Target::invalidateAll);
+        flushes.increment();
+    }
+
+    private void bypass(boolean bypassed) {
+        caches.forEach(cache -> cache.bypass(bypassed));
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        listener.interrupt();
+        Connection current = connection;
+        if (current != null) {
+            try {
+                // unblocks getNotifications, which does not notice the interrupt
+                current.close();
+            } catch (SQLException e) {
+                log.debug("Closing the connection listening on {} failed", CHANNEL, e);
+            }
+        }
+    }
+
+    /**
+     * A cache of customers this keeps coherent.
+     */
+    interface Target {
+
+        /**
+         * Drops what these customers changed.
+         */
+        void invalidate(Collection<Long> ids);
+
+        void invalidateAll();
+
+        /**
+         * While bypassed, nothing is served from or put in the cache.
+         */
+        void bypass(boolean bypassed);
+    }
+}
@@ -0,0 +1,29 @@
+package com.atom.fullstack.customer;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.time.Instant;
+
+/**
+ * A committed change to one customer, as recorded in the outbox. A
+ * {@link Type#RESET} has no customer: the table was truncated, or the changes
+ * a subscriber asked to resume from are no longer kept, so it has to read the
+ * customers again.
+ */
+public record CustomerChange(@JsonIgnore CustomerChangeCursor cursor,
+                             Type type,
+                             Long customerId,
+                             Long version,
+                             Instant changedAt) {
+
+    static CustomerChange reset(CustomerChangeCursor cursor) {
+        return new CustomerChange(cursor, Type.RESET, null, null, Instant.now());
+    }
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED,
+        RESET
+    }
+}
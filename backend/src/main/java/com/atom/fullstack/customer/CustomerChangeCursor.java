@@ -0,0 +1,40 @@
+package com.atom.fullstack.customer;
+
+import com.atom.fullstack.exception.RequestValidationException;
+
+import java.util.Comparator;
+
+/**
+ * Position in the customer outbox: the writing transaction's id, then the row
+ * id within it. Sent to clients as the SSE event id and read back from
+ * {@code Last-Event-ID}.
+ */
+public record CustomerChangeCursor(long txId, long id) implements Comparable<CustomerChangeCursor> {
+
+    static final CustomerChangeCursor START = new CustomerChangeCursor(0, 0);
+
+    private static final char SEPARATOR = '-';
+    private static final Comparator<CustomerChangeCursor> ORDER = Comparator
+            .comparingLong(CustomerChangeCursor::txId)
+            .thenComparingLong(CustomerChangeCursor::id);
+
+    @Override
+    public int compareTo(CustomerChangeCursor other) {
+        return ORDER.compare(this, other);
+    }
+
+    public String encode() {
+        return Long.toString(txId) + SEPARATOR + id;
+    }
+
+    public static CustomerChangeCursor decode(String token) {
+        try {
+            int separator = token.indexOf(SEPARATOR);
+            return new CustomerChangeCursor(
+                    Long.parseLong(token.substring(0, separator)),
+                    Long.parseLong(token.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new RequestValidationException("Invalid Last-Event-ID");
+        }
+    }
+}
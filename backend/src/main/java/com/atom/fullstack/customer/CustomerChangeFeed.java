@@ -0,0 +1,262 @@
+package com.atom.fullstack.customer;
+
+import com.atom.fullstack.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tails the customer outbox and fans the changes out to Server-Sent Events
+ * subscribers, so consumers stop polling the customer list to find changes.
+ * One poll per interval serves every subscriber; a {@link CustomerChangedEvent}
+ * polls right away, so changes made on this instance go out without waiting.
+ * <p>
+ * Every subscriber has its own bounded buffer and its own sender task, so a
+ * slow client only ever holds up itself. When its buffer is full the
+ * {@link CustomerOutboxProperties.SlowSubscriberPolicy} applies. A client that
+ * reconnects with {@code Last-Event-ID} first gets what it missed from the
+ * outbox, then the live changes.
+ */
+@Slf4j
+public class CustomerChangeFeed implements AutoCloseable {
+
+    private final CustomerOutbox outbox;
+    private final CustomerOutboxProperties.Feed properties;
+    private final ScheduledExecutorService poller;
+    private final Executor senders;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean wakeUpPending = new AtomicBoolean();
+    private final Counter dropped;
+    private final Counter disconnected;
+    // only the poller thread writes it
+    private volatile CustomerChangeCursor head;
+
+    CustomerChangeFeed(CustomerOutbox outbox, CustomerOutboxProperties.Feed properties,
+                       ScheduledExecutorService poller, Executor senders, MeterRegistry meterRegistry) {
+        this.outbox = outbox;
+        this.properties = properties;
+        this.poller = poller;
+        this.senders = senders;
+        this.head = outbox.selectLatestCursor().orElse(CustomerChangeCursor.START);
+        Gauge.builder("customer.changes.subscribers", subscribers, Set::size)
+                .register(meterRegistry);
+        this.dropped = Counter.builder("customer.changes.dropped")
+                .description("Changes dropped from the buffer of a slow subscriber")
+                .register(meterRegistry);
+        this.disconnected = Counter.builder("customer.changes.disconnected")
+                .description("Subscribers disconnected for falling too far behind")
+                .register(meterRegistry);
+    }
+
+    void start() {
+        long pollMillis = properties.pollInterval().toMillis();
+        poller.scheduleWithFixedDelay(this::poll, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+        long heartbeatMillis = properties.heartbeatInterval().toMillis();
+        poller.scheduleWithFixedDelay(this::heartbeat, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @EventListener
+    void customerChanged(CustomerChangedEvent event) {
+        if (wakeUpPending.compareAndSet(false, true)) {
+            poller.execute(() -> {
+                wakeUpPending.set(false);
+                poll();
+            });
+        }
+    }
+
+    /**
+     * Streams changes to {@code emitter}, after {@code lastEventId} when the
+     * client sent one and from now on otherwise.
+     */
+    public void subscribe(SseEmitter emitter, String lastEventId) {
+        CustomerChangeCursor resumeAfter = lastEventId == null || lastEventId.isBlank()
+                ? null
+                : CustomerChangeCursor.decode(lastEventId.trim());
+        if (subscribers.size() >= properties.maxSubscribers()) {
+            throw new ServiceUnavailableException("Too many change feed subscribers");
+        }
+        // registered before catching up, so no change falls between the outbox and the buffer
+        Subscriber subscriber = new Subscriber(emitter, resumeAfter == null ? head : resumeAfter,
+                resumeAfter != null);
+        subscribers.add(subscriber);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        subscriber.schedule();
+    }
+
+    int subscriberCount() {
+        return subscribers.size();
+    }
+
+    void poll() {
+        try {
+            if (subscribers.isEmpty()) {
+                // nobody to read the changes for, only keep up with where "now" is
+                outbox.selectLatestCursor().ifPresent(latest -> head = latest);
+                return;
+            }
+            List<CustomerChange> changes;
+            do {
+                changes = outbox.selectChangesAfter(head, properties.batchSize());
+                for (CustomerChange change : changes) {
+                    subscribers.forEach(subscriber -> subscriber.offer(change));
+                    head = change.cursor();
+                }
+            } while (changes.size() == properties.batchSize());
+        } catch (RuntimeException e) {
+            log.warn("Polling the customer outbox failed, retrying next interval", e);
+        }
+    }
+
+    void heartbeat() {
+        subscribers.forEach(Subscriber::heartbeat);
+    }
+
+    @Override
+    public void close() {
+        poller.shutdownNow();
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        subscribers.clear();
+    }
+
+    private final class Subscriber {
+
+        private final SseEmitter emitter;
+        private final Queue<CustomerChange> buffer;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        // guarded by scheduled: only the one running sender task touches these
+        private CustomerChangeCursor sent;
+        private boolean catchingUp;
+        private volatile boolean heartbeatDue;
+        private final AtomicInteger droppedSinceLastSend = new AtomicInteger();
+        private volatile boolean closed;
+
+        Subscriber(SseEmitter emitter, CustomerChangeCursor sent, boolean catchingUp) {
+            this.emitter = emitter;
+            this.buffer = new ArrayBlockingQueue<>(properties.bufferSize());
+            this.sent = sent;
+            this.catchingUp = catchingUp;
+        }
+
+        // called by the poller thread only
+        void offer(CustomerChange change) {
+            if (closed) {
+                return;
+            }
+            if (!buffer.offer(change)) {
+                if (properties.slowSubscriber() == CustomerOutboxProperties.SlowSubscriberPolicy.DISCONNECT) {
+                    disconnected.increment();
+                    log.debug("Disconnecting a change feed subscriber {} changes behind", properties.bufferSize());
+                    close();
+                    return;
+                }
+                buffer.poll();
+                buffer.offer(change);
+                droppedSinceLastSend.incrementAndGet();
+                dropped.increment();
+            }
+            schedule();
+        }
+
+        void heartbeat() {
+            heartbeatDue = true;
+            schedule();
+        }
+
+        void schedule() {
+            if (!closed && scheduled.compareAndSet(false, true)) {
+                senders.execute(this::send);
+            }
+        }
+
+        private void send() {
+            try {
+                if (catchingUp) {
+                    catchUp();
+                    catchingUp = false;
+                }
+                int droppedCount = droppedSinceLastSend.getAndSet(0);
+                if (droppedCount > 0) {
+                    emitter.send(SseEmitter.event().name("dropped").data(droppedCount));
+                }
+                CustomerChange change;
+                boolean sentAny = false;
+                while (!closed && (change = buffer.poll()) != null) {
+                    // caught up from the outbox past it already
+                    if (change.cursor().compareTo(sent) > 0) {
+                        sendChange(change);
+                        sentAny = true;
+                    }
+                }
+                if (heartbeatDue) {
+                    heartbeatDue = false;
+                    if (!sentAny) {
+                        emitter.send(SseEmitter.event().comment("heartbeat"));
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                // the client went away; the container completes the emitter
+                log.debug("Change feed subscriber dropped: {}", e.toString());
+                closed = true;
+                subscribers.remove(this);
+                return;
+            } finally {
+                scheduled.set(false);
+            }
+            if (!closed && !buffer.isEmpty()) {
+                schedule();
+            }
+        }
+
+        private void catchUp() throws IOException {
+            if (!outbox.exists(sent)) {
+                // what it missed may be pruned: start it over from the live position
+                CustomerChangeCursor restart = head;
+                emitter.send(SseEmitter.event()
+                        .id(restart.encode())
+                        .data(CustomerChange.reset(restart), MediaType.APPLICATION_JSON));
+                sent = restart;
+                return;
+            }
+            List<CustomerChange> missed;
+            do {
+                missed = outbox.selectChangesAfter(sent, properties.batchSize());
+                for (CustomerChange change : missed) {
+                    sendChange(change);
+                }
+            } while (missed.size() == properties.batchSize() && !closed);
+        }
+
+        private void sendChange(CustomerChange change) throws IOException {
+            emitter.send(SseEmitter.event()
+                    .id(change.cursor().encode())
+                    .data(change, MediaType.APPLICATION_JSON));
+            sent = change.cursor();
+        }
+
+        private void close() {
+            closed = true;
+            subscribers.remove(this);
+            buffer.clear();
+            emitter.complete();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.atom.fullstack.customer;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+@RequestMapping(path = "api/v1/customer")
+@RequiredArgsConstructor
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(name = "customer.outbox.enabled", havingValue = "true", matchIfMissing = true)
+public class CustomerChangeFeedController {
+
+    private final CustomerChangeFeed changeFeed;
+    private final CustomerOutboxProperties properties;
+
+    /**
+     * Server-Sent Events, one {@link CustomerChange} per committed change.
+     * Each event id is a position in the outbox; a client that reconnects
+     * with it as {@code Last-Event-ID}, as EventSource does, gets everything
+     * it missed.
+     */
+    @GetMapping(path = "changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        SseEmitter emitter = new SseEmitter(properties.feed().timeout().toMillis());
+        changeFeed.subscribe(emitter, lastEventId);
+        return emitter;
+    }
+}
@@ -0,0 +1,9 @@
+package com.atom.fullstack.customer;
+
+/**
+ * Published by {@link CustomerService} after a write. {@code customerId} is the
+ * changed customer, or {@code null} when the write was a bulk insert; either
+ * way every list of customers may have changed.
+ */
+public record CustomerChangedEvent(Long customerId) {
+}
@@ -1,39 +1,243 @@
 package com.atom.fullstack.customer;
 
 
+import com.atom.fullstack.exception.RequestValidationException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.ArrayList;
 import java.util.List;
 
 @RestController
 @RequestMapping(path = "api/v1/customer")
 @RequiredArgsConstructor
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class CustomerController {
+    static final int BULK_CHUNK_SIZE = 1_000;
+
     private final CustomerService customerService;
+    private final ObjectMapper objectMapper;
 
+    /**
+     * Tagged with the change count, read before the page: a write in between
+     * makes the tag older than the data, never newer, so a 304 is never stale.
+     */
     @GetMapping
-    public List<Customer> getAllCustomers(){
-        return customerService.getAllCustomers();
+    public ResponseEntity<CustomerPage> getCustomers(@RequestParam(value = "cursor", required = false) String cursor,
+                                                     @RequestParam(value = "sort", required = false) String sort,
+                                                     @RequestParam(value = "size", required = false) Integer size,
+                                                     WebRequest request){
+        String eTag = CustomerETags.ofChangeCount(customerService.getCustomersChangeCount());
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .body(customerService.getCustomers(cursor, sort, size));
+    }
+
+    /**
+     * {@code ?fields=id,email}: only those fields are read and returned, the id
+     * always among them. Tagged like the full page, which shares its data.
+     */
+    @GetMapping(params = "fields")
+    public ResponseEntity<CustomerProjectionPage> getCustomerProjections(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "sort", required = false) String sort,
+            @RequestParam(value = "size", required = false) Integer size,
+            @RequestParam("fields") String fields,
+            WebRequest request){
+        String eTag = CustomerETags.ofChangeCount(customerService.getCustomersChangeCount());
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .body(customerService.getCustomerProjections(cursor, sort, size, fields));
+    }
+
+    /**
+     * {@code ?ids=1,2,3}, see {@link #getCustomersByIds(CustomerBatchRequest)}
+     * for lists too long for a URL.
+     */
+    @GetMapping(params = "ids")
+    public CustomerBatch getCustomersByIds(@RequestParam("ids") List<Long> ids){
+        return customerService.getCustomersByIds(ids);
+    }
+
+    @GetMapping(params = {"ids", "fields"})
+    public CustomerProjectionBatch getCustomerProjectionsByIds(@RequestParam("ids") List<Long> ids,
+                                                               @RequestParam("fields") String fields){
+        return customerService.getCustomerProjectionsByIds(ids, fields);
+    }
+
+    @PostMapping(path = "batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public CustomerBatch getCustomersByIds(@RequestBody CustomerBatchRequest batchRequest){
+        return customerService.getCustomersByIds(batchRequest.ids());
+    }
+
+    @GetMapping("search")
+    public CustomerPage searchCustomers(@RequestParam("q") String query,
+                                        @RequestParam(value = "cursor", required = false) String cursor,
+                                        @RequestParam(value = "size", required = false) Integer size){
+        return customerService.searchCustomers(query, cursor, size);
+    }
+
+    /**
+     * Tagged with the change count like {@link #getCustomers}.
+     */
+    @GetMapping("statistics")
+    public ResponseEntity<CustomerStatistics> getCustomerStatistics(
+            @RequestParam(value = "minAge", required = false) Integer minAge,
+            @RequestParam(value = "maxAge", required = false) Integer maxAge,
+            @RequestParam(value = "bucketWidth", required = false) Integer bucketWidth,
+            WebRequest request){
+        String eTag = CustomerETags.ofChangeCount(customerService.getCustomersChangeCount());
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .body(customerService.getCustomerStatistics(minAge, maxAge, bucketWidth));
+    }
+
+    @GetMapping("count")
+    public CustomerCount countCustomers(@RequestParam(value = "minAge", required = false) Integer minAge,
+                                        @RequestParam(value = "maxAge", required = false) Integer maxAge,
+                                        @RequestParam(value = "exact", defaultValue = "true") boolean exact){
+        return customerService.countCustomers(minAge, maxAge, exact);
+    }
+
+    @GetMapping(path = "export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportCustomers(){
+        ObjectWriter writer = objectMapper.writerFor(Customer.class);
+        StreamingResponseBody body = outputStream -> customerService.exportCustomers(customer -> {
+            try {
+                outputStream.write(writer.writeValueAsBytes(customer));
+                outputStream.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     @GetMapping( "{customerId}")
-    public Customer getCustomerById(@PathVariable("customerId") Long id){
-        return customerService.getCustomerById(id);
+    public ResponseEntity<Customer> getCustomerById(@PathVariable("customerId") Long id, WebRequest request){
+        // revalidating only needs the version, and the cache may have it
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+                && request.checkNotModified(CustomerETags.of(customerService.getCustomerVersion(id)))) {
+            return null;
+        }
+        Customer customer = customerService.getCustomerById(id);
+        return ResponseEntity.ok()
+                .eTag(CustomerETags.of(customer))
+                .body(customer);
+    }
+
+    @GetMapping(path = "{customerId}", params = "fields")
+    public ResponseEntity<CustomerProjection> getCustomerProjectionById(@PathVariable("customerId") Long id,
+                                                                        @RequestParam("fields") String fields,
+                                                                        WebRequest request){
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+                && request.checkNotModified(CustomerETags.of(customerService.getCustomerVersion(id)))) {
+            return null;
+        }
+        CustomerProjection customer = customerService.getCustomerProjectionById(id, fields);
+        return ResponseEntity.ok()
+                .eTag(CustomerETags.of(customer.version()))
+                .body(customer);
     }
 
+    /**
+     * 201 with the new customer, its {@code Location} and its ETag, so a client
+     * never has to look it up again to learn the id.
+     */
     @PostMapping
-    public void addCustomer(@RequestBody CustomerRegistrationRequest customerRegistrationRequest) {
-        customerService.addCustomer(customerRegistrationRequest);
+    public ResponseEntity<Customer> addCustomer(@RequestBody CustomerRegistrationRequest customerRegistrationRequest) {
+        Customer customer = customerService.addCustomer(customerRegistrationRequest);
+        URI location = ServletUriComponentsBuilder.fromCurrentRequestUri()
+                .path("/{customerId}")
+                .buildAndExpand(customer.getId())
+                .toUri();
+        return ResponseEntity.created(location)
+                .eTag(CustomerETags.of(customer))
+                .body(customer);
+    }
+
+    /**
+     * Reads the JSON array one element at a time and registers it in chunks, so a
+     * large payload is never bound into memory at once.
+     * <p>
+     * A malformed element is a 400 while nothing has been registered yet. Once a
+     * chunk is in, the results so far are returned instead, ending with a
+     * {@link CustomerBulkStatus#MALFORMED} one that tells where registering
+     * stopped, so a client knows which rows to send again.
+     */
+    @PostMapping(path = "bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public List<CustomerBulkResult> addCustomers(InputStream body) throws IOException {
+        List<CustomerBulkResult> results = new ArrayList<>();
+        List<CustomerRegistrationRequest> chunk = new ArrayList<>(BULK_CHUNK_SIZE);
+        try (JsonParser parser = objectMapper.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new RequestValidationException("Expected a JSON array of customers");
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token == null) {
+                    throw new RequestValidationException("Unterminated JSON array");
+                }
+                chunk.add(objectMapper.readValue(parser, CustomerRegistrationRequest.class));
+                if (chunk.size() == BULK_CHUNK_SIZE) {
+                    results.addAll(customerService.addCustomers(chunk, results.size()));
+                    chunk.clear();
+                }
+            }
+        } catch (JsonProcessingException e) {
+            int index = results.size() + chunk.size();
+            if (results.isEmpty()) {
+                throw new RequestValidationException("Malformed customer at index " + index);
+            }
+            results.add(CustomerBulkResult.malformed(index, results.size()));
+            return results;
+        }
+        if (!chunk.isEmpty()) {
+            results.addAll(customerService.addCustomers(chunk, results.size()));
+        }
+        return results;
     }
 
     @DeleteMapping("{customerId}")
-    public void deleteCustomer(@PathVariable("customerId") Long id){
-        customerService.deleteCustomer(id);
+    public void deleteCustomer(@PathVariable("customerId") Long id,
+                               @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch){
+        customerService.deleteCustomer(id, CustomerETags.parseIfMatch(ifMatch));
     }
 
     @PatchMapping("{customerId}")
-    public void updateCustomer(@PathVariable("customerId") Long id, @RequestBody CustomerUpdateRequest customerUpdateRequest){
-        customerService.updateCustomer(id, customerUpdateRequest);
+    public ResponseEntity<Customer> updateCustomer(@PathVariable("customerId") Long id,
+                                                   @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                   @RequestBody CustomerUpdateRequest customerUpdateRequest){
+        Customer customer = customerService.updateCustomer(id, customerUpdateRequest, CustomerETags.parseIfMatch(ifMatch));
+        return ResponseEntity.ok()
+                .eTag(CustomerETags.of(customer))
+                .body(customer);
     }
 }
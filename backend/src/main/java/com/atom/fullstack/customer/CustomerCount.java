@@ -0,0 +1,7 @@
+package com.atom.fullstack.customer;
+
+/**
+ * {@code exact} is false when the count is the planner's estimate.
+ */
+public record CustomerCount(long count, boolean exact) {
+}
@@ -0,0 +1,57 @@
+package com.atom.fullstack.customer;
+
+import com.atom.fullstack.exception.RequestValidationException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position in a keyset-paginated customer listing. {@code lastKey} is the sort
+ * key of the last row already returned, or {@code null} for the first page.
+ * Clients only ever see the opaque token produced by {@link #encode()}.
+ */
+public record CustomerCursor(CustomerSortKey sortKey, String lastKey) {
+
+    private static final char SEPARATOR = ':';
+
+    public static CustomerCursor first(CustomerSortKey sortKey) {
+        return new CustomerCursor(sortKey, null);
+    }
+
+    public static CustomerCursor after(CustomerSortKey sortKey, Customer last) {
+        return new CustomerCursor(sortKey, sortKey.keyOf(last));
+    }
+
+    public static CustomerCursor after(CustomerSortKey sortKey, CustomerProjection last) {
+        return new CustomerCursor(sortKey, sortKey.keyOf(last));
+    }
+
+    public boolean isFirst() {
+        return lastKey == null;
+    }
+
+    public Long lastId() {
+        return Long.valueOf(lastKey);
+    }
+
+    public String encode() {
+        String raw = sortKey.name() + SEPARATOR + lastKey;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static CustomerCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            CustomerSortKey sortKey = CustomerSortKey.valueOf(raw.substring(0, separator));
+            String lastKey = raw.substring(separator + 1);
+            if (sortKey == CustomerSortKey.ID) {
+                Long.parseLong(lastKey);
+            }
+            return new CustomerCursor(sortKey, lastKey);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new RequestValidationException("Invalid cursor");
+        }
+    }
+}
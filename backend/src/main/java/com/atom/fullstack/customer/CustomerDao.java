@@ -1,15 +1,93 @@
 package com.atom.fullstack.customer;
 
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 public interface CustomerDao {
     List<Customer> selectAllCustomers();
+    List<Customer> selectCustomers(CustomerCursor cursor, int limit);
+    Stream<Customer> streamAllCustomers();
+    /**
+     * Customers whose name or email starts with or resembles the query, best
+     * first, continuing after {@code after} when it is not null.
+     */
+    List<CustomerSearchHit> searchCustomers(CustomerSearchQuery query, CustomerSearchCursor after, int limit);
     Optional<Customer> selectCustomerById(Long id);
-    void insertCustomer(Customer customer);
+    /**
+     * The customers with these ids, in no particular order. Ids without a
+     * customer are left out.
+     */
+    List<Customer> selectCustomersByIds(Collection<Long> ids);
+    /**
+     * {@link #selectCustomers}, reading only the columns of {@code fields}.
+     */
+    List<CustomerProjection> selectCustomerProjections(CustomerCursor cursor, int limit, CustomerFields fields);
+    Optional<CustomerProjection> selectCustomerProjectionById(Long id, CustomerFields fields);
+    /**
+     * {@link #selectCustomersByIds}, reading only the columns of {@code fields}.
+     */
+    List<CustomerProjection> selectCustomerProjectionsByIds(Collection<Long> ids, CustomerFields fields);
+    /**
+     * Version of the customer with this id, without reading the rest of the row.
+     */
+    Optional<Long> selectCustomerVersion(Long id);
+    /**
+     * Number of committed statements that changed customers so far. It only grows,
+     * so it changes whenever any list of customers may have.
+     */
+    long selectCustomersChangeCount();
+    /**
+     * Customers with an age in {@code [minAge, maxAge]} grouped into buckets of
+     * {@code bucketWidth} ages starting at multiples of the width, youngest
+     * first. Empty buckets are left out.
+     */
+    List<CustomerAgeBucket> selectCustomerAgeBuckets(int minAge, int maxAge, int bucketWidth);
+    /**
+     * Exact number of customers with an age in {@code [minAge, maxAge]}.
+     */
+    long countCustomers(int minAge, int maxAge);
+    /**
+     * The planner's estimate of the number of customers, or empty when the
+     * table has never been analyzed.
+     */
+    Optional<Long> estimateCustomerCount();
+    /**
+     * Inserts the customer unless its email is already taken, and sets the
+     * generated id and the initial version on it. Returns false when nothing
+     * was inserted.
+     */
+    boolean insertCustomer(Customer customer);
+    /**
+     * Inserts all the customers or none, in one statement, and sets their
+     * generated ids and initial versions.
+     */
+    void insertCustomers(List<Customer> customers);
+    /**
+     * Inserts, in one statement or transaction, the customers whose email is not
+     * taken yet, including by an earlier customer in the same list, and sets
+     * their generated ids. Returns how many were inserted.
+     */
+    int insertCustomersIfEmailAbsent(List<Customer> customers);
     boolean existsCustomerByEmail(String email);
+    Set<String> selectExistingEmails(Collection<String> emails);
     boolean existsCustomerById(Long id);
-    void deleteCustomer(Long id);
-    void updateCustomer( Customer customer);
+    /**
+     * Deletes the customer with this id. Returns false when there was none.
+     */
+    boolean deleteCustomer(Long id);
+    /**
+     * Deletes the customer with this id only if it still has this version.
+     * Returns false when no row matched.
+     */
+    boolean deleteCustomerIfVersion(Long id, Long version);
+    /**
+     * Writes the non-null fields of {@code update} to the row with its id. When
+     * the update carries a version the row is only changed if it still has that
+     * version. Returns the row as stored, or empty when no row matched.
+     */
+    Optional<Customer> updateCustomer(Customer update);
 }
@@ -0,0 +1,124 @@
+package com.atom.fullstack.customer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Builds the {@code customerDao} bean the service uses: the implementation
+ * selected by {@code customer.dao.implementation}, wrapped in the decorators
+ * that are switched on.
+ */
+@Configuration
+@EnableConfigurationProperties(CustomerDaoProperties.class)
+@Slf4j
+public class CustomerDaoConfig {
+
+    /**
+     * Closing the bean closes the decorator chain, which lets group commit flush
+     * what it has queued.
+     */
+    @Bean(destroyMethod = "close")
+    public CustomerDao customerDao(@Qualifier("jdbc") CustomerDao jdbc,
+                                   @Qualifier("jpa") CustomerDao jpa,
+                                   CustomerDaoProperties properties,
+                                   ObjectProvider<CustomerEmailFilter> emailFilter,
+                                   MeterRegistry meterRegistry) {
+        CustomerDao customerDao = new TimedCustomerDao(implementation(jdbc, jpa, properties),
+                properties.implementation(), meterRegistry);
+        if (properties.groupCommit().enabled()) {
+            log.info("Grouping registrations into batches of up to {}", properties.groupCommit().maxBatchSize());
+            customerDao = new GroupCommitCustomerDao(customerDao, properties.groupCommit(), meterRegistry);
+        }
+        if (emailFilter.getIfAvailable() != null) {
+            log.info("Checking bulk registration emails against a Bloom filter before the database");
+            customerDao = new EmailFilteringCustomerDao(customerDao, emailFilter.getObject());
+        }
+        if (properties.cache().enabled()) {
+            log.info("Caching customers by id in front of the {} dao", properties.implementation());
+            CachingCustomerDao cachingCustomerDao = new CachingCustomerDao(customerDao, properties.cache());
+            CaffeineCacheMetrics.monitor(meterRegistry, cachingCustomerDao.cache(), "customers",
+                    "dao", properties.implementation());
+            customerDao = cachingCustomerDao;
+        }
+        return customerDao;
+    }
+
+    /**
+     * Listens for the writes of other instances on behalf of whichever of the
+     * customer cache and the response cache are on, and stays idle when
+     * neither is.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "customer.dao.cache.invalidation.enabled", havingValue = "true",
+            matchIfMissing = true)
+    public CustomerCacheInvalidator customerCacheInvalidator(@Qualifier("customerDao") CustomerDao customerDao,
+                                                             ObjectProvider<CustomerResponseCacheFilter> responseCache,
+                                                             CustomerDaoProperties properties,
+                                                             DataSourceProperties dataSourceProperties,
+                                                             MeterRegistry meterRegistry) {
+        List<CustomerCacheInvalidator.Target> caches = new ArrayList<>();
+        if (customerDao instanceof CachingCustomerDao cachingCustomerDao) {
+            caches.add(cachingCustomerDao);
+        }
+        responseCache.ifAvailable(caches::add);
+        CustomerCacheInvalidator invalidator = new CustomerCacheInvalidator(caches,
+                listenDataSource(dataSourceProperties), properties.cache().invalidation(), meterRegistry);
+        if (!caches.isEmpty()) {
+            log.info("Dropping customers other instances write from {} caches, at most {} stale",
+                    caches.size(), properties.cache().invalidation().maxStaleness());
+            invalidator.start();
+        }
+        return invalidator;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "customer.dao.email-filter.enabled", havingValue = "true")
+    public CustomerEmailFilter customerEmailFilter(@Qualifier("jdbc") CustomerDao jdbc,
+                                                   @Qualifier("jpa") CustomerDao jpa,
+                                                   CustomerDaoProperties properties,
+                                                   PlatformTransactionManager transactionManager,
+                                                   MeterRegistry meterRegistry) {
+        TransactionTemplate readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        return new CustomerEmailFilter(implementation(jdbc, jpa, properties), readOnlyTransaction,
+                properties.emailFilter(), meterRegistry);
+    }
+
+    /**
+     * Opens plain connections to the primary, a listening connection is held
+     * for good and must not take one from the pool.
+     */
+    private static DriverManagerDataSource listenDataSource(DataSourceProperties properties) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(properties.determineUrl(),
+                properties.determineUsername(), properties.determinePassword());
+        Properties connectionProperties = new Properties();
+        connectionProperties.setProperty("ApplicationName", "customer-cache-invalidation");
+        connectionProperties.setProperty("tcpKeepAlive", "true");
+        dataSource.setConnectionProperties(connectionProperties);
+        return dataSource;
+    }
+
+    private static CustomerDao implementation(CustomerDao jdbc, CustomerDao jpa, CustomerDaoProperties properties) {
+        return switch (properties.implementation()) {
+            case "jdbc" -> jdbc;
+            case "jpa" -> jpa;
+            default -> throw new IllegalStateException(
+                    "Unknown customer.dao.implementation " + properties.implementation());
+        };
+    }
+}
@@ -0,0 +1,46 @@
+package com.atom.fullstack.customer;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "customer.dao")
+public record CustomerDaoProperties(
+        @DefaultValue("jdbc") String implementation,
+        @DefaultValue Cache cache,
+        @DefaultValue EmailFilter emailFilter,
+        @DefaultValue GroupCommit groupCommit) {
+
+    public record Cache(
+            @DefaultValue("false") boolean enabled,
+            @DefaultValue("10000") long maximumSize,
+            @DefaultValue("10m") Duration expireAfterWrite,
+            @DefaultValue("5s") Duration notFoundExpireAfterWrite,
+            @DefaultValue Invalidation invalidation) {
+    }
+
+    /**
+     * How the cache learns about writes made by other instances, see
+     * {@link CustomerCacheInvalidator}.
+     */
+    public record Invalidation(
+            @DefaultValue("true") boolean enabled,
+            @DefaultValue("5s") Duration maxStaleness,
+            @DefaultValue("1s") Duration reconnectDelay) {
+    }
+
+    public record EmailFilter(
+            @DefaultValue("false") boolean enabled,
+            @DefaultValue("1000000") long expectedInsertions,
+            @DefaultValue("0.01") double falsePositiveProbability,
+            @DefaultValue("0.2") double staleRebuildRatio) {
+    }
+
+    public record GroupCommit(
+            @DefaultValue("false") boolean enabled,
+            @DefaultValue("100") int maxBatchSize,
+            @DefaultValue("5ms") Duration maxDelay,
+            @DefaultValue("10000") int queueCapacity) {
+    }
+}
@@ -0,0 +1,44 @@
+package com.atom.fullstack.customer;
+
+import com.atom.fullstack.exception.PreconditionFailedException;
+
+/**
+ * Customer entity tags are the row version, so comparing them never needs the
+ * full row. Lists are tagged with the table's change count instead.
+ */
+final class CustomerETags {
+
+    private CustomerETags() {
+    }
+
+    static String of(Customer customer) {
+        return of(customer.getVersion());
+    }
+
+    static String of(long version) {
+        return "\"" + version + "\"";
+    }
+
+    static String ofChangeCount(long changes) {
+        return "\"changes-" + changes + "\"";
+    }
+
+    /**
+     * Version required by an {@code If-Match} header, or {@code null} when the
+     * header is absent or {@code *}. Weak or unknown tags can never match.
+     */
+    static Long parseIfMatch(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.length() < 2 || !tag.startsWith("\"") || !tag.endsWith("\"")) {
+            throw new PreconditionFailedException("If-Match must be a single strong entity tag");
+        }
+        try {
+            return Long.valueOf(tag.substring(1, tag.length() - 1));
+        } catch (NumberFormatException e) {
+            throw new PreconditionFailedException("Entity tag " + tag + " does not match");
+        }
+    }
+}
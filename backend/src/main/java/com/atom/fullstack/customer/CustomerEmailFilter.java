@@ -0,0 +1,193 @@
+package com.atom.fullstack.customer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Bloom filter of every stored customer email, normalised to lower case. A
+ * negative answer is definite, so the uniqueness check of a bulk registration
+ * can skip the database for new emails. Single registrations do not check
+ * first and gain nothing. Until the first build completes every email is
+ * reported as possibly present.
+ * <p>
+ * A Bloom filter cannot forget values, so deletes and email changes only make
+ * it less selective. Once they reach {@code staleRebuildRatio} of its size the
+ * filter is rebuilt in the background.
+ * <p>
+ * A write adds its emails and stores them under a shared lock that a build
+ * takes exclusively to start and to finish, so every email is either stored
+ * before the build reads the table or added to the filter being built. Outside
+ * a build the lock is uncontended. The build reads every email at startup,
+ * which is why the filter is off unless {@code customer.dao.email-filter.enabled}
+ * is set, and is only worth it for services taking bulk registrations.
+ */
+@Slf4j
+public class CustomerEmailFilter {
+
+    private final CustomerDao source;
+    private final TransactionTemplate readOnlyTransaction;
+    private final CustomerDaoProperties.EmailFilter properties;
+    private final Timer buildTimer;
+    private final Counter definitelyAbsent;
+    private final Counter falsePositives;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final AtomicLong staleEntries = new AtomicLong();
+    private final ReadWriteLock writes = new ReentrantReadWriteLock();
+
+    private volatile ScalableBloomFilter filter;
+    private volatile ScalableBloomFilter building;
+
+    CustomerEmailFilter(CustomerDao source,
+                        TransactionTemplate readOnlyTransaction,
+                        CustomerDaoProperties.EmailFilter properties,
+                        MeterRegistry meterRegistry) {
+        this.source = source;
+        this.readOnlyTransaction = readOnlyTransaction;
+        this.properties = properties;
+        this.buildTimer = Timer.builder("customer.email.filter.build")
+                .description("Time to load every customer email into the Bloom filter")
+                .register(meterRegistry);
+        this.definitelyAbsent = Counter.builder("customer.email.filter.checks")
+                .tag("result", "absent")
+                .register(meterRegistry);
+        this.falsePositives = Counter.builder("customer.email.filter.checks")
+                .tag("result", "false-positive")
+                .register(meterRegistry);
+        Gauge.builder("customer.email.filter.false.positive.probability", this,
+                        emailFilter -> emailFilter.current() == null ? 1 : emailFilter.current().expectedFalsePositiveProbability())
+                .register(meterRegistry);
+        Gauge.builder("customer.email.filter.memory", this,
+                        emailFilter -> emailFilter.current() == null ? 0 : emailFilter.current().memoryBytes())
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("customer.email.filter.entries", this,
+                        emailFilter -> emailFilter.current() == null ? 0 : emailFilter.current().size())
+                .register(meterRegistry);
+        Gauge.builder("customer.email.filter.stale.entries", staleEntries, AtomicLong::get)
+                .register(meterRegistry);
+    }
+
+    static String normalize(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private ScalableBloomFilter current() {
+        return filter;
+    }
+
+    boolean mightExist(String email) {
+        ScalableBloomFilter current = filter;
+        if (current == null || current.mightContain(normalize(email))) {
+            return true;
+        }
+        definitelyAbsent.increment();
+        return false;
+    }
+
+    void recordFalsePositive() {
+        falsePositives.increment();
+    }
+
+    /**
+     * Adds {@code emails} and runs the {@code write} that stores them with no
+     * build starting or finishing in between.
+     */
+    <T> T adding(Collection<String> emails, Supplier<T> write) {
+        writes.readLock().lock();
+        try {
+            emails.forEach(this::add);
+            return write.get();
+        } finally {
+            writes.readLock().unlock();
+        }
+    }
+
+    private void add(String email) {
+        String normalized = normalize(email);
+        ScalableBloomFilter current = filter;
+        if (current != null) {
+            current.add(normalized);
+        }
+        ScalableBloomFilter next = building;
+        if (next != null) {
+            next.add(normalized);
+        }
+    }
+
+    void recordStaleEntry() {
+        long stale = staleEntries.incrementAndGet();
+        ScalableBloomFilter current = filter;
+        if (current != null && stale > current.size() * properties.staleRebuildRatio()) {
+            rebuildInBackground();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void rebuildInBackground() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                rebuild();
+            } catch (RuntimeException e) {
+                log.error("Could not build the customer email filter", e);
+            } finally {
+                rebuilding.set(false);
+            }
+        }, "customer-email-filter-build");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void rebuild() {
+        long start = System.nanoTime();
+        ScalableBloomFilter next = new ScalableBloomFilter(
+                properties.expectedInsertions(), properties.falsePositiveProbability());
+        // once we hold the lock the writes that could not see next are stored
+        // and the scan below reads them, later ones go to both filters
+        writes.writeLock().lock();
+        try {
+            building = next;
+        } finally {
+            writes.writeLock().unlock();
+        }
+        long staleBefore = staleEntries.get();
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> {
+                try (Stream<Customer> customers = source.streamAllCustomers()) {
+                    customers.forEach(customer -> next.add(normalize(customer.getEmail())));
+                }
+            });
+            writes.writeLock().lock();
+            try {
+                filter = next;
+                building = null;
+            } finally {
+                writes.writeLock().unlock();
+            }
+            staleEntries.addAndGet(-staleBefore);
+        } finally {
+            building = null;
+        }
+        long elapsed = System.nanoTime() - start;
+        buildTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        log.info("Customer email filter built with {} emails in {} ms", next.size(), elapsed / 1_000_000);
+    }
+}
@@ -0,0 +1,22 @@
+package com.atom.fullstack.customer;
+
+/**
+ * Customer fields a client can pick with {@code fields=}. Each is a column of
+ * the same name and an attribute of {@link Customer}.
+ */
+public enum CustomerField {
+    ID("id"),
+    NAME("name"),
+    EMAIL("email"),
+    AGE("age");
+
+    private final String column;
+
+    CustomerField(String column) {
+        this.column = column;
+    }
+
+    public String column() {
+        return column;
+    }
+}
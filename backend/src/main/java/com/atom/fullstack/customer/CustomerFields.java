@@ -0,0 +1,101 @@
+package com.atom.fullstack.customer;
+
+import com.atom.fullstack.exception.RequestValidationException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * A set of {@link CustomerField}s, parsed from {@code fields=id,email}. There
+ * is one instance per combination, so the DAOs can key the statements they
+ * build for a combination by it and build each only once.
+ * <p>
+ * The columns always include the version, which is the ETag and costs
+ * nothing to read once the row is found.
+ */
+public final class CustomerFields {
+
+    private static final CustomerFields[] BY_MASK = new CustomerFields[1 << CustomerField.values().length];
+
+    static {
+        for (int mask = 0; mask < BY_MASK.length; mask++) {
+            BY_MASK[mask] = new CustomerFields(mask);
+        }
+    }
+
+    public static final CustomerFields ALL = BY_MASK[BY_MASK.length - 1];
+
+    private final int mask;
+    private final List<CustomerField> fields;
+    private final String columns;
+
+    private CustomerFields(int mask) {
+        this.mask = mask;
+        this.fields = Arrays.stream(CustomerField.values())
+                .filter(field -> (mask & bit(field)) != 0)
+                .toList();
+        List<String> columns = new ArrayList<>(fields.size() + 1);
+        fields.forEach(field -> columns.add(field.column()));
+        columns.add("version");
+        this.columns = String.join(", ", columns);
+    }
+
+    public static CustomerFields of(CustomerField... fields) {
+        int mask = 0;
+        for (CustomerField field : fields) {
+            mask |= bit(field);
+        }
+        return BY_MASK[mask];
+    }
+
+    /**
+     * The fields in a comma separated list of column names, always with the
+     * id, which is what a client uses a row for.
+     */
+    public static CustomerFields parse(String param) {
+        if (param == null || param.isBlank()) {
+            return ALL;
+        }
+        CustomerFields fields = of(CustomerField.ID);
+        for (String name : param.split(",")) {
+            String column = name.trim().toLowerCase(Locale.ROOT);
+            CustomerField field = Arrays.stream(CustomerField.values())
+                    .filter(candidate -> candidate.column().equals(column))
+                    .findFirst()
+                    .orElseThrow(() -> new RequestValidationException("Unknown customer field " + name.trim()));
+            fields = fields.with(field);
+        }
+        return fields;
+    }
+
+    public CustomerFields with(CustomerField field) {
+        return BY_MASK[mask | bit(field)];
+    }
+
+    public boolean contains(CustomerField field) {
+        return (mask & bit(field)) != 0;
+    }
+
+    public List<CustomerField> fields() {
+        return fields;
+    }
+
+    /**
+     * SELECT list of the fields plus the version, e.g. {@code id, email, version}.
+     */
+    public String columns() {
+        return columns;
+    }
+
+    @Override
+    public String toString() {
+        return fields.stream().map(CustomerField::column).collect(Collectors.joining(","));
+    }
+
+    private static int bit(CustomerField field) {
+        return 1 << field.ordinal();
+    }
+}
@@ -0,0 +1,75 @@
+package com.atom.fullstack.customer;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hands out customer ids from blocks of {@link #BLOCK_SIZE}, so inserts reach
+ * {@code customer_id_seq} once per block instead of once per row. Blocks are
+ * read the way Hibernate's pooled optimizer reads them for {@link Customer}:
+ * {@code nextval} returns the last id of the block. The sequence increments by
+ * the block size, so ids from here, from Hibernate and from the column default
+ * never overlap; ids left over in a block when the application stops are lost.
+ */
+@Component
+public class CustomerIdAllocator {
+
+    // INCREMENT BY of customer_id_seq and allocationSize on Customer.id
+    static final int BLOCK_SIZE = 50;
+
+    private final JdbcTemplate jdbcTemplate;
+    // a lock rather than synchronized: a virtual thread fetching a block must not pin its carrier
+    private final ReentrantLock lock = new ReentrantLock();
+    // guarded by lock
+    private long next;
+    private long last = -1;
+
+    public CustomerIdAllocator(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public long nextId() {
+        lock.lock();
+        try {
+            if (next > last) {
+                last = jdbcTemplate.queryForObject("SELECT nextval('customer_id_seq')", Long.class);
+                next = last - BLOCK_SIZE + 1;
+            }
+            return next++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@code count} ids, taking as many blocks as that needs in one query.
+     */
+    public long[] nextIds(int count) {
+        long[] ids = new long[count];
+        lock.lock();
+        try {
+            int filled = 0;
+            while (filled < count && next <= last) {
+                ids[filled++] = next++;
+            }
+            if (filled == count) {
+                return ids;
+            }
+            int blocks = (count - filled + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            // blocks from one call need not be adjacent, other nodes take blocks too
+            for (Long blockEnd : jdbcTemplate.queryForList(
+                    "SELECT nextval('customer_id_seq') FROM generate_series(1, ?)", Long.class, blocks)) {
+                next = blockEnd - BLOCK_SIZE + 1;
+                last = blockEnd;
+                while (filled < count && next <= last) {
+                    ids[filled++] = next++;
+                }
+            }
+            return ids;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -1,21 +1,54 @@
 package com.atom.fullstack.customer;
 
-import lombok.RequiredArgsConstructor;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Stream;
 @Repository("jdbc")
-@RequiredArgsConstructor
 public class CustomerJDBCDataAccessService implements CustomerDao{
+    static final int STREAM_FETCH_SIZE = 1_000;
+
     private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
     private final CustomerRowMapper customerRowMapper;
+    private final CustomerIdAllocator idAllocator;
+    // one set of statements per field combination, so pgjdbc prepares each once per connection
+    private final ConcurrentMap<CustomerFields, ProjectionQueries> projectionQueries = new ConcurrentHashMap<>();
+
+    public CustomerJDBCDataAccessService(JdbcTemplate jdbcTemplate, CustomerRowMapper customerRowMapper,
+                                         CustomerIdAllocator idAllocator) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.customerRowMapper = customerRowMapper;
+        this.idAllocator = idAllocator;
+    }
+
     @Override
+    @Transactional(readOnly = true)
     public List<Customer> selectAllCustomers() {
         var sql = """
-                SELECT id, name, email, age
+                SELECT id, name, email, age, version
                 FROM customer
                 """;
 
@@ -24,9 +57,88 @@ public class CustomerJDBCDataAccessService implements CustomerDao{
     }
 
     @Override
+    public List<Customer> selectCustomers(CustomerCursor cursor, int limit) {
+        // the column comes from CustomerSortKey, never from the request
+        String column = cursor.sortKey().column();
+        if (cursor.isFirst()) {
+            var sql = """
+                    SELECT id, name, email, age, version
+                    FROM customer
+                    ORDER BY %s
+                    LIMIT ?
+                    """.formatted(column);
+            return jdbcTemplate.query(sql, customerRowMapper, limit);
+        }
+        var sql = """
+                SELECT id, name, email, age, version
+                FROM customer
+                WHERE %1$s > ?
+                ORDER BY %1$s
+                LIMIT ?
+                """.formatted(column);
+        Object lastKey = cursor.sortKey() == CustomerSortKey.ID ? cursor.lastId() : cursor.lastKey();
+        return jdbcTemplate.query(sql, customerRowMapper, lastKey, limit);
+    }
+
+    @Override
+    public Stream<Customer> streamAllCustomers() {
+        var sql = """
+                SELECT id, name, email, age, version
+                FROM customer
+                ORDER BY id
+                """;
+        // Postgres only uses a server-side cursor for a fetch size inside a transaction
+        return jdbcTemplate.queryForStream(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(STREAM_FETCH_SIZE);
+            return statement;
+        }, customerRowMapper);
+    }
+
+    /**
+     * Each branch of the WHERE clause has its own index (the prefix ranges the
+     * text_pattern_ops btrees, {@code %} the trigram GINs), so Postgres answers
+     * it with a BitmapOr instead of a scan of the table.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<CustomerSearchHit> searchCustomers(CustomerSearchQuery query, CustomerSearchCursor after, int limit) {
+        var sql = """
+                SELECT id, name, email, age, version, score
+                FROM (
+                    SELECT id, name, email, age, version,
+                           CAST(CASE WHEN (lower(name) ~>=~ :low AND lower(name) ~<~ :high)
+                                       OR (lower(email) ~>=~ :low AND lower(email) ~<~ :high)
+                                     THEN 1 ELSE 0 END
+                                + greatest(similarity(name, :text), similarity(email, :text)) AS float8) AS score
+                    FROM customer
+                    WHERE (lower(name) ~>=~ :low AND lower(name) ~<~ :high)
+                       OR (lower(email) ~>=~ :low AND lower(email) ~<~ :high)
+                       OR name % :text
+                       OR email % :text
+                ) matches
+                WHERE :first OR score < :afterScore OR (score = :afterScore AND id > :afterId)
+                ORDER BY score DESC, id
+                LIMIT :limit
+                """;
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("low", query.prefixLow())
+                .addValue("high", query.prefixHigh())
+                .addValue("text", query.text())
+                .addValue("first", after == null)
+                .addValue("afterScore", after == null ? 0.0 : after.score())
+                .addValue("afterId", after == null ? 0L : after.lastId())
+                .addValue("limit", limit);
+        return namedParameterJdbcTemplate.query(sql, parameters, (rs, rowNum) ->
+                new CustomerSearchHit(customerRowMapper.mapRow(rs, rowNum), rs.getDouble("score")));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public Optional<Customer> selectCustomerById(Long id) {
         var sql = """
-                SELECT id, name, email, age
+                SELECT id, name, email, age, version
                 FROM customer
                 WHERE id = ?
                 """;
@@ -38,20 +150,239 @@ public class CustomerJDBCDataAccessService implements CustomerDao{
     }
 
     @Override
-    public void insertCustomer(Customer customer) {
+    @Transactional(readOnly = true)
+    public List<Customer> selectCustomersByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        // one array parameter, so every batch size shares one prepared statement
         var sql = """
-                INSERT INTO customer (name, email, age)
-                VALUES (?, ?, ?)
+                SELECT id, name, email, age, version
+                FROM customer
+                WHERE id = ANY(?)
                 """;
-            int res = jdbcTemplate.update(sql,
-                    customer.getName(),
-                    customer.getEmail(),
-                    customer.getAge()
-                    );
-        System.out.println("jdbc insert res: " + res);
+        PreparedStatementSetter setter = statement -> statement.setArray(1,
+                statement.getConnection().createArrayOf("int8", ids.toArray()));
+        return jdbcTemplate.query(sql, setter, customerRowMapper);
     }
 
     @Override
+    // on the primary like selectCustomers: the page ETag is read from there and
+    // must never be newer than the rows
+    public List<CustomerProjection> selectCustomerProjections(CustomerCursor cursor, int limit,
+                                                              CustomerFields fields) {
+        ProjectionQueries queries = projectionQueries(fields);
+        if (cursor.isFirst()) {
+            return jdbcTemplate.query(queries.firstPage.get(cursor.sortKey()), queries.mapper, limit);
+        }
+        Object lastKey = cursor.sortKey() == CustomerSortKey.ID ? cursor.lastId() : cursor.lastKey();
+        return jdbcTemplate.query(queries.nextPage.get(cursor.sortKey()), queries.mapper, lastKey, limit);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<CustomerProjection> selectCustomerProjectionById(Long id, CustomerFields fields) {
+        ProjectionQueries queries = projectionQueries(fields);
+        return jdbcTemplate.query(queries.byId, queries.mapper, id).stream().findFirst();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<CustomerProjection> selectCustomerProjectionsByIds(Collection<Long> ids, CustomerFields fields) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        ProjectionQueries queries = projectionQueries(fields);
+        PreparedStatementSetter setter = statement -> statement.setArray(1,
+                statement.getConnection().createArrayOf("int8", ids.toArray()));
+        return jdbcTemplate.query(queries.byIds, setter, queries.mapper);
+    }
+
+    private ProjectionQueries projectionQueries(CustomerFields fields) {
+        return projectionQueries.computeIfAbsent(fields, ProjectionQueries::new);
+    }
+
+    @Override
+    public Optional<Long> selectCustomerVersion(Long id) {
+        var sql = """
+                SELECT version
+                FROM customer
+                WHERE id = ?
+                """;
+        return jdbcTemplate.queryForList(sql, Long.class, id).stream().findFirst();
+    }
+
+    @Override
+    public long selectCustomersChangeCount() {
+        var sql = """
+                SELECT coalesce(sum(changes), 0)
+                FROM customer_change_counter
+                """;
+        Long changes = jdbcTemplate.queryForObject(sql, Long.class);
+        return changes == null ? 0 : changes;
+    }
+
+    /**
+     * Reads the per-age summary the V5 triggers maintain, never the customer
+     * table, so the cost depends on the number of distinct ages only. Each age
+     * is split in 16 shards (V10) that the sums add back up; a shard is never
+     * negative, so filtering rows on {@code customers > 0} keeps min and max
+     * right.
+     */
+    @Override
+    public List<CustomerAgeBucket> selectCustomerAgeBuckets(int minAge, int maxAge, int bucketWidth) {
+        var sql = """
+                SELECT (floor(age / ?::numeric) * ?)::int AS from_age,
+                       sum(customers)::bigint AS customers,
+                       min(age) AS min_age,
+                       max(age) AS max_age,
+                       sum(age::bigint * customers)::bigint AS age_sum
+                FROM customer_age_summary
+                WHERE customers > 0 AND age BETWEEN ? AND ?
+                GROUP BY 1
+                ORDER BY 1
+                """;
+        return jdbcTemplate.query(sql, (rs, rowNum) -> new CustomerAgeBucket(
+                rs.getInt("from_age"),
+                rs.getLong("customers"),
+                rs.getInt("min_age"),
+                rs.getInt("max_age"),
+                rs.getLong("age_sum")
+        ), bucketWidth, bucketWidth, minAge, maxAge);
+    }
+
+    @Override
+    public long countCustomers(int minAge, int maxAge) {
+        // sums the shards of every age in range
+        var sql = """
+                SELECT coalesce(sum(customers), 0)
+                FROM customer_age_summary
+                WHERE age BETWEEN ? AND ?
+                """;
+        Long customers = jdbcTemplate.queryForObject(sql, Long.class, minAge, maxAge);
+        return customers == null ? 0 : customers;
+    }
+
+    @Override
+    public Optional<Long> estimateCustomerCount() {
+        // -1 until the table is first vacuumed or analyzed
+        var sql = """
+                SELECT reltuples::bigint
+                FROM pg_class
+                WHERE oid = 'customer'::regclass
+                """;
+        return jdbcTemplate.queryForList(sql, Long.class).stream()
+                .filter(estimate -> estimate >= 0)
+                .findFirst();
+    }
+
+    @Override
+    public boolean insertCustomer(Customer customer) {
+        // the unique constraint decides, so concurrent registrations cannot both win
+        var sql = """
+                INSERT INTO customer (id, name, email, age)
+                VALUES (?, ?, ?, ?)
+                ON CONFLICT (email) DO NOTHING
+                RETURNING version
+                """;
+        long id = idAllocator.nextId();
+        List<Long> versions = jdbcTemplate.queryForList(sql, Long.class,
+                id,
+                customer.getName(),
+                customer.getEmail(),
+                customer.getAge()
+        );
+        if (versions.isEmpty()) {
+            return false;
+        }
+        customer.setId(id);
+        customer.setVersion(versions.get(0));
+        return true;
+    }
+
+    @Override
+    public void insertCustomers(List<Customer> customers) {
+        if (customers.isEmpty()) {
+            return;
+        }
+        // one statement for the whole chunk: the age summary trigger then upserts
+        // its rows in key order once, where a batch of statements would lock them
+        // in a different order than a concurrent import and deadlock
+        var sql = """
+                INSERT INTO customer (id, name, email, age)
+                SELECT * FROM unnest(?::int8[], ?::varchar[], ?::varchar[], ?::int[])
+                RETURNING id, version
+                """;
+        long[] ids = idAllocator.nextIds(customers.size());
+        Map<Long, Long> versions = new HashMap<>();
+        jdbcTemplate.query(sql, unnestSetter(ids, customers), rs -> {
+            versions.put(rs.getLong("id"), rs.getLong("version"));
+        });
+        for (int i = 0; i < customers.size(); i++) {
+            customers.get(i).setId(ids[i]);
+            customers.get(i).setVersion(versions.get(ids[i]));
+        }
+    }
+
+    @Override
+    public int insertCustomersIfEmailAbsent(List<Customer> customers) {
+        if (customers.isEmpty()) {
+            return 0;
+        }
+        // one multi-row statement however many customers, so one commit
+        var sql = """
+                INSERT INTO customer (id, name, email, age)
+                SELECT * FROM unnest(?::int8[], ?::varchar[], ?::varchar[], ?::int[])
+                ON CONFLICT (email) DO NOTHING
+                RETURNING id, version
+                """;
+        long[] ids = idAllocator.nextIds(customers.size());
+        Map<Long, Long> versions = new HashMap<>();
+        jdbcTemplate.query(sql, unnestSetter(ids, customers), rs -> {
+            versions.put(rs.getLong("id"), rs.getLong("version"));
+        });
+        // only the first customer with an email was inserted
+        for (int i = 0; i < customers.size(); i++) {
+            Long version = versions.get(ids[i]);
+            if (version != null) {
+                customers.get(i).setId(ids[i]);
+                customers.get(i).setVersion(version);
+            }
+        }
+        return versions.size();
+    }
+
+    private static PreparedStatementSetter unnestSetter(long[] ids, List<Customer> customers) {
+        return statement -> {
+            Connection connection = statement.getConnection();
+            statement.setArray(1, connection.createArrayOf("int8",
+                    Arrays.stream(ids).boxed().toArray()));
+            statement.setArray(2, connection.createArrayOf("varchar",
+                    customers.stream().map(Customer::getName).toArray()));
+            statement.setArray(3, connection.createArrayOf("varchar",
+                    customers.stream().map(Customer::getEmail).toArray()));
+            statement.setArray(4, connection.createArrayOf("int4",
+                    customers.stream().map(Customer::getAge).toArray()));
+        };
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        if (emails.isEmpty()) {
+            return Set.of();
+        }
+        var sql = """
+                SELECT email
+                FROM customer
+                WHERE email = ANY(?)
+                """;
+        PreparedStatementSetter setter = statement -> statement.setArray(1,
+                statement.getConnection().createArrayOf("varchar", emails.toArray()));
+        return new HashSet<>(jdbcTemplate.query(sql, setter, (rs, rowNum) -> rs.getString("email")));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public boolean existsCustomerByEmail(String email) {
         String sql = """
                 SELECT EXISTS(
@@ -64,6 +395,7 @@ public class CustomerJDBCDataAccessService implements CustomerDao{
     }
 
     @Override
+    @Transactional(readOnly = true)
     public boolean existsCustomerById(Long id) {
         String sql = """
                 SELECT EXISTS(
@@ -77,42 +409,101 @@ public class CustomerJDBCDataAccessService implements CustomerDao{
     }
 
     @Override
-    public void deleteCustomer(Long id) {
+    public boolean deleteCustomerIfVersion(Long id, Long version) {
         var sql = """
                 DELETE FROM customer
-                WHERE id = ?
+                WHERE id = ? AND version = ?
                 """;
-        jdbcTemplate.update(sql, id);
+        return jdbcTemplate.update(sql, id, version) > 0;
+    }
 
+    @Override
+    public boolean deleteCustomer(Long id) {
+        var sql = """
+                DELETE FROM customer
+                WHERE id = ?
+                """;
+        return jdbcTemplate.update(sql, id) > 0;
     }
 
     @Override
-    public void updateCustomer(Customer update) {
+    public Optional<Customer> updateCustomer(Customer update) {
+        List<String> assignments = new ArrayList<>(4);
+        List<Object> args = new ArrayList<>(5);
         if (update.getName() != null) {
-            String sql = "UPDATE customer SET name = ? WHERE id = ?";
-            int result = jdbcTemplate.update(
-                    sql,
-                    update.getName(),
-                    update.getId()
-            );
-            System.out.println("update customer name result = " + result);
+            assignments.add("name = ?");
+            args.add(update.getName());
+        }
+        if (update.getEmail() != null) {
+            assignments.add("email = ?");
+            args.add(update.getEmail());
         }
         if (update.getAge() != null) {
-            String sql = "UPDATE customer SET age = ? WHERE id = ?";
-            int result = jdbcTemplate.update(
-                    sql,
-                    update.getAge(),
-                    update.getId()
-            );
-            System.out.println("update customer age result = " + result);
+            assignments.add("age = ?");
+            args.add(update.getAge());
         }
-        if (update.getEmail() != null) {
-            String sql = "UPDATE customer SET email = ? WHERE id = ?";
-            int result = jdbcTemplate.update(
-                    sql,
-                    update.getEmail(),
-                    update.getId());
-            System.out.println("update customer email result = " + result);
+        if (assignments.isEmpty()) {
+            return selectCustomerById(update.getId());
+        }
+        assignments.add("version = version + 1");
+        args.add(update.getId());
+        String condition = "id = ?";
+        if (update.getVersion() != null) {
+            condition += " AND version = ?";
+            args.add(update.getVersion());
+        }
+        var sql = """
+                UPDATE customer
+                SET %s
+                WHERE %s
+                RETURNING id, name, email, age, version
+                """.formatted(String.join(", ", assignments), condition);
+        return jdbcTemplate.query(sql, customerRowMapper, args.toArray())
+                .stream()
+                .findFirst();
+    }
+
+    /**
+     * The projection statements for one field combination, as
+     * {@link #selectCustomers}, {@link #selectCustomerById} and
+     * {@link #selectCustomersByIds} with a narrower SELECT list.
+     */
+    private static final class ProjectionQueries {
+
+        private final String byId;
+        private final String byIds;
+        private final Map<CustomerSortKey, String> firstPage = new EnumMap<>(CustomerSortKey.class);
+        private final Map<CustomerSortKey, String> nextPage = new EnumMap<>(CustomerSortKey.class);
+        private final RowMapper<CustomerProjection> mapper;
+
+        private ProjectionQueries(CustomerFields fields) {
+            String columns = fields.columns();
+            this.byId = """
+                    SELECT %s
+                    FROM customer
+                    WHERE id = ?
+                    """.formatted(columns);
+            this.byIds = """
+                    SELECT %s
+                    FROM customer
+                    WHERE id = ANY(?)
+                    """.formatted(columns);
+            for (CustomerSortKey sortKey : CustomerSortKey.values()) {
+                firstPage.put(sortKey, """
+                        SELECT %s
+                        FROM customer
+                        ORDER BY %s
+                        LIMIT ?
+                        """.formatted(columns, sortKey.column()));
+                nextPage.put(sortKey, """
+                        SELECT %1$s
+                        FROM customer
+                        WHERE %2$s > ?
+                        ORDER BY %2$s
+                        LIMIT ?
+                        """.formatted(columns, sortKey.column()));
+            }
+            this.mapper = CustomerRowMapper.projection(fields);
         }
     }
 }
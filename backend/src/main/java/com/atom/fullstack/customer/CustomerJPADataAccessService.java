@@ -1,48 +1,239 @@
 package com.atom.fullstack.customer;
 
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Repository("jpa")
 @RequiredArgsConstructor
 public class CustomerJPADataAccessService implements CustomerDao{
 
     private final CustomerRepository customerRepository;
+    private final EntityManager entityManager;
+    private final CustomerIdAllocator idAllocator;
+
     @Override
+    @Transactional(readOnly = true)
     public List<Customer> selectAllCustomers() {
         return customerRepository.findAll();
     }
 
     @Override
+    public List<Customer> selectCustomers(CustomerCursor cursor, int limit) {
+        Pageable pageable = PageRequest.of(0, limit, Sort.by(cursor.sortKey().column()));
+        if (cursor.isFirst()) {
+            return customerRepository.findAllBy(pageable);
+        }
+        return switch (cursor.sortKey()) {
+            case ID -> customerRepository.findByIdGreaterThan(cursor.lastId(), pageable);
+            case EMAIL -> customerRepository.findByEmailGreaterThan(cursor.lastKey(), pageable);
+        };
+    }
+
+    @Override
+    public Stream<Customer> streamAllCustomers() {
+        // detach as we go so the persistence context does not grow with the table
+        return customerRepository.streamAllBy()
+                .map(customer -> {
+                    entityManager.detach(customer);
+                    return customer;
+                });
+    }
+
+    @Override
+    public List<CustomerSearchHit> searchCustomers(CustomerSearchQuery query, CustomerSearchCursor after, int limit) {
+        return customerRepository.search(query.prefixLow(), query.prefixHigh(), query.text(),
+                        after == null, after == null ? 0.0 : after.score(), after == null ? 0L : after.lastId(), limit)
+                .stream()
+                .map(row -> new CustomerSearchHit(
+                        new Customer(row.getId(), row.getName(), row.getEmail(), row.getAge(), row.getVersion()),
+                        row.getScore()))
+                .toList();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public Optional<Customer> selectCustomerById(Long id) {
         return customerRepository.findById(id);
     }
 
     @Override
-    public void insertCustomer(Customer customer) {
-        customerRepository.save(customer);
+    @Transactional(readOnly = true)
+    public List<Customer> selectCustomersByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return customerRepository.findAllById(ids);
+    }
+
+    @Override
+    // on the primary like selectCustomers: the page ETag is read from there and
+    // must never be newer than the rows
+    public List<CustomerProjection> selectCustomerProjections(CustomerCursor cursor, int limit,
+                                                              CustomerFields fields) {
+        Object after = cursor.isFirst() ? null
+                : cursor.sortKey() == CustomerSortKey.ID ? cursor.lastId() : cursor.lastKey();
+        return customerRepository.findProjections(fields, cursor.sortKey(), after, limit);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<CustomerProjection> selectCustomerProjectionById(Long id, CustomerFields fields) {
+        return customerRepository.findProjectionById(id, fields);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<CustomerProjection> selectCustomerProjectionsByIds(Collection<Long> ids, CustomerFields fields) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return customerRepository.findProjectionsByIds(ids, fields);
+    }
+
+    @Override
+    public Optional<Long> selectCustomerVersion(Long id) {
+        return customerRepository.findVersionById(id);
+    }
+
+    @Override
+    public long selectCustomersChangeCount() {
+        return customerRepository.countChanges();
     }
 
     @Override
+    public List<CustomerAgeBucket> selectCustomerAgeBuckets(int minAge, int maxAge, int bucketWidth) {
+        return customerRepository.ageBuckets(minAge, maxAge, bucketWidth).stream()
+                .map(row -> new CustomerAgeBucket(row.getFromAge(), row.getCustomers(),
+                        row.getMinAge(), row.getMaxAge(), row.getAgeSum()))
+                .toList();
+    }
+
+    @Override
+    public long countCustomers(int minAge, int maxAge) {
+        return customerRepository.countByAgeBetween(minAge, maxAge);
+    }
+
+    @Override
+    public Optional<Long> estimateCustomerCount() {
+        return customerRepository.estimateCount().filter(estimate -> estimate >= 0);
+    }
+
+    @Override
+    public boolean insertCustomer(Customer customer) {
+        // a native insert, save() would only find a duplicate by failing the flush
+        long id = idAllocator.nextId();
+        Optional<Long> version = customerRepository.insertIfEmailAbsent(
+                id, customer.getName(), customer.getEmail(), customer.getAge());
+        if (version.isEmpty()) {
+            return false;
+        }
+        customer.setId(id);
+        customer.setVersion(version.get());
+        return true;
+    }
+
+    @Override
+    public void insertCustomers(List<Customer> customers) {
+        if (customers.isEmpty()) {
+            return;
+        }
+        // a native insert, saveAll() flushes one statement per batch and lets
+        // concurrent imports lock the age summary in different orders
+        long[] ids = idAllocator.nextIds(customers.size());
+        Map<Long, Long> versions = customerRepository.insertAll(
+                        Arrays.stream(ids).boxed().toArray(Long[]::new),
+                        customers.stream().map(Customer::getName).toArray(String[]::new),
+                        customers.stream().map(Customer::getEmail).toArray(String[]::new),
+                        customers.stream().map(Customer::getAge).toArray(Integer[]::new))
+                .stream()
+                .collect(Collectors.toMap(CustomerRepository.InsertedRow::getId,
+                        CustomerRepository.InsertedRow::getVersion));
+        for (int i = 0; i < customers.size(); i++) {
+            customers.get(i).setId(ids[i]);
+            customers.get(i).setVersion(versions.get(ids[i]));
+        }
+    }
+
+    @Override
+    @Transactional
+    public int insertCustomersIfEmailAbsent(List<Customer> customers) {
+        // row by row, but in one transaction so the group pays for one commit
+        long[] ids = idAllocator.nextIds(customers.size());
+        int inserted = 0;
+        for (int i = 0; i < customers.size(); i++) {
+            Customer customer = customers.get(i);
+            Optional<Long> version = customerRepository.insertIfEmailAbsent(
+                    ids[i], customer.getName(), customer.getEmail(), customer.getAge());
+            if (version.isPresent()) {
+                customer.setId(ids[i]);
+                customer.setVersion(version.get());
+                inserted++;
+            }
+        }
+        return inserted;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public boolean existsCustomerByEmail(String email) {
         return customerRepository.existsCustomerByEmail(email);
     }
 
     @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        if (emails.isEmpty()) {
+            return Set.of();
+        }
+        return customerRepository.findExistingEmails(emails);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public boolean existsCustomerById(Long id) {
         return customerRepository.existsCustomerById(id);
     }
 
     @Override
-    public void deleteCustomer(Long id) {
-        customerRepository.deleteById(id);
+    public boolean deleteCustomer(Long id) {
+        return customerRepository.deleteCustomerById(id) > 0;
+    }
+
+    @Override
+    public boolean deleteCustomerIfVersion(Long id, Long version) {
+        return customerRepository.deleteCustomerByIdAndVersion(id, version) > 0;
     }
 
     @Override
-    public void updateCustomer( Customer customer) {
-        customerRepository.save(customer);
+    @Transactional
+    public Optional<Customer> updateCustomer(Customer update) {
+        // Hibernate adds the version check to its UPDATE through @Version
+        return customerRepository.findById(update.getId())
+                .filter(customer -> update.getVersion() == null || update.getVersion().equals(customer.getVersion()))
+                .map(customer -> {
+                    if (update.getName() != null) {
+                        customer.setName(update.getName());
+                    }
+                    if (update.getEmail() != null) {
+                        customer.setEmail(update.getEmail());
+                    }
+                    if (update.getAge() != null) {
+                        customer.setAge(update.getAge());
+                    }
+                    return customerRepository.saveAndFlush(customer);
+                });
     }
 }
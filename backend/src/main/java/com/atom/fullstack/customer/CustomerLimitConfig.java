@@ -0,0 +1,30 @@
+package com.atom.fullstack.customer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Limits concurrent {@link CustomerService} calls when
+ * {@code customer.limit.enabled} is set.
+ */
+@Configuration
+@ConditionalOnProperty(name = "customer.limit.enabled", havingValue = "true")
+@EnableConfigurationProperties(CustomerLimitProperties.class)
+@Slf4j
+public class CustomerLimitConfig {
+
+    @Bean
+    public CustomerServiceLimiter customerServiceLimiter(CustomerLimitProperties properties,
+                                                         CustomerDaoProperties daoProperties,
+                                                         MeterRegistry meterRegistry) {
+        boolean groupCommit = daoProperties.groupCommit().enabled();
+        log.info("Limiting concurrent customer calls, reads from {}, queries from {} and writes from {}{}",
+                properties.read().initialLimit(), properties.query().initialLimit(), properties.write().initialLimit(),
+                groupCommit ? ", registrations left to group commit" : "");
+        return new CustomerServiceLimiter(properties, groupCommit, meterRegistry);
+    }
+}
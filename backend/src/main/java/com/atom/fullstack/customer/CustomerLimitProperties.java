@@ -0,0 +1,28 @@
+package com.atom.fullstack.customer;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "customer.limit")
+public record CustomerLimitProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("1s") Duration retryAfter,
+        @DefaultValue Limit read,
+        @DefaultValue Limit query,
+        @DefaultValue Limit write) {
+
+    /**
+     * {@code tolerance} is how many times the baseline latency a call may take
+     * before the limit starts coming down. {@code smoothing} is the weight of
+     * each new sample in the limit.
+     */
+    public record Limit(
+            @DefaultValue("20") int initialLimit,
+            @DefaultValue("2") int minLimit,
+            @DefaultValue("200") int maxLimit,
+            @DefaultValue("2.0") double tolerance,
+            @DefaultValue("0.2") double smoothing) {
+    }
+}
@@ -0,0 +1,104 @@
+package com.atom.fullstack.customer;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Reads and prunes {@code customer_outbox}, which the triggers of V7 fill in
+ * the transaction of every customer write. Only rows of transactions older
+ * than every one still running are read, so the order they are read in is
+ * final. A long transaction anywhere in the cluster holds changes back until
+ * it ends.
+ */
+public class CustomerOutbox {
+
+    private static final RowMapper<CustomerChange> CHANGE_MAPPER = (rs, rowNum) -> new CustomerChange(
+            new CustomerChangeCursor(rs.getLong("tx_id"), rs.getLong("id")),
+            CustomerChange.Type.valueOf(rs.getString("change_type")),
+            rs.getObject("customer_id", Long.class),
+            rs.getObject("version", Long.class),
+            rs.getTimestamp("created_at").toInstant());
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public CustomerOutbox(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Up to {@code limit} changes after {@code after}, in order.
+     */
+    public List<CustomerChange> selectChangesAfter(CustomerChangeCursor after, int limit) {
+        var sql = """
+                SELECT id, tx_id::text::bigint AS tx_id, change_type, customer_id, version, created_at
+                FROM customer_outbox
+                WHERE (tx_id, id) > (?::text::xid8, ?)
+                AND tx_id < pg_snapshot_xmin(pg_current_snapshot())
+                ORDER BY tx_id, id
+                LIMIT ?
+                """;
+        return jdbcTemplate.query(sql, CHANGE_MAPPER, Long.toString(after.txId()), after.id(), limit);
+    }
+
+    /**
+     * Position of the newest change that can be read, or empty when there is none.
+     */
+    public Optional<CustomerChangeCursor> selectLatestCursor() {
+        var sql = """
+                SELECT tx_id::text::bigint AS tx_id, id
+                FROM customer_outbox
+                WHERE tx_id < pg_snapshot_xmin(pg_current_snapshot())
+                ORDER BY tx_id DESC, id DESC
+                LIMIT 1
+                """;
+        return jdbcTemplate.query(sql, (rs, rowNum) -> new CustomerChangeCursor(rs.getLong("tx_id"), rs.getLong("id")))
+                .stream()
+                .findFirst();
+    }
+
+    /**
+     * Whether the change at {@code cursor} is still kept. When it is not, the
+     * changes after it may have been pruned too.
+     */
+    public boolean exists(CustomerChangeCursor cursor) {
+        var sql = """
+                SELECT EXISTS(
+                SELECT 1
+                FROM customer_outbox
+                WHERE id = ? AND tx_id = ?::text::xid8
+                )
+                """;
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sql, Boolean.class,
+                cursor.id(), Long.toString(cursor.txId())));
+    }
+
+    /**
+     * Deletes the changes recorded before {@code before}, {@code batchSize}
+     * rows per statement so no delete holds its locks for long. Returns how
+     * many were deleted.
+     */
+    public long pruneBefore(Instant before, int batchSize) {
+        var sql = """
+                DELETE FROM customer_outbox
+                WHERE id IN (
+                SELECT id
+                FROM customer_outbox
+                WHERE created_at < ?
+                ORDER BY created_at
+                LIMIT ?
+                )
+                """;
+        long pruned = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(sql, Timestamp.from(before), batchSize);
+            pruned += deleted;
+        } while (deleted == batchSize);
+        return pruned;
+    }
+}
@@ -0,0 +1,79 @@
+package com.atom.fullstack.customer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Prunes the customer outbox and, in servlet applications, streams it to
+ * subscribers of {@code api/v1/customer/changes} unless
+ * {@code customer.outbox.enabled} is false. The triggers fill the outbox
+ * either way, so it is pruned either way.
+ */
+@Configuration
+@EnableConfigurationProperties(CustomerOutboxProperties.class)
+@Slf4j
+public class CustomerOutboxConfig {
+
+    @Bean
+    public CustomerOutbox customerOutbox(JdbcTemplate jdbcTemplate) {
+        return new CustomerOutbox(jdbcTemplate);
+    }
+
+    @Bean(destroyMethod = "close")
+    public CustomerOutboxPruner customerOutboxPruner(CustomerOutbox customerOutbox,
+                                                     CustomerOutboxProperties properties) {
+        log.info("Pruning customer changes older than {}", properties.retention());
+        CustomerOutboxPruner pruner = new CustomerOutboxPruner(customerOutbox, properties);
+        pruner.start();
+        return pruner;
+    }
+
+    /**
+     * A sender blocks while its client is slow. On virtual threads that costs
+     * nothing; otherwise senders share {@code sender-threads} platform threads,
+     * and a subscriber never has more than one send queued.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    @ConditionalOnProperty(name = "customer.outbox.enabled", havingValue = "true", matchIfMissing = true)
+    public CustomerChangeFeed customerChangeFeed(CustomerOutbox customerOutbox,
+                                                 CustomerOutboxProperties properties,
+                                                 @Qualifier("virtualThreadExecutor")
+                                                 ObjectProvider<ExecutorService> virtualThreadExecutor,
+                                                 MeterRegistry meterRegistry) {
+        CustomerOutboxProperties.Feed feed = properties.feed();
+        log.info("Streaming customer changes, polling every {}, {} subscribers more than {} behind",
+                feed.pollInterval(), feed.slowSubscriber(), feed.bufferSize());
+        ExecutorService senders = virtualThreadExecutor.getIfAvailable();
+        if (senders == null) {
+            AtomicInteger senderThreads = new AtomicInteger();
+            senders = Executors.newFixedThreadPool(feed.senderThreads(), runnable -> {
+                Thread thread = new Thread(runnable, "customer-change-feed-sender-" + senderThreads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        CustomerChangeFeed changeFeed = new CustomerChangeFeed(customerOutbox, feed,
+                Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "customer-change-feed");
+                    thread.setDaemon(true);
+                    return thread;
+                }),
+                senders,
+                meterRegistry);
+        changeFeed.start();
+        return changeFeed;
+    }
+}
@@ -0,0 +1,45 @@
+package com.atom.fullstack.customer;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "customer.outbox")
+public record CustomerOutboxProperties(
+        // the change feed; the outbox is filled and pruned regardless
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("24h") Duration retention,
+        @DefaultValue("1m") Duration pruneInterval,
+        @DefaultValue("5000") int pruneBatchSize,
+        @DefaultValue Feed feed) {
+
+    /**
+     * {@code bufferSize} is how many changes a subscriber may fall behind
+     * before {@code slowSubscriber} decides what happens to it.
+     * {@code senderThreads} is only used without virtual threads.
+     */
+    public record Feed(
+            @DefaultValue("200ms") Duration pollInterval,
+            @DefaultValue("500") int batchSize,
+            @DefaultValue("1000") int bufferSize,
+            @DefaultValue("DISCONNECT") SlowSubscriberPolicy slowSubscriber,
+            @DefaultValue("1000") int maxSubscribers,
+            @DefaultValue("15s") Duration heartbeatInterval,
+            @DefaultValue("30m") Duration timeout,
+            @DefaultValue("16") int senderThreads) {
+    }
+
+    public enum SlowSubscriberPolicy {
+        /**
+         * Close the stream; the client reconnects with {@code Last-Event-ID}
+         * and catches up from the outbox without losing anything.
+         */
+        DISCONNECT,
+        /**
+         * Keep the stream and drop the oldest buffered changes, telling the
+         * client how many with a {@code dropped} event.
+         */
+        DROP_OLDEST
+    }
+}
@@ -0,0 +1,51 @@
+package com.atom.fullstack.customer;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deletes outbox rows older than {@code customer.outbox.retention} every
+ * {@code prune-interval}. Every instance prunes; deleting the same old rows
+ * twice costs nothing but a short wait on their locks.
+ */
+@Slf4j
+public class CustomerOutboxPruner implements AutoCloseable {
+
+    private final CustomerOutbox outbox;
+    private final CustomerOutboxProperties properties;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "customer-outbox-pruner");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    CustomerOutboxPruner(CustomerOutbox outbox, CustomerOutboxProperties properties) {
+        this.outbox = outbox;
+        this.properties = properties;
+    }
+
+    void start() {
+        long intervalMillis = properties.pruneInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::prune, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void prune() {
+        try {
+            long pruned = outbox.pruneBefore(Instant.now().minus(properties.retention()), properties.pruneBatchSize());
+            if (pruned > 0) {
+                log.debug("Pruned {} customer outbox rows", pruned);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Pruning the customer outbox failed, retrying next interval", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
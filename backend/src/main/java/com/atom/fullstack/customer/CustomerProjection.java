@@ -0,0 +1,35 @@
+package com.atom.fullstack.customer;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * The fields of a customer a client asked for, read straight from those
+ * columns without building a {@link Customer}. Fields not asked for are null
+ * and left out of the JSON; every column is NOT NULL, so null never means
+ * anything else.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record CustomerProjection(Long id, String name, String email, Integer age, @JsonIgnore Long version) {
+
+    static CustomerProjection of(Customer customer, CustomerFields fields) {
+        return new CustomerProjection(
+                fields.contains(CustomerField.ID) ? customer.getId() : null,
+                fields.contains(CustomerField.NAME) ? customer.getName() : null,
+                fields.contains(CustomerField.EMAIL) ? customer.getEmail() : null,
+                fields.contains(CustomerField.AGE) ? customer.getAge() : null,
+                customer.getVersion());
+    }
+
+    /**
+     * This projection narrowed to {@code fields}.
+     */
+    CustomerProjection only(CustomerFields fields) {
+        return new CustomerProjection(
+                fields.contains(CustomerField.ID) ? id : null,
+                fields.contains(CustomerField.NAME) ? name : null,
+                fields.contains(CustomerField.EMAIL) ? email : null,
+                fields.contains(CustomerField.AGE) ? age : null,
+                version);
+    }
+}
@@ -0,0 +1,9 @@
+package com.atom.fullstack.customer;
+
+import java.util.List;
+
+/**
+ * A {@link CustomerBatch} of {@link CustomerProjection}s.
+ */
+public record CustomerProjectionBatch(List<CustomerProjection> customers, List<Long> missingIds) {
+}
@@ -0,0 +1,9 @@
+package com.atom.fullstack.customer;
+
+import java.util.List;
+
+/**
+ * A {@link CustomerPage} of {@link CustomerProjection}s.
+ */
+public record CustomerProjectionPage(List<CustomerProjection> customers, String nextCursor) {
+}
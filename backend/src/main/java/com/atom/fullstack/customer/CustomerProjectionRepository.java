@@ -0,0 +1,23 @@
+package com.atom.fullstack.customer;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Reads of {@link CustomerProjection}s for {@link CustomerRepository}. The
+ * columns depend on the request, which derived and {@code @Query} methods
+ * cannot express, see {@link CustomerProjectionRepositoryImpl}.
+ */
+public interface CustomerProjectionRepository {
+
+    /**
+     * Up to {@code limit} customers ordered by {@code sortKey}, after
+     * {@code after} when it is not null.
+     */
+    List<CustomerProjection> findProjections(CustomerFields fields, CustomerSortKey sortKey, Object after, int limit);
+
+    Optional<CustomerProjection> findProjectionById(Long id, CustomerFields fields);
+
+    List<CustomerProjection> findProjectionsByIds(Collection<Long> ids, CustomerFields fields);
+}
@@ -0,0 +1,100 @@
+package com.atom.fullstack.customer;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Selects only the attributes of the fields into a {@link Tuple}, so no
+ * {@link Customer} is built or enters the persistence context. The JPQL for a
+ * combination is built once, and Hibernate keeps its translation in the query
+ * plan cache.
+ */
+class CustomerProjectionRepositoryImpl implements CustomerProjectionRepository {
+
+    private final EntityManager entityManager;
+    private final ConcurrentMap<CustomerFields, Queries> queries = new ConcurrentHashMap<>();
+
+    CustomerProjectionRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public List<CustomerProjection> findProjections(CustomerFields fields, CustomerSortKey sortKey, Object after,
+                                                    int limit) {
+        Queries queries = queries(fields);
+        TypedQuery<Tuple> query;
+        if (after == null) {
+            query = entityManager.createQuery(queries.firstPage.get(sortKey), Tuple.class);
+        } else {
+            query = entityManager.createQuery(queries.nextPage.get(sortKey), Tuple.class)
+                    .setParameter("after", after);
+        }
+        return query.setMaxResults(limit)
+                .getResultList().stream()
+                .map(tuple -> projection(tuple, fields))
+                .toList();
+    }
+
+    @Override
+    public Optional<CustomerProjection> findProjectionById(Long id, CustomerFields fields) {
+        return entityManager.createQuery(queries(fields).byId, Tuple.class)
+                .setParameter("id", id)
+                .getResultList().stream()
+                .findFirst()
+                .map(tuple -> projection(tuple, fields));
+    }
+
+    @Override
+    public List<CustomerProjection> findProjectionsByIds(Collection<Long> ids, CustomerFields fields) {
+        return entityManager.createQuery(queries(fields).byIds, Tuple.class)
+                .setParameter("ids", ids)
+                .getResultList().stream()
+                .map(tuple -> projection(tuple, fields))
+                .toList();
+    }
+
+    private Queries queries(CustomerFields fields) {
+        return queries.computeIfAbsent(fields, Queries::new);
+    }
+
+    private static CustomerProjection projection(Tuple tuple, CustomerFields fields) {
+        return new CustomerProjection(
+                fields.contains(CustomerField.ID) ? tuple.get("id", Long.class) : null,
+                fields.contains(CustomerField.NAME) ? tuple.get("name", String.class) : null,
+                fields.contains(CustomerField.EMAIL) ? tuple.get("email", String.class) : null,
+                fields.contains(CustomerField.AGE) ? tuple.get("age", Integer.class) : null,
+                tuple.get("version", Long.class));
+    }
+
+    private static final class Queries {
+
+        private final String byId;
+        private final String byIds;
+        private final Map<CustomerSortKey, String> firstPage = new EnumMap<>(CustomerSortKey.class);
+        private final Map<CustomerSortKey, String> nextPage = new EnumMap<>(CustomerSortKey.class);
+
+        private Queries(CustomerFields fields) {
+            String select = Stream.concat(fields.fields().stream().map(CustomerField::column), Stream.of("version"))
+                    .map(attribute -> "c." + attribute + " as " + attribute)
+                    .collect(Collectors.joining(", ", "select ", " from Customer c"));
+            this.byId = select + " where c.id = :id";
+            this.byIds = select + " where c.id in :ids";
+            for (CustomerSortKey sortKey : CustomerSortKey.values()) {
+                String column = "c." + sortKey.column();
+                firstPage.put(sortKey, select + " order by " + column);
+                nextPage.put(sortKey, select + " where " + column + " > :after order by " + column);
+            }
+        }
+    }
+}
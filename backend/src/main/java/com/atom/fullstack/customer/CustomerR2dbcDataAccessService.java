@@ -0,0 +1,204 @@
+package com.atom.fullstack.customer;
+
+import io.r2dbc.spi.Readable;
+import lombok.RequiredArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@RequiredArgsConstructor
+public class CustomerR2dbcDataAccessService implements ReactiveCustomerDao {
+    static final int STREAM_FETCH_SIZE = 1_000;
+
+    private final DatabaseClient databaseClient;
+    private final ReactiveCustomerIdAllocator idAllocator;
+
+    @Override
+    public Flux<Customer> selectCustomers(CustomerCursor cursor, int limit) {
+        // the column comes from CustomerSortKey, never from the request
+        String column = cursor.sortKey().column();
+        if (cursor.isFirst()) {
+            var sql = """
+                    SELECT id, name, email, age, version
+                    FROM customer
+                    ORDER BY %s
+                    LIMIT :limit
+                    """.formatted(column);
+            return databaseClient.sql(sql)
+                    .bind("limit", limit)
+                    .map(CustomerR2dbcDataAccessService::mapRow)
+                    .all();
+        }
+        var sql = """
+                SELECT id, name, email, age, version
+                FROM customer
+                WHERE %1$s > :lastKey
+                ORDER BY %1$s
+                LIMIT :limit
+                """.formatted(column);
+        Object lastKey = cursor.sortKey() == CustomerSortKey.ID ? cursor.lastId() : cursor.lastKey();
+        return databaseClient.sql(sql)
+                .bind("lastKey", lastKey)
+                .bind("limit", limit)
+                .map(CustomerR2dbcDataAccessService::mapRow)
+                .all();
+    }
+
+    @Override
+    public Flux<Customer> streamAllCustomers() {
+        var sql = """
+                SELECT id, name, email, age, version
+                FROM customer
+                ORDER BY id
+                """;
+        // rows are pulled from a portal in chunks as downstream demand arrives
+        return databaseClient.sql(sql)
+                .filter(statement -> statement.fetchSize(STREAM_FETCH_SIZE))
+                .map(CustomerR2dbcDataAccessService::mapRow)
+                .all();
+    }
+
+    @Override
+    public Mono<Customer> selectCustomerById(Long id) {
+        var sql = """
+                SELECT id, name, email, age, version
+                FROM customer
+                WHERE id = :id
+                """;
+        return databaseClient.sql(sql)
+                .bind("id", id)
+                .map(CustomerR2dbcDataAccessService::mapRow)
+                .one();
+    }
+
+    @Override
+    public Mono<Long> selectCustomersChangeCount() {
+        var sql = """
+                SELECT coalesce(sum(changes), 0)
+                FROM customer_change_counter
+                """;
+        return databaseClient.sql(sql)
+                .map(row -> row.get(0, Long.class))
+                .one();
+    }
+
+    @Override
+    public Mono<Boolean> insertCustomer(Customer customer) {
+        var sql = """
+                INSERT INTO customer (id, name, email, age)
+                VALUES (:id, :name, :email, :age)
+                ON CONFLICT (email) DO NOTHING
+                RETURNING version
+                """;
+        // the column default would take a whole block from the sequence per row
+        return idAllocator.nextId().flatMap(id -> databaseClient.sql(sql)
+                .bind("id", id)
+                .bind("name", customer.getName())
+                .bind("email", customer.getEmail())
+                .bind("age", customer.getAge())
+                .map(row -> row.get("version", Long.class))
+                .one()
+                .map(version -> {
+                    customer.setId(id);
+                    customer.setVersion(version);
+                    return true;
+                })
+                .defaultIfEmpty(false));
+    }
+
+    @Override
+    public Mono<Boolean> existsCustomerById(Long id) {
+        var sql = """
+                SELECT EXISTS(
+                SELECT 1
+                FROM customer
+                WHERE id = :id
+                )
+                """;
+        return databaseClient.sql(sql)
+                .bind("id", id)
+                .map(row -> Boolean.TRUE.equals(row.get(0, Boolean.class)))
+                .one();
+    }
+
+    @Override
+    public Mono<Boolean> deleteCustomer(Long id) {
+        var sql = """
+                DELETE FROM customer
+                WHERE id = :id
+                """;
+        return databaseClient.sql(sql)
+                .bind("id", id)
+                .fetch()
+                .rowsUpdated()
+                .map(rows -> rows > 0);
+    }
+
+    @Override
+    public Mono<Boolean> deleteCustomerIfVersion(Long id, Long version) {
+        var sql = """
+                DELETE FROM customer
+                WHERE id = :id AND version = :version
+                """;
+        return databaseClient.sql(sql)
+                .bind("id", id)
+                .bind("version", version)
+                .fetch()
+                .rowsUpdated()
+                .map(rows -> rows > 0);
+    }
+
+    @Override
+    public Mono<Customer> updateCustomer(Customer update) {
+        List<String> assignments = new ArrayList<>(4);
+        Map<String, Object> args = new LinkedHashMap<>();
+        if (update.getName() != null) {
+            assignments.add("name = :name");
+            args.put("name", update.getName());
+        }
+        if (update.getEmail() != null) {
+            assignments.add("email = :email");
+            args.put("email", update.getEmail());
+        }
+        if (update.getAge() != null) {
+            assignments.add("age = :age");
+            args.put("age", update.getAge());
+        }
+        if (assignments.isEmpty()) {
+            return selectCustomerById(update.getId());
+        }
+        assignments.add("version = version + 1");
+        args.put("id", update.getId());
+        String condition = "id = :id";
+        if (update.getVersion() != null) {
+            condition += " AND version = :version";
+            args.put("version", update.getVersion());
+        }
+        var sql = """
+                UPDATE customer
+                SET %s
+                WHERE %s
+                RETURNING id, name, email, age, version
+                """.formatted(String.join(", ", assignments), condition);
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql);
+        for (Map.Entry<String, Object> arg : args.entrySet()) {
+            spec = spec.bind(arg.getKey(), arg.getValue());
+        }
+        return spec.map(CustomerR2dbcDataAccessService::mapRow).one();
+    }
+
+    private static Customer mapRow(Readable row) {
+        return new Customer(
+                row.get("id", Long.class),
+                row.get("name", String.class),
+                row.get("email", String.class),
+                row.get("age", Integer.class),
+                row.get("version", Long.class)
+        );
+    }
+}
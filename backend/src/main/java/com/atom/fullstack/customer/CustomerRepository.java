@@ -1,8 +1,162 @@
 package com.atom.fullstack.customer;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
-public interface CustomerRepository extends JpaRepository<Customer, Long>{
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+public interface CustomerRepository extends JpaRepository<Customer, Long>, CustomerProjectionRepository {
     boolean existsCustomerByEmail(String email);
     boolean existsCustomerById(Long id);
+
+    @Transactional
+    @Query(value = """
+            INSERT INTO customer (id, name, email, age)
+            VALUES (:id, :name, :email, :age)
+            ON CONFLICT (email) DO NOTHING
+            RETURNING version
+            """, nativeQuery = true)
+    Optional<Long> insertIfEmailAbsent(@Param("id") long id,
+                                       @Param("name") String name,
+                                       @Param("email") String email,
+                                       @Param("age") Integer age);
+
+    /**
+     * See {@link CustomerJDBCDataAccessService#insertCustomers} for why a whole
+     * chunk goes in one statement.
+     */
+    @Transactional
+    @Query(value = """
+            INSERT INTO customer (id, name, email, age)
+            SELECT * FROM unnest(CAST(:ids AS int8[]), CAST(:names AS varchar[]),
+                                 CAST(:emails AS varchar[]), CAST(:ages AS int[]))
+            RETURNING id, version
+            """, nativeQuery = true)
+    List<InsertedRow> insertAll(@Param("ids") Long[] ids,
+                                @Param("names") String[] names,
+                                @Param("emails") String[] emails,
+                                @Param("ages") Integer[] ages);
+
+    interface InsertedRow {
+        Long getId();
+        Long getVersion();
+    }
+
+    @Transactional
+    @Modifying
+    @Query("delete from Customer c where c.id = :id")
+    int deleteCustomerById(@Param("id") Long id);
+
+    @Transactional
+    @Modifying
+    @Query("delete from Customer c where c.id = :id and c.version = :version")
+    int deleteCustomerByIdAndVersion(@Param("id") Long id, @Param("version") Long version);
+
+    @Query("select c.version from Customer c where c.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    @Query(value = "SELECT coalesce(sum(changes), 0) FROM customer_change_counter", nativeQuery = true)
+    long countChanges();
+
+    /**
+     * See {@link CustomerJDBCDataAccessService#selectCustomerAgeBuckets} for
+     * how the shards of each age add up.
+     */
+    @Query(value = """
+            SELECT CAST(floor(age / CAST(:width AS numeric)) * :width AS int) AS "fromAge",
+                   CAST(sum(customers) AS bigint) AS "customers",
+                   min(age) AS "minAge",
+                   max(age) AS "maxAge",
+                   CAST(sum(CAST(age AS bigint) * customers) AS bigint) AS "ageSum"
+            FROM customer_age_summary
+            WHERE customers > 0 AND age BETWEEN :minAge AND :maxAge
+            GROUP BY 1
+            ORDER BY 1
+            """, nativeQuery = true)
+    List<AgeBucketRow> ageBuckets(@Param("minAge") int minAge,
+                                  @Param("maxAge") int maxAge,
+                                  @Param("width") int width);
+
+    interface AgeBucketRow {
+        Integer getFromAge();
+        Long getCustomers();
+        Integer getMinAge();
+        Integer getMaxAge();
+        Long getAgeSum();
+    }
+
+    @Query(value = """
+            SELECT coalesce(sum(customers), 0)
+            FROM customer_age_summary
+            WHERE age BETWEEN :minAge AND :maxAge
+            """, nativeQuery = true)
+    long countByAgeBetween(@Param("minAge") int minAge, @Param("maxAge") int maxAge);
+
+    @Query(value = "SELECT CAST(reltuples AS bigint) FROM pg_class WHERE oid = CAST('customer' AS regclass)", nativeQuery = true)
+    Optional<Long> estimateCount();
+
+    /**
+     * See {@link CustomerJDBCDataAccessService#searchCustomers} for how the
+     * indexes are used.
+     */
+    @Transactional(readOnly = true)
+    @Query(value = """
+            SELECT id, name, email, age, version, score
+            FROM (
+                SELECT id, name, email, age, version,
+                       CAST(CASE WHEN (lower(name) ~>=~ :low AND lower(name) ~<~ :high)
+                                   OR (lower(email) ~>=~ :low AND lower(email) ~<~ :high)
+                                 THEN 1 ELSE 0 END
+                            + greatest(similarity(name, :text), similarity(email, :text)) AS float8) AS score
+                FROM customer
+                WHERE (lower(name) ~>=~ :low AND lower(name) ~<~ :high)
+                   OR (lower(email) ~>=~ :low AND lower(email) ~<~ :high)
+                   OR name % :text
+                   OR email % :text
+            ) matches
+            WHERE :first OR score < :afterScore OR (score = :afterScore AND id > :afterId)
+            ORDER BY score DESC, id
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<SearchRow> search(@Param("low") String low,
+                           @Param("high") String high,
+                           @Param("text") String text,
+                           @Param("first") boolean first,
+                           @Param("afterScore") double afterScore,
+                           @Param("afterId") long afterId,
+                           @Param("limit") int limit);
+
+    interface SearchRow {
+        Long getId();
+        String getName();
+        String getEmail();
+        Integer getAge();
+        Long getVersion();
+        Double getScore();
+    }
+
+    @Query("select c.email from Customer c where c.email in :emails")
+    Set<String> findExistingEmails(@Param("emails") Collection<String> emails);
+
+    List<Customer> findAllBy(Pageable pageable);
+    List<Customer> findByIdGreaterThan(Long id, Pageable pageable);
+    List<Customer> findByEmailGreaterThan(String email, Pageable pageable);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select c from Customer c order by c.id")
+    Stream<Customer> streamAllBy();
 }
@@ -0,0 +1,40 @@
+package com.atom.fullstack.customer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Puts a {@link CustomerResponseCacheFilter} in front of the customer read
+ * endpoints when {@code customer.response-cache.enabled} is set.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(name = "customer.response-cache.enabled", havingValue = "true")
+@EnableConfigurationProperties(CustomerResponseCacheProperties.class)
+@Slf4j
+public class CustomerResponseCacheConfig {
+
+    @Bean
+    public CustomerResponseCacheFilter customerResponseCacheFilter(CustomerResponseCacheProperties properties,
+                                                                   MeterRegistry meterRegistry) {
+        log.info("Caching serialized customer responses, up to {}", properties.maximumSize());
+        CustomerResponseCacheFilter filter = new CustomerResponseCacheFilter(properties);
+        CaffeineCacheMetrics.monitor(meterRegistry, filter.cache(), "customerResponses");
+        return filter;
+    }
+
+    @Bean
+    public FilterRegistrationBean<CustomerResponseCacheFilter> customerResponseCacheFilterRegistration(
+            CustomerResponseCacheFilter filter) {
+        FilterRegistrationBean<CustomerResponseCacheFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.addUrlPatterns("/api/v1/customer", "/api/v1/customer/*");
+        return registration;
+    }
+}
@@ -0,0 +1,266 @@
+package com.atom.fullstack.customer;
+
+import com.atom.fullstack.replica.PrimaryPin;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Caches the bytes of successful customer and customer page responses, already
+ * compressed with every encoding we offer, so a hit costs neither a query nor
+ * Jackson nor a compressor. The variant sent is picked from
+ * {@code Accept-Encoding}; bodies smaller than {@code minimum-compress-size} are
+ * only kept uncompressed.
+ * <p>
+ * Entries are weighed by their bytes against {@code maximum-size}. A
+ * {@link CustomerChangedEvent} drops the changed customer and every page, and
+ * so do the writes of other instances, through the
+ * {@link CustomerCacheInvalidator}; while it cannot tell whether it missed any
+ * the cache is bypassed. A response built while a write landed is not kept,
+ * since it may show the data from before the write.
+ */
+public class CustomerResponseCacheFilter extends OncePerRequestFilter implements CustomerCacheInvalidator.Target {
+
+    private static final Pattern CACHED_PATH = Pattern.compile("/api/v1/customer(?:/(\\d+))?");
+    // rough size of the entry and key objects themselves
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private final Cache<CacheKey, CachedResponse> cache;
+    private final int minimumCompressSize;
+    private final AtomicLong generation = new AtomicLong();
+    private volatile boolean bypassed;
+
+    CustomerResponseCacheFilter(CustomerResponseCacheProperties properties) {
+        this.minimumCompressSize = (int) properties.minimumCompressSize().toBytes();
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(properties.maximumSize().toBytes())
+                .weigher((CacheKey key, CachedResponse response) -> response.weight())
+                .expireAfterWrite(properties.expireAfterWrite())
+                .recordStats()
+                .build();
+    }
+
+    Cache<CacheKey, CachedResponse> cache() {
+        return cache;
+    }
+
+    @EventListener
+    void customerChanged(CustomerChangedEvent event) {
+        invalidate(event.customerId() == null ? Set.of() : Set.of(event.customerId()));
+    }
+
+    /**
+     * Drops these customers and every page.
+     */
+    @Override
+    public void invalidate(Collection<Long> ids) {
+        // bump before evicting, see doFilterInternal
+        generation.incrementAndGet();
+        Set<Long> changed = Set.copyOf(ids);
+        cache.asMap().keySet().removeIf(key -> key.customerId() == null || changed.contains(key.customerId()));
+    }
+
+    @Override
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    @Override
+    public void bypass(boolean bypassed) {
+        this.bypassed = bypassed;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !HttpMethod.GET.matches(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        CacheKey key = bypassed ? null : keyOf(request);
+        if (key == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        CachedResponse cached = cache.getIfPresent(key);
+        if (cached != null) {
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(cached.contentType());
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            if (cached.eTag() != null && new ServletWebRequest(request, response).checkNotModified(cached.eTag())) {
+                return;
+            }
+            write(cached, request, response);
+            return;
+        }
+
+        long generationBefore = generation.get();
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        // a response kept for minutes must not be rendered from a lagging replica
+        try (PrimaryPin ignored = PrimaryPin.pin()) {
+            chain.doFilter(request, wrapper);
+        }
+        if (wrapper.getStatus() != HttpServletResponse.SC_OK
+                || wrapper.getHeader(HttpHeaders.CONTENT_ENCODING) != null) {
+            wrapper.copyBodyToResponse();
+            return;
+        }
+        CachedResponse built = CachedResponse.of(wrapper.getContentType(), wrapper.getHeader(HttpHeaders.ETAG),
+                wrapper.getContentAsByteArray(), minimumCompressSize);
+        cache.put(key, built);
+        // put first, then check: a write after the check evicts the entry itself
+        if (generation.get() != generationBefore) {
+            cache.invalidate(key);
+        }
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        write(built, request, response);
+    }
+
+    private static void write(CachedResponse cached, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        Encoding encoding = cached.available(Encoding.negotiate(request.getHeader(HttpHeaders.ACCEPT_ENCODING)));
+        byte[] body = cached.body(encoding);
+        if (encoding != Encoding.IDENTITY) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, encoding.token);
+        }
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    private static CacheKey keyOf(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        Matcher matcher = CACHED_PATH.matcher(path);
+        if (!matcher.matches()) {
+            return null;
+        }
+        String id = matcher.group(1);
+        if (id != null && id.length() > 18) {
+            return null;
+        }
+        return new CacheKey(id == null ? null : Long.valueOf(id), request.getQueryString());
+    }
+
+    /**
+     * {@code customerId} is null for pages and batches of customers.
+     */
+    record CacheKey(Long customerId, String query) {
+    }
+
+    record CachedResponse(String contentType, String eTag, byte[] identity, byte[] gzip, byte[] deflate) {
+
+        static CachedResponse of(String contentType, String eTag, byte[] body, int minimumCompressSize) {
+            if (body.length < minimumCompressSize) {
+                return new CachedResponse(contentType, eTag, body, null, null);
+            }
+            return new CachedResponse(contentType, eTag, body,
+                    smallerOrNull(compress(body, Encoding.GZIP), body),
+                    smallerOrNull(compress(body, Encoding.DEFLATE), body));
+        }
+
+        Encoding available(Encoding preferred) {
+            return body(preferred) == null ? Encoding.IDENTITY : preferred;
+        }
+
+        byte[] body(Encoding encoding) {
+            return switch (encoding) {
+                case GZIP -> gzip;
+                case DEFLATE -> deflate;
+                case IDENTITY -> identity;
+            };
+        }
+
+        int weight() {
+            return ENTRY_OVERHEAD + identity.length
+                    + (gzip == null ? 0 : gzip.length)
+                    + (deflate == null ? 0 : deflate.length);
+        }
+
+        private static byte[] smallerOrNull(byte[] compressed, byte[] body) {
+            return compressed.length < body.length ? compressed : null;
+        }
+
+        private static byte[] compress(byte[] body, Encoding encoding) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 2);
+            try (OutputStream compressing = encoding == Encoding.GZIP
+                    ? new GZIPOutputStream(out)
+                    : new DeflaterOutputStream(out)) {
+                compressing.write(body);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    enum Encoding {
+        GZIP("gzip"),
+        DEFLATE("deflate"),
+        IDENTITY("identity");
+
+        private final String token;
+
+        Encoding(String token) {
+            this.token = token;
+        }
+
+        /**
+         * Our preferred encoding among those the client accepts: gzip, then
+         * deflate. Quality values only matter where they are zero.
+         */
+        static Encoding negotiate(String acceptEncoding) {
+            if (acceptEncoding == null) {
+                return IDENTITY;
+            }
+            boolean gzip = false;
+            boolean deflate = false;
+            for (String part : acceptEncoding.split(",")) {
+                String[] params = part.split(";");
+                String coding = params[0].trim().toLowerCase(Locale.ROOT);
+                if (quality(params) <= 0) {
+                    continue;
+                }
+                gzip |= coding.equals("gzip") || coding.equals("x-gzip") || coding.equals("*");
+                deflate |= coding.equals("deflate");
+            }
+            return gzip ? GZIP : deflate ? DEFLATE : IDENTITY;
+        }
+
+        private static double quality(String[] params) {
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(param.substring(2));
+                    } catch (NumberFormatException e) {
+                        return 0;
+                    }
+                }
+            }
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.atom.fullstack.customer;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "customer.response-cache")
+public record CustomerResponseCacheProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("64MB") DataSize maximumSize,
+        @DefaultValue("10m") Duration expireAfterWrite,
+        @DefaultValue("256B") DataSize minimumCompressSize) {
+}
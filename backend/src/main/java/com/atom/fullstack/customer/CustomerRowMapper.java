@@ -11,9 +11,26 @@ public class CustomerRowMapper implements RowMapper<Customer>{
                 rs.getLong("id"),
                 rs.getString("name"),
                 rs.getString("email"),
-                rs.getInt("age")
+                rs.getInt("age"),
+                rs.getLong("version")
         );
         return customer;
     }
 
+    /**
+     * Maps rows selected with {@link CustomerFields#columns()}, reading only
+     * those columns.
+     */
+    static RowMapper<CustomerProjection> projection(CustomerFields fields) {
+        boolean id = fields.contains(CustomerField.ID);
+        boolean name = fields.contains(CustomerField.NAME);
+        boolean email = fields.contains(CustomerField.EMAIL);
+        boolean age = fields.contains(CustomerField.AGE);
+        return (rs, rowNum) -> new CustomerProjection(
+                id ? rs.getLong("id") : null,
+                name ? rs.getString("name") : null,
+                email ? rs.getString("email") : null,
+                age ? rs.getInt("age") : null,
+                rs.getLong("version"));
+    }
 }
@@ -0,0 +1,39 @@
+package com.atom.fullstack.customer;
+
+import com.atom.fullstack.exception.RequestValidationException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position in ranked search results: the score and id of the last hit already
+ * returned. Results are ordered by score descending, then id, so the pair is
+ * unique and the next page is a keyset continuation.
+ */
+public record CustomerSearchCursor(double score, long lastId) {
+
+    private static final char SEPARATOR = ':';
+
+    public static CustomerSearchCursor after(CustomerSearchHit hit) {
+        return new CustomerSearchCursor(hit.score(), hit.customer().getId());
+    }
+
+    public String encode() {
+        // Double.toString round-trips exactly, so the boundary row is not repeated
+        String raw = Double.toString(score) + SEPARATOR + lastId;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static CustomerSearchCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            return new CustomerSearchCursor(
+                    Double.parseDouble(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new RequestValidationException("Invalid cursor");
+        }
+    }
+}
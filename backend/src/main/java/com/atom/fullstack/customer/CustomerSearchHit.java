@@ -0,0 +1,8 @@
+package com.atom.fullstack.customer;
+
+/**
+ * A customer matching a search, with its rank: 1 plus the trigram similarity
+ * when name or email starts with the query, just the similarity otherwise.
+ */
+public record CustomerSearchHit(Customer customer, double score) {
+}
@@ -0,0 +1,31 @@
+package com.atom.fullstack.customer;
+
+import java.util.Locale;
+
+/**
+ * Text searched for in customer names and emails. Prefix matches are looked up
+ * as the range {@code [prefixLow, prefixHigh)} of the lowercased column rather
+ * than with {@code LIKE 'text%'}: the planner can only turn a LIKE into an
+ * index range when the pattern is a literal, and ours is a bind parameter.
+ */
+public record CustomerSearchQuery(String text) {
+
+    public static final int MAX_LENGTH = 100;
+
+    public String prefixLow() {
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * The lowercased text with its last code point incremented: the first
+     * string, in the byte order text_pattern_ops uses, past every string that
+     * starts with the text.
+     */
+    public String prefixHigh() {
+        String low = prefixLow();
+        int last = low.codePointBefore(low.length());
+        int next = last + 1 == Character.MIN_SURROGATE ? Character.MAX_SURROGATE + 1 : last + 1;
+        return low.substring(0, low.length() - Character.charCount(last))
+                + new String(Character.toChars(next));
+    }
+}
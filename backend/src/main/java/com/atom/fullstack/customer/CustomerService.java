@@ -1,91 +1,451 @@
 package com.atom.fullstack.customer;
 
 import com.atom.fullstack.exception.DuplicateResourceException;
+import com.atom.fullstack.exception.PreconditionFailedException;
+import com.atom.fullstack.exception.RequestValidationException;
 import com.atom.fullstack.exception.ResourceNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.postgresql.util.PSQLException;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static com.atom.fullstack.logging.SamplingTurboFilter.HIGH_VOLUME;
 
 @Service
 @Slf4j
 public class CustomerService {
 
+    static final int DEFAULT_PAGE_SIZE = 20;
+    static final int MAX_PAGE_SIZE = 100;
+    static final int DEFAULT_AGE_BUCKET_WIDTH = 10;
+    // still fits a GET's query string under Tomcat's 8KB header limit
+    static final int MAX_BATCH_SIZE = 500;
+    static final String EMAIL_CONSTRAINT = "customer_email_key";
+    private static final String UNIQUE_VIOLATION = "23505";
+
     private final CustomerDao customerDao;
+    private final ApplicationEventPublisher events;
 
-    public CustomerService(@Qualifier("jdbc")CustomerDao customerDao) {
+    public CustomerService(@Qualifier("customerDao") CustomerDao customerDao) {
+        this(customerDao, event -> {});
+    }
+
+    /**
+     * {@code events} receives a {@link CustomerChangedEvent} after every write.
+     */
+    @Autowired
+    public CustomerService(@Qualifier("customerDao") CustomerDao customerDao, ApplicationEventPublisher events) {
         this.customerDao = customerDao;
+        this.events = events;
+    }
+
+    public CustomerPage getCustomers(String cursorToken, String sort, Integer size){
+        CustomerCursor cursor = cursorToken == null || cursorToken.isBlank()
+                ? CustomerCursor.first(CustomerSortKey.fromParam(sort))
+                : CustomerCursor.decode(cursorToken);
+        int pageSize = pageSize(size);
+        log.info(HIGH_VOLUME, "Fetching customers page of {}", pageSize);
+        // one extra row tells us whether another page exists without a count query
+        List<Customer> customers = customerDao.selectCustomers(cursor, pageSize + 1);
+        if (customers.size() <= pageSize) {
+            return new CustomerPage(customers, null);
+        }
+        List<Customer> page = List.copyOf(customers.subList(0, pageSize));
+        Customer last = page.get(pageSize - 1);
+        return new CustomerPage(page, CustomerCursor.after(cursor.sortKey(), last).encode());
+    }
+
+    /**
+     * {@link #getCustomers} reading and returning only the {@code fields} asked
+     * for. The sort key is read too, for the cursor, and dropped again when it
+     * was not asked for.
+     */
+    public CustomerProjectionPage getCustomerProjections(String cursorToken, String sort, Integer size,
+                                                         String fieldsParam){
+        CustomerFields fields = CustomerFields.parse(fieldsParam);
+        CustomerCursor cursor = cursorToken == null || cursorToken.isBlank()
+                ? CustomerCursor.first(CustomerSortKey.fromParam(sort))
+                : CustomerCursor.decode(cursorToken);
+        int pageSize = pageSize(size);
+        CustomerFields read = fields.with(cursor.sortKey().field());
+        List<CustomerProjection> customers = customerDao.selectCustomerProjections(cursor, pageSize + 1, read);
+        String nextCursor = null;
+        if (customers.size() > pageSize) {
+            customers = customers.subList(0, pageSize);
+            nextCursor = CustomerCursor.after(cursor.sortKey(), customers.get(pageSize - 1)).encode();
+        }
+        if (read != fields) {
+            customers = customers.stream().map(customer -> customer.only(fields)).toList();
+        }
+        return new CustomerProjectionPage(List.copyOf(customers), nextCursor);
+    }
+
+    /**
+     * Ranked search over names and emails, paged like {@link #getCustomers} but
+     * with a cursor on the rank.
+     */
+    public CustomerPage searchCustomers(String text, String cursorToken, Integer size){
+        if (text == null || text.isBlank()) {
+            throw new RequestValidationException("Search query must not be blank");
+        }
+        String trimmed = text.strip();
+        if (trimmed.length() > CustomerSearchQuery.MAX_LENGTH) {
+            throw new RequestValidationException(
+                    "Search query must be at most " + CustomerSearchQuery.MAX_LENGTH + " characters");
+        }
+        CustomerSearchCursor after = cursorToken == null || cursorToken.isBlank()
+                ? null
+                : CustomerSearchCursor.decode(cursorToken);
+        int pageSize = pageSize(size);
+        List<CustomerSearchHit> hits = customerDao.searchCustomers(new CustomerSearchQuery(trimmed), after, pageSize + 1);
+        List<Customer> customers = hits.stream().limit(pageSize).map(CustomerSearchHit::customer).toList();
+        if (hits.size() <= pageSize) {
+            return new CustomerPage(customers, null);
+        }
+        return new CustomerPage(customers, CustomerSearchCursor.after(hits.get(pageSize - 1)).encode());
     }
 
-    public List<Customer> getAllCustomers(){
-        log.info("Fetching all customers");
-        return customerDao.selectAllCustomers();
+    private static int pageSize(Integer size) {
+        if (size != null && size < 1) {
+            throw new RequestValidationException("Page size must be positive");
+        }
+        return size == null ? DEFAULT_PAGE_SIZE : Math.min(size, MAX_PAGE_SIZE);
+    }
 
+    @Transactional(readOnly = true)
+    public void exportCustomers(Consumer<Customer> consumer){
+        log.info("Exporting all customers");
+        try (Stream<Customer> customers = customerDao.streamAllCustomers()) {
+            customers.forEach(consumer);
+        }
     }
 
     public Customer getCustomerById(Long id){
-        log.debug("Fetching customer by id: " + id);
+        log.debug("Fetching customer by id: {}", id);
         return customerDao.selectCustomerById(id)
-                .map(customer -> {
-                    log.info("Customer found: " + customer);
-                    return customer;
-                })
                 .orElseThrow(
                         () ->{
-                            log.error("Customer " + id + " does not exist");
+                            // a miss is the client's problem, not ours
+                            log.debug("Customer {} does not exist", id);
                             return new ResourceNotFoundException("Customer " + id + " does not exist");
                         }
                 );
     }
 
-    public void addCustomer(CustomerRegistrationRequest customerRegistrationRequest) {
-        if (customerDao.existsCustomerByEmail(customerRegistrationRequest.email())){
-            throw new DuplicateResourceException("Email already taken");
+    /**
+     * The customers with these ids in one query, in the order asked for with
+     * repeated ids answered once. Unknown ids are listed as missing rather
+     * than failing the whole batch.
+     */
+    public CustomerBatch getCustomersByIds(List<Long> ids){
+        Set<Long> distinct = batchIds(ids);
+        log.debug("Fetching {} customers by id", distinct.size());
+        Map<Long, Customer> found = new HashMap<>();
+        customerDao.selectCustomersByIds(distinct).forEach(customer -> found.put(customer.getId(), customer));
+        List<Customer> customers = new ArrayList<>(found.size());
+        List<Long> missing = new ArrayList<>();
+        for (Long id : distinct) {
+            Customer customer = found.get(id);
+            if (customer == null) {
+                missing.add(id);
+            } else {
+                customers.add(customer);
+            }
+        }
+        return new CustomerBatch(customers, missing);
+    }
+
+    /**
+     * {@link #getCustomerById} reading and returning only the {@code fields}
+     * asked for.
+     */
+    public CustomerProjection getCustomerProjectionById(Long id, String fieldsParam){
+        CustomerFields fields = CustomerFields.parse(fieldsParam);
+        return customerDao.selectCustomerProjectionById(id, fields)
+                .orElseThrow(() -> new ResourceNotFoundException("Customer " + id + " does not exist"));
+    }
+
+    /**
+     * {@link #getCustomersByIds} reading and returning only the {@code fields}
+     * asked for, which always include the id the batch is matched up by.
+     */
+    public CustomerProjectionBatch getCustomerProjectionsByIds(List<Long> ids, String fieldsParam){
+        CustomerFields fields = CustomerFields.parse(fieldsParam);
+        Set<Long> distinct = batchIds(ids);
+        Map<Long, CustomerProjection> found = new HashMap<>();
+        customerDao.selectCustomerProjectionsByIds(distinct, fields)
+                .forEach(customer -> found.put(customer.id(), customer));
+        List<CustomerProjection> customers = new ArrayList<>(found.size());
+        List<Long> missing = new ArrayList<>();
+        for (Long id : distinct) {
+            CustomerProjection customer = found.get(id);
+            if (customer == null) {
+                missing.add(id);
+            } else {
+                customers.add(customer);
+            }
+        }
+        return new CustomerProjectionBatch(customers, missing);
+    }
+
+    private static Set<Long> batchIds(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            throw new RequestValidationException("ids must not be empty");
+        }
+        // contains(null) throws on List.of and other immutable lists
+        if (ids.stream().anyMatch(Objects::isNull)) {
+            throw new RequestValidationException("ids must not contain null");
+        }
+        Set<Long> distinct = new LinkedHashSet<>(ids);
+        if (distinct.size() > MAX_BATCH_SIZE) {
+            throw new RequestValidationException("At most " + MAX_BATCH_SIZE + " ids per batch");
+        }
+        return distinct;
+    }
+
+    /**
+     * Version of the customer, for answering a conditional GET without loading it.
+     */
+    public long getCustomerVersion(Long id){
+        return customerDao.selectCustomerVersion(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Customer " + id + " does not exist"));
+    }
+
+    public long getCustomersChangeCount(){
+        return customerDao.selectCustomersChangeCount();
+    }
+
+    /**
+     * Count, age range, average age and age histogram of the customers aged
+     * {@code [minAge, maxAge]}, a null bound leaving that side open. Folded
+     * together from per-age buckets, so it costs the same however many
+     * customers there are.
+     */
+    public CustomerStatistics getCustomerStatistics(Integer minAge, Integer maxAge, Integer bucketWidth){
+        if (bucketWidth != null && bucketWidth < 1) {
+            throw new RequestValidationException("Bucket width must be positive");
+        }
+        int width = bucketWidth == null ? DEFAULT_AGE_BUCKET_WIDTH : bucketWidth;
+        List<CustomerAgeBucket> buckets = customerDao.selectCustomerAgeBuckets(
+                lowerAge(minAge, maxAge), upperAge(maxAge), width);
+        long count = 0;
+        long ageSum = 0;
+        Integer youngest = null;
+        Integer oldest = null;
+        List<CustomerStatistics.AgeBucket> histogram = new ArrayList<>(buckets.size());
+        for (CustomerAgeBucket bucket : buckets) {
+            count += bucket.customers();
+            ageSum += bucket.ageSum();
+            youngest = youngest == null ? bucket.minAge() : Math.min(youngest, bucket.minAge());
+            oldest = oldest == null ? bucket.maxAge() : Math.max(oldest, bucket.maxAge());
+            int toAge = (int) Math.min((long) bucket.fromAge() + width - 1, Integer.MAX_VALUE);
+            histogram.add(new CustomerStatistics.AgeBucket(bucket.fromAge(), toAge, bucket.customers()));
         }
-        log.info("Inserting customer");
+        Double averageAge = count == 0 ? null : (double) ageSum / count;
+        return new CustomerStatistics(count, averageAge, youngest, oldest, histogram);
+    }
+
+    /**
+     * Number of customers aged {@code [minAge, maxAge]}. Without {@code exact}
+     * and without bounds it is the planner's estimate of the table size, which
+     * reads no customer data at all; the estimate is only as fresh as the last
+     * vacuum or analyze. Bounded counts are always exact.
+     */
+    public CustomerCount countCustomers(Integer minAge, Integer maxAge, boolean exact){
+        if (!exact && minAge == null && maxAge == null) {
+            Optional<Long> estimate = customerDao.estimateCustomerCount();
+            if (estimate.isPresent()) {
+                return new CustomerCount(estimate.get(), false);
+            }
+        }
+        return new CustomerCount(customerDao.countCustomers(lowerAge(minAge, maxAge), upperAge(maxAge)), true);
+    }
+
+    private static int lowerAge(Integer minAge, Integer maxAge) {
+        if (minAge != null && maxAge != null && minAge > maxAge) {
+            throw new RequestValidationException("minAge must not be greater than maxAge");
+        }
+        return minAge == null ? Integer.MIN_VALUE : minAge;
+    }
+
+    private static int upperAge(Integer maxAge) {
+        return maxAge == null ? Integer.MAX_VALUE : maxAge;
+    }
+
+    /**
+     * Whether {@code e} is a violation of the unique email constraint, rather
+     * than of any other constraint a write could break. The JDBC driver names
+     * the constraint in its server message; R2DBC and the exceptions built
+     * without one only name it in their message.
+     */
+    static boolean isEmailTaken(DataIntegrityViolationException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof PSQLException psql && psql.getServerErrorMessage() != null) {
+                return UNIQUE_VIOLATION.equals(psql.getSQLState())
+                        && EMAIL_CONSTRAINT.equals(psql.getServerErrorMessage().getConstraint());
+            }
+            if (cause.getMessage() != null && cause.getMessage().contains(EMAIL_CONSTRAINT)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Registers the customer and returns it as stored, with its id and version.
+     */
+    public Customer addCustomer(CustomerRegistrationRequest customerRegistrationRequest) {
         Customer customer = Customer.builder()
                 .name(customerRegistrationRequest.name())
                 .email(customerRegistrationRequest.email())
                 .age(customerRegistrationRequest.age())
                 .build();
-        customerDao.insertCustomer(customer);
+        if (!customerDao.insertCustomer(customer)) {
+            throw new DuplicateResourceException("Email already taken");
+        }
+        log.atInfo().addKeyValue("customerId", customer.getId()).log("Customer registered");
+        events.publishEvent(new CustomerChangedEvent(customer.getId()));
+        return customer;
     }
 
-    public void deleteCustomer(Long id){
-        log.info("Deleting customer by id: " + id);
-        if (!customerDao.existsCustomerById(id)){
-            throw new ResourceNotFoundException("Customer " + id + " does not exist");
+    /**
+     * Registers one chunk of a bulk request. Email uniqueness for the whole chunk
+     * is checked with a single query and the new customers are inserted in one
+     * statement. {@code firstIndex} is the position of the chunk in the full request,
+     * so results can be matched back to the items the client sent.
+     */
+    public List<CustomerBulkResult> addCustomers(List<CustomerRegistrationRequest> requests, int firstIndex) {
+        CustomerBulkResult[] results = new CustomerBulkResult[requests.size()];
+        Map<String, Integer> candidates = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            CustomerRegistrationRequest request = requests.get(i);
+            if (request == null || request.name() == null || request.email() == null || request.age() == null) {
+                results[i] = CustomerBulkResult.invalid(firstIndex + i, request == null ? null : request.email());
+            } else if (candidates.putIfAbsent(request.email(), i) != null) {
+                results[i] = CustomerBulkResult.duplicate(firstIndex + i, request.email(), "Email repeated in request");
+            }
         }
-        customerDao.deleteCustomer(id);
-    }
 
-    public void updateCustomer(Long id, CustomerUpdateRequest updateRequest) {
-        Customer customer = getCustomerById(id);
-        boolean changed = false;
+        Set<String> existingEmails = customerDao.selectExistingEmails(candidates.keySet());
+        List<Customer> customers = new ArrayList<>(candidates.size());
+        List<Integer> positions = new ArrayList<>(candidates.size());
+        candidates.forEach((email, i) -> {
+            if (existingEmails.contains(email)) {
+                results[i] = CustomerBulkResult.duplicate(firstIndex + i, email, "Email already taken");
+            } else {
+                CustomerRegistrationRequest request = requests.get(i);
+                customers.add(new Customer(request.name(), request.email(), request.age()));
+                positions.add(i);
+            }
+        });
 
-        if (updateRequest.name()  != null && !updateRequest.name().equals(customer.getName())) {
-            customer.setName(updateRequest.name());
-            changed = true;
-        }
-        if (updateRequest.email() != null && !updateRequest.email().equals(customer.getEmail())) {
-            if (customerDao.existsCustomerByEmail(updateRequest.email())) {
-                throw new DuplicateResourceException("Email already taken");
+        log.info("Inserting {} customers in bulk", customers.size());
+        try {
+            customerDao.insertCustomers(customers);
+            positions.forEach(i -> results[i] = CustomerBulkResult.created(firstIndex + i, requests.get(i).email()));
+        } catch (DataIntegrityViolationException e) {
+            if (!isEmailTaken(e)) {
+                throw e;
+            }
+            // a concurrent registration took one of the emails after our check,
+            // the batch was rolled back so fall back to inserting one at a time
+            log.warn("Bulk insert lost a race on email uniqueness, retrying row by row");
+            for (int c = 0; c < customers.size(); c++) {
+                int i = positions.get(c);
+                String email = customers.get(c).getEmail();
+                results[i] = customerDao.insertCustomer(customers.get(c))
+                        ? CustomerBulkResult.created(firstIndex + i, email)
+                        : CustomerBulkResult.duplicate(firstIndex + i, email, "Email already taken");
             }
-            customer.setEmail(updateRequest.email());
-            changed = true;
         }
-        if (updateRequest.age() != null && !updateRequest.age().equals(customer.getAge())) {
-            customer.setAge(updateRequest.age());
-            changed = true;
+        if (!customers.isEmpty()) {
+            events.publishEvent(new CustomerChangedEvent(null));
+        }
+        return Arrays.asList(results);
+    }
+
+    public void deleteCustomer(Long id){
+        deleteCustomer(id, null);
+    }
+
+    /**
+     * Deletes the customer. A non-null {@code expectedVersion} comes from If-Match
+     * and makes the delete fail with 412 if the customer was changed since the
+     * client read it.
+     */
+    public void deleteCustomer(Long id, Long expectedVersion){
+        log.info("Deleting customer by id: {}", id);
+        boolean deleted = expectedVersion == null
+                ? customerDao.deleteCustomer(id)
+                : customerDao.deleteCustomerIfVersion(id, expectedVersion);
+        if (!deleted){
+            if (expectedVersion != null && customerDao.existsCustomerById(id)) {
+                throw new PreconditionFailedException("Customer " + id + " has been modified");
+            }
+            throw new ResourceNotFoundException("Customer " + id + " does not exist");
         }
+        events.publishEvent(new CustomerChangedEvent(id));
+    }
 
-        if (changed) {
-            log.info("Updating customer");
-            customerDao.updateCustomer(customer);
-        } else {
-            log.error("No changes detected");
+    /**
+     * Applies the non-null fields of the request in a single conditional UPDATE.
+     * A non-null {@code expectedVersion} comes from If-Match and makes the update
+     * fail with 412 if the customer was changed since the client read it.
+     */
+    public Customer updateCustomer(Long id, CustomerUpdateRequest updateRequest, Long expectedVersion) {
+        if (updateRequest.name() == null && updateRequest.email() == null && updateRequest.age() == null) {
+            log.debug("No changes detected for customer {}", id);
+            Customer customer = getCustomerById(id);
+            if (expectedVersion != null && !expectedVersion.equals(customer.getVersion())) {
+                throw new PreconditionFailedException("Customer " + id + " has been modified");
+            }
+            return customer;
         }
+        Customer update = Customer.builder()
+                .id(id)
+                .name(updateRequest.name())
+                .email(updateRequest.email())
+                .age(updateRequest.age())
+                .version(expectedVersion)
+                .build();
+        log.info("Updating customer {}", id);
+        Optional<Customer> updated;
+        try {
+            updated = customerDao.updateCustomer(update);
+        } catch (OptimisticLockingFailureException e) {
+            throw new PreconditionFailedException("Customer " + id + " has been modified");
+        } catch (DataIntegrityViolationException e) {
+            if (!isEmailTaken(e)) {
+                throw e;
+            }
+            throw new DuplicateResourceException("Email already taken");
+        }
+        updated.ifPresent(customer -> events.publishEvent(new CustomerChangedEvent(id)));
+        return updated.orElseThrow(() -> {
+            // only pay for the extra lookup when we have to tell 404 from 412
+            if (expectedVersion != null && customerDao.existsCustomerById(id)) {
+                return new PreconditionFailedException("Customer " + id + " has been modified");
+            }
+            return new ResourceNotFoundException("Customer " + id + " does not exist");
+        });
     }
 }
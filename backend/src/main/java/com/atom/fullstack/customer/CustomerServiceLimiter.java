@@ -0,0 +1,126 @@
+package com.atom.fullstack.customer;
+
+import com.atom.fullstack.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Puts a {@link GradientLimit} in front of {@link CustomerService}, one per
+ * class of call so a bulk import cannot starve lookups and a burst of cheap
+ * lookups cannot hide how slow the pages are getting. A call over the limit
+ * fails at once with a 503 and {@code Retry-After} instead of waiting for a
+ * connection behind calls that are already slow.
+ * <p>
+ * Calls are classified by name: {@code add*}, {@code update*} and
+ * {@code delete*} are writes, pages, searches and aggregates are queries, and
+ * everything else is a read of a few rows by id. Exports are left alone, they
+ * run for as long as the table takes to stream and would teach the limit
+ * nothing about a single query. With group commit, registrations are left to
+ * its queue: they wait there to share a transaction, and a write limit below
+ * the batch size would only keep the batches small.
+ */
+@Aspect
+@Order(Ordered.HIGHEST_PRECEDENCE)
+class CustomerServiceLimiter {
+
+    static final String METRIC_NAME = "customer.limit";
+    private static final Set<String> WRITE_PREFIXES = Set.of("add", "update", "delete");
+    private static final Set<String> QUERIES = Set.of(
+            "getCustomers", "getCustomerProjections", "searchCustomers", "getCustomerStatistics", "countCustomers");
+    private static final String REGISTRATION = "addCustomer";
+
+    private final Duration retryAfter;
+    private final boolean groupCommit;
+    private final Kind reads;
+    private final Kind queries;
+    private final Kind writes;
+
+    CustomerServiceLimiter(CustomerLimitProperties properties, boolean groupCommit, MeterRegistry meterRegistry) {
+        this.retryAfter = properties.retryAfter();
+        this.groupCommit = groupCommit;
+        this.reads = new Kind("read", new GradientLimit(properties.read()), meterRegistry);
+        this.queries = new Kind("query", new GradientLimit(properties.query()), meterRegistry);
+        this.writes = new Kind("write", new GradientLimit(properties.write()), meterRegistry);
+    }
+
+    @Around("execution(public * com.atom.fullstack.customer.CustomerService.*(..))"
+            + " && !execution(* com.atom.fullstack.customer.CustomerService.exportCustomers(..))")
+    Object limit(ProceedingJoinPoint joinPoint) throws Throwable {
+        String method = joinPoint.getSignature().getName();
+        if (groupCommit && method.equals(REGISTRATION)) {
+            return joinPoint.proceed();
+        }
+        Kind kind = kindOf(method);
+        int inFlight = kind.limit.tryAcquire();
+        if (inFlight == 0) {
+            kind.rejected.increment();
+            throw new ServiceUnavailableException(
+                    "Too many customer " + kind.name + "s in progress, try again later", retryAfter);
+        }
+        long start = System.nanoTime();
+        boolean overloaded = false;
+        try {
+            return joinPoint.proceed();
+        } catch (TransientDataAccessException | DataAccessResourceFailureException e) {
+            // timeouts and connections we could not get are load, not bugs
+            overloaded = true;
+            throw e;
+        } finally {
+            long queued = kind.limit.release(System.nanoTime() - start, inFlight, overloaded);
+            kind.queued.record(queued, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Kind kindOf(String method) {
+        if (isWrite(method)) {
+            return writes;
+        }
+        return QUERIES.contains(method) ? queries : reads;
+    }
+
+    static boolean isWrite(String method) {
+        return WRITE_PREFIXES.stream().anyMatch(method::startsWith);
+    }
+
+    private static final class Kind {
+
+        private final String name;
+        private final GradientLimit limit;
+        private final Counter rejected;
+        private final Timer queued;
+
+        Kind(String name, GradientLimit limit, MeterRegistry meterRegistry) {
+            this.name = name;
+            this.limit = limit;
+            Gauge.builder(METRIC_NAME, limit, GradientLimit::limit)
+                    .description("Customer service calls allowed in flight")
+                    .tag("kind", name)
+                    .register(meterRegistry);
+            Gauge.builder(METRIC_NAME + ".in.flight", limit, GradientLimit::inFlight)
+                    .description("Customer service calls in flight")
+                    .tag("kind", name)
+                    .register(meterRegistry);
+            this.rejected = Counter.builder(METRIC_NAME + ".rejected")
+                    .description("Customer service calls turned away at the limit")
+                    .tag("kind", name)
+                    .register(meterRegistry);
+            this.queued = Timer.builder(METRIC_NAME + ".queued")
+                    .description("Latency of customer service calls above the baseline, time spent queued")
+                    .tag("kind", name)
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.atom.fullstack.customer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+/**
+ * Records a {@code customer.service} timer for every public
+ * {@link CustomerService} method, tagged like the {@code customer.dao} timers,
+ * so the two can be subtracted to see the time spent outside the database.
+ */
+@Aspect
+@Component
+class CustomerServiceMetrics {
+
+    static final String METRIC_NAME = "customer.service";
+
+    private final OperationTimers timers;
+
+    CustomerServiceMetrics(MeterRegistry meterRegistry, CustomerDaoProperties properties) {
+        this.timers = new OperationTimers(meterRegistry, METRIC_NAME, Tags.of("dao", properties.implementation()));
+    }
+
+    @Around("execution(public * com.atom.fullstack.customer.CustomerService.*(..))")
+    Object time(ProceedingJoinPoint joinPoint) throws Throwable {
+        String operation = joinPoint.getSignature().getName();
+        Timer.Sample sample = timers.start();
+        Object result;
+        try {
+            result = joinPoint.proceed();
+        } catch (Throwable e) {
+            timers.stop(sample, operation, e);
+            throw e;
+        }
+        timers.stop(sample, operation, null);
+        return result;
+    }
+}
@@ -0,0 +1,59 @@
+package com.atom.fullstack.customer;
+
+import com.atom.fullstack.exception.RequestValidationException;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Columns a customer page can be ordered by. Only unique, indexed columns are
+ * allowed so that keyset pagination stays an index range scan.
+ */
+public enum CustomerSortKey {
+    ID("id"),
+    EMAIL("email");
+
+    private final String column;
+
+    CustomerSortKey(String column) {
+        this.column = column;
+    }
+
+    public String column() {
+        return column;
+    }
+
+    public String keyOf(Customer customer) {
+        return switch (this) {
+            case ID -> String.valueOf(customer.getId());
+            case EMAIL -> customer.getEmail();
+        };
+    }
+
+    /**
+     * The projection must include {@link #field()}.
+     */
+    public String keyOf(CustomerProjection customer) {
+        return switch (this) {
+            case ID -> String.valueOf(customer.id());
+            case EMAIL -> customer.email();
+        };
+    }
+
+    public CustomerField field() {
+        return switch (this) {
+            case ID -> CustomerField.ID;
+            case EMAIL -> CustomerField.EMAIL;
+        };
+    }
+
+    public static CustomerSortKey fromParam(String param) {
+        if (param == null || param.isBlank()) {
+            return ID;
+        }
+        return Arrays.stream(values())
+                .filter(key -> key.column.equals(param.toLowerCase(Locale.ROOT)))
+                .findFirst()
+                .orElseThrow(() -> new RequestValidationException("Unsupported sort key " + param));
+    }
+}
@@ -0,0 +1,17 @@
+package com.atom.fullstack.customer;
+
+import java.util.List;
+
+/**
+ * Age statistics of the customers in an age range. The age fields are null
+ * when the range holds nobody.
+ */
+public record CustomerStatistics(long count, Double averageAge, Integer minAge, Integer maxAge,
+                                 List<AgeBucket> histogram) {
+
+    /**
+     * {@code toAge} is inclusive.
+     */
+    public record AgeBucket(int fromAge, int toAge, long customers) {
+    }
+}
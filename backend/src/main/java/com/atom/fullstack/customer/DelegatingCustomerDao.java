@@ -0,0 +1,151 @@
+package com.atom.fullstack.customer;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Base for {@link CustomerDao} decorators: forwards every call, so a decorator
+ * only overrides the operations it changes.
+ */
+abstract class DelegatingCustomerDao implements CustomerDao, AutoCloseable {
+
+    private final CustomerDao delegate;
+
+    protected DelegatingCustomerDao(CustomerDao delegate) {
+        this.delegate = delegate;
+    }
+
+    protected CustomerDao delegate() {
+        return delegate;
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return delegate.selectAllCustomers();
+    }
+
+    @Override
+    public List<Customer> selectCustomers(CustomerCursor cursor, int limit) {
+        return delegate.selectCustomers(cursor, limit);
+    }
+
+    @Override
+    public Stream<Customer> streamAllCustomers() {
+        return delegate.streamAllCustomers();
+    }
+
+    @Override
+    public List<CustomerSearchHit> searchCustomers(CustomerSearchQuery query, CustomerSearchCursor after, int limit) {
+        return delegate.searchCustomers(query, after, limit);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Long id) {
+        return delegate.selectCustomerById(id);
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Long> ids) {
+        return delegate.selectCustomersByIds(ids);
+    }
+
+    @Override
+    public List<CustomerProjection> selectCustomerProjections(CustomerCursor cursor, int limit,
+                                                              CustomerFields fields) {
+        return delegate.selectCustomerProjections(cursor, limit, fields);
+    }
+
+    @Override
+    public Optional<CustomerProjection> selectCustomerProjectionById(Long id, CustomerFields fields) {
+        return delegate.selectCustomerProjectionById(id, fields);
+    }
+
+    @Override
+    public List<CustomerProjection> selectCustomerProjectionsByIds(Collection<Long> ids, CustomerFields fields) {
+        return delegate.selectCustomerProjectionsByIds(ids, fields);
+    }
+
+    @Override
+    public Optional<Long> selectCustomerVersion(Long id) {
+        return delegate.selectCustomerVersion(id);
+    }
+
+    @Override
+    public long selectCustomersChangeCount() {
+        return delegate.selectCustomersChangeCount();
+    }
+
+    @Override
+    public List<CustomerAgeBucket> selectCustomerAgeBuckets(int minAge, int maxAge, int bucketWidth) {
+        return delegate.selectCustomerAgeBuckets(minAge, maxAge, bucketWidth);
+    }
+
+    @Override
+    public long countCustomers(int minAge, int maxAge) {
+        return delegate.countCustomers(minAge, maxAge);
+    }
+
+    @Override
+    public Optional<Long> estimateCustomerCount() {
+        return delegate.estimateCustomerCount();
+    }
+
+    @Override
+    public boolean insertCustomer(Customer customer) {
+        return delegate.insertCustomer(customer);
+    }
+
+    @Override
+    public void insertCustomers(List<Customer> customers) {
+        delegate.insertCustomers(customers);
+    }
+
+    @Override
+    public int insertCustomersIfEmailAbsent(List<Customer> customers) {
+        return delegate.insertCustomersIfEmailAbsent(customers);
+    }
+
+    @Override
+    public boolean existsCustomerByEmail(String email) {
+        return delegate.existsCustomerByEmail(email);
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return delegate.selectExistingEmails(emails);
+    }
+
+    @Override
+    public boolean existsCustomerById(Long id) {
+        return delegate.existsCustomerById(id);
+    }
+
+    @Override
+    public boolean deleteCustomer(Long id) {
+        return delegate.deleteCustomer(id);
+    }
+
+    @Override
+    public boolean deleteCustomerIfVersion(Long id, Long version) {
+        return delegate.deleteCustomerIfVersion(id, version);
+    }
+
+    @Override
+    public Optional<Customer> updateCustomer(Customer update) {
+        return delegate.updateCustomer(update);
+    }
+
+    /**
+     * Closes the decorators below this one. The implementation at the bottom is
+     * a bean of its own and is left alone.
+     */
+    @Override
+    public void close() {
+        if (delegate instanceof DelegatingCustomerDao decorator) {
+            decorator.close();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.atom.fullstack.customer;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Answers email uniqueness checks from a {@link CustomerEmailFilter} when it can
+ * prove the email is new, and asks the database only when it might not be.
+ * <p>
+ * Single registrations and updates rely on the unique constraint and never
+ * check first, so the only caller that gains is bulk registration through
+ * {@link #selectExistingEmails}. Every write still adds its email, or a later
+ * bulk check could wrongly call it new.
+ */
+class EmailFilteringCustomerDao extends DelegatingCustomerDao {
+
+    private final CustomerEmailFilter emailFilter;
+
+    EmailFilteringCustomerDao(CustomerDao delegate, CustomerEmailFilter emailFilter) {
+        super(delegate);
+        this.emailFilter = emailFilter;
+    }
+
+    @Override
+    public boolean existsCustomerByEmail(String email) {
+        if (!emailFilter.mightExist(email)) {
+            return false;
+        }
+        boolean exists = delegate().existsCustomerByEmail(email);
+        if (!exists) {
+            emailFilter.recordFalsePositive();
+        }
+        return exists;
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        List<String> candidates = emails.stream()
+                .filter(emailFilter::mightExist)
+                .toList();
+        if (candidates.isEmpty()) {
+            return Set.of();
+        }
+        return delegate().selectExistingEmails(candidates);
+    }
+
+    @Override
+    public boolean insertCustomer(Customer customer) {
+        // add first: for a moment the filter may say maybe, never a wrong no
+        return emailFilter.adding(List.of(customer.getEmail()), () -> delegate().insertCustomer(customer));
+    }
+
+    @Override
+    public void insertCustomers(List<Customer> customers) {
+        emailFilter.adding(emails(customers), () -> {
+            delegate().insertCustomers(customers);
+            return null;
+        });
+    }
+
+    @Override
+    public int insertCustomersIfEmailAbsent(List<Customer> customers) {
+        return emailFilter.adding(emails(customers), () -> delegate().insertCustomersIfEmailAbsent(customers));
+    }
+
+    private static List<String> emails(List<Customer> customers) {
+        return customers.stream()
+                .map(Customer::getEmail)
+                .toList();
+    }
+
+    @Override
+    public boolean deleteCustomer(Long id) {
+        boolean deleted = delegate().deleteCustomer(id);
+        if (deleted) {
+            emailFilter.recordStaleEntry();
+        }
+        return deleted;
+    }
+
+    @Override
+    public boolean deleteCustomerIfVersion(Long id, Long version) {
+        boolean deleted = delegate().deleteCustomerIfVersion(id, version);
+        if (deleted) {
+            emailFilter.recordStaleEntry();
+        }
+        return deleted;
+    }
+
+    @Override
+    public Optional<Customer> updateCustomer(Customer update) {
+        Optional<Customer> updated = update.getEmail() == null
+                ? delegate().updateCustomer(update)
+                : emailFilter.adding(List.of(update.getEmail()), () -> delegate().updateCustomer(update));
+        if (update.getEmail() != null && updated.isPresent()) {
+            emailFilter.recordStaleEntry();
+        }
+        return updated;
+    }
+}
@@ -0,0 +1,105 @@
+package com.atom.fullstack.customer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A concurrency limit that follows latency, after the gradient algorithm of
+ * Netflix's concurrency-limits. A slow moving average of call latency is the
+ * baseline, what a call costs when nothing queues. While calls stay within
+ * {@code tolerance} times the baseline the limit grows by about its square
+ * root per sample; beyond that it shrinks in proportion to how far latency
+ * has risen, by at most half. A call that failed because the database was
+ * overloaded takes the limit down by a tenth on its own.
+ * <p>
+ * The limit only grows while callers actually use at least half of it, so a
+ * quiet period does not leave it at a value that was never tested.
+ */
+final class GradientLimit {
+
+    // samples the baseline averages over
+    static final int BASELINE_WINDOW = 600;
+    private static final double OVERLOAD_BACKOFF = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double smoothing;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int limit;
+    // guarded by this
+    private double estimatedLimit;
+    private double baselineNanos;
+    private long samples;
+
+    GradientLimit(CustomerLimitProperties.Limit properties) {
+        this.minLimit = properties.minLimit();
+        this.maxLimit = properties.maxLimit();
+        this.tolerance = properties.tolerance();
+        this.smoothing = properties.smoothing();
+        this.estimatedLimit = Math.max(minLimit, Math.min(maxLimit, properties.initialLimit()));
+        this.limit = (int) estimatedLimit;
+    }
+
+    /**
+     * Takes a slot for a call. Returns the number of calls in flight including
+     * this one, or 0 when the limit is reached and the call should be turned
+     * away. Every positive return must be followed by one {@link #release}.
+     */
+    int tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return 0;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return current + 1;
+            }
+        }
+    }
+
+    /**
+     * Gives back the slot of a call that took {@code latencyNanos} and had
+     * {@code inFlightAtStart} calls in flight when it started, and adjusts the
+     * limit. Returns how much of the latency was above the baseline, the time
+     * the call spent queued somewhere below us, typically for a connection.
+     */
+    long release(long latencyNanos, int inFlightAtStart, boolean overloaded) {
+        inFlight.decrementAndGet();
+        synchronized (this) {
+            if (overloaded) {
+                estimatedLimit = Math.max(minLimit, estimatedLimit * OVERLOAD_BACKOFF);
+                limit = (int) estimatedLimit;
+                return 0;
+            }
+            samples++;
+            if (samples == 1) {
+                baselineNanos = latencyNanos;
+            } else {
+                // a plain average until the window has filled, then exponential
+                baselineNanos += (latencyNanos - baselineNanos) / Math.min(samples, BASELINE_WINDOW);
+            }
+            if (baselineNanos > 2.0 * latencyNanos) {
+                // latency dropped well below the baseline, let the baseline catch up faster
+                baselineNanos *= 0.95;
+            }
+            long queued = Math.max(0, latencyNanos - (long) baselineNanos);
+            if (inFlightAtStart < estimatedLimit / 2) {
+                return queued;
+            }
+            double gradient = Math.max(0.5, Math.min(1.0, tolerance * baselineNanos / Math.max(1, latencyNanos)));
+            double next = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+            estimatedLimit = Math.max(minLimit, Math.min(maxLimit,
+                    estimatedLimit * (1 - smoothing) + next * smoothing));
+            limit = (int) estimatedLimit;
+            return queued;
+        }
+    }
+
+    int limit() {
+        return limit;
+    }
+
+    int inFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,162 @@
+package com.atom.fullstack.customer;
+
+import com.atom.fullstack.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind group commit for registrations. {@link #insertCustomer} puts the
+ * customer on a bounded queue and waits; a single flusher takes whatever has
+ * queued up, at most {@code maxBatchSize} customers or whatever arrived within
+ * {@code maxDelay} of the first, inserts them with one
+ * {@link CustomerDao#insertCustomersIfEmailAbsent} call and hands every caller
+ * its own result. Under a burst the database sees one commit per group instead
+ * of one per registration.
+ * <p>
+ * When the queue is full callers are turned away with a 503 rather than made
+ * to wait for a slot.
+ */
+@Slf4j
+class GroupCommitCustomerDao extends DelegatingCustomerDao {
+
+    private final BlockingQueue<PendingInsert> queue;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final Thread flusher;
+    private final DistributionSummary flushSize;
+    private final Timer waitTime;
+    private final Counter rejected;
+    private volatile boolean running = true;
+
+    GroupCommitCustomerDao(CustomerDao delegate, CustomerDaoProperties.GroupCommit properties,
+                           MeterRegistry meterRegistry) {
+        super(delegate);
+        this.queue = new ArrayBlockingQueue<>(properties.queueCapacity());
+        this.maxBatchSize = properties.maxBatchSize();
+        this.maxDelayNanos = properties.maxDelay().toNanos();
+        this.flushSize = DistributionSummary.builder("customer.group.commit.flush.size")
+                .description("Registrations inserted by one flush")
+                .register(meterRegistry);
+        this.waitTime = Timer.builder("customer.group.commit.wait")
+                .description("Time from queueing a registration to its result, the latency group commit adds")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("customer.group.commit.rejected")
+                .description("Registrations turned away because the queue was full")
+                .register(meterRegistry);
+        Gauge.builder("customer.group.commit.queue.depth", queue, BlockingQueue::size)
+                .description("Registrations waiting for the next flush")
+                .register(meterRegistry);
+        this.flusher = new Thread(this::flushLoop, "customer-group-commit");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    @Override
+    public boolean insertCustomer(Customer customer) {
+        PendingInsert pending = new PendingInsert(customer, System.nanoTime(), new CompletableFuture<>());
+        if (!running || !queue.offer(pending)) {
+            rejected.increment();
+            throw new ServiceUnavailableException("Too many registrations in progress, try again later");
+        }
+        try {
+            return pending.result().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Stops taking registrations and flushes the ones already queued.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        PendingInsert late;
+        while ((late = queue.poll()) != null) {
+            late.result().completeExceptionally(new ServiceUnavailableException("Shutting down, try again later"));
+        }
+        super.close();
+    }
+
+    private void flushLoop() {
+        List<PendingInsert> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingInsert first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = first.enqueuedAt() + maxDelayNanos;
+                while (batch.size() < maxBatchSize) {
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatchSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingInsert next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                running = false;
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                log.error("Group commit flush failed", e);
+                batch.forEach(pending -> pending.result().completeExceptionally(e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingInsert> batch) {
+        List<Customer> customers = batch.stream().map(PendingInsert::customer).toList();
+        try {
+            delegate().insertCustomersIfEmailAbsent(customers);
+            batch.forEach(pending -> complete(pending, pending.customer().getId() != null));
+        } catch (RuntimeException e) {
+            // one bad row fails the whole statement, so give every caller its own answer
+            log.warn("Group insert of {} customers failed, retrying them one by one", batch.size(), e);
+            for (PendingInsert pending : batch) {
+                try {
+                    complete(pending, delegate().insertCustomer(pending.customer()));
+                } catch (RuntimeException rowFailure) {
+                    pending.result().completeExceptionally(rowFailure);
+                }
+            }
+        }
+        flushSize.record(batch.size());
+    }
+
+    private void complete(PendingInsert pending, boolean inserted) {
+        waitTime.record(System.nanoTime() - pending.enqueuedAt(), TimeUnit.NANOSECONDS);
+        pending.result().complete(inserted);
+    }
+
+    private record PendingInsert(Customer customer, long enqueuedAt, CompletableFuture<Boolean> result) {
+    }
+}
@@ -0,0 +1,69 @@
+package com.atom.fullstack.customer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * One timer per operation under a common metric name, tagged with the
+ * operation and the simple name of the exception it failed with, or
+ * {@code none}. The timer count is the call count and the counts of the
+ * non-{@code none} series are the error counts. Histograms and percentiles
+ * are switched on by the {@code management.metrics.distribution} properties.
+ */
+final class OperationTimers {
+
+    private final MeterRegistry meterRegistry;
+    private final String name;
+    private final Tags tags;
+    // the success timers are on the hot path, so look them up without building ids
+    private final Map<String, Timer> succeeded = new ConcurrentHashMap<>();
+
+    OperationTimers(MeterRegistry meterRegistry, String name, Tags tags) {
+        this.meterRegistry = meterRegistry;
+        this.name = name;
+        this.tags = tags;
+    }
+
+    Timer.Sample start() {
+        return Timer.start(meterRegistry);
+    }
+
+    void stop(Timer.Sample sample, String operation, Throwable failure) {
+        sample.stop(failure == null
+                ? succeeded.computeIfAbsent(operation, op -> timer(op, "none"))
+                : timer(operation, failure.getClass().getSimpleName()));
+    }
+
+    <T> T record(String operation, Supplier<T> call) {
+        Timer.Sample sample = start();
+        T result;
+        try {
+            result = call.get();
+        } catch (RuntimeException e) {
+            stop(sample, operation, e);
+            throw e;
+        }
+        stop(sample, operation, null);
+        return result;
+    }
+
+    void run(String operation, Runnable call) {
+        record(operation, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    private Timer timer(String operation, String exception) {
+        return Timer.builder(name)
+                .tags(tags)
+                .tag("operation", operation)
+                .tag("exception", exception)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,72 @@
+package com.atom.fullstack.customer;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+/**
+ * Wiring for the reactive profile: Netty instead of Tomcat, and an R2DBC pool
+ * configured from {@code spring.r2dbc.*}.
+ * <p>
+ * R2DBC auto-configuration is excluded and the pool is not a bean on purpose:
+ * a {@code ConnectionFactory} bean turns off the JDBC {@code DataSource} that
+ * Flyway, the JPA repository and the email filter still need.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@EnableConfigurationProperties(R2dbcProperties.class)
+@Slf4j
+public class ReactiveCustomerConfig implements DisposableBean {
+
+    private ConnectionPool connectionPool;
+
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        // both Tomcat and Netty are on the classpath, Boot would pick Tomcat
+        return new NettyReactiveWebServerFactory();
+    }
+
+    @Bean
+    public ReactiveCustomerDao reactiveCustomerDao(R2dbcProperties properties) {
+        ConnectionFactoryOptions options = ConnectionFactoryOptions.parse(properties.getUrl())
+                .mutate()
+                .option(ConnectionFactoryOptions.USER, properties.getUsername())
+                .option(ConnectionFactoryOptions.PASSWORD, properties.getPassword())
+                .build();
+        R2dbcProperties.Pool pool = properties.getPool();
+        ConnectionPoolConfiguration.Builder configuration = ConnectionPoolConfiguration
+                .builder(ConnectionFactories.get(options))
+                .initialSize(pool.getInitialSize())
+                .maxSize(pool.getMaxSize())
+                .maxIdleTime(pool.getMaxIdleTime());
+        if (pool.getMaxAcquireTime() != null) {
+            configuration.maxAcquireTime(pool.getMaxAcquireTime());
+        }
+        connectionPool = new ConnectionPool(configuration.build());
+        log.info("Serving customers from R2DBC with a pool of {}", pool.getMaxSize());
+        DatabaseClient databaseClient = DatabaseClient.create(connectionPool);
+        return new CustomerR2dbcDataAccessService(databaseClient, new ReactiveCustomerIdAllocator(databaseClient));
+    }
+
+    @Bean
+    public ReactiveCustomerService reactiveCustomerService(ReactiveCustomerDao reactiveCustomerDao) {
+        return new ReactiveCustomerService(reactiveCustomerDao);
+    }
+
+    @Override
+    public void destroy() {
+        if (connectionPool != null) {
+            connectionPool.dispose();
+        }
+    }
+}
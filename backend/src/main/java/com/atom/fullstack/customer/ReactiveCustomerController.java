@@ -0,0 +1,97 @@
+package com.atom.fullstack.customer;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * WebFlux variant of {@link CustomerController}, served instead of it under the
+ * reactive profile. Bulk registration is only available on the servlet stack.
+ */
+@RestController
+@RequestMapping(path = "api/v1/customer")
+@RequiredArgsConstructor
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveCustomerController {
+
+    private final ReactiveCustomerService customerService;
+
+    /**
+     * Tagged with the change count, read before the page, like
+     * {@link CustomerController#getCustomers}.
+     */
+    @GetMapping
+    public Mono<ResponseEntity<CustomerPage>> getCustomers(@RequestParam(value = "cursor", required = false) String cursor,
+                                                           @RequestParam(value = "sort", required = false) String sort,
+                                                           @RequestParam(value = "size", required = false) Integer size,
+                                                           ServerWebExchange exchange){
+        return customerService.getCustomersChangeCount().flatMap(changes -> {
+            String eTag = CustomerETags.ofChangeCount(changes);
+            if (exchange.checkNotModified(eTag)) {
+                return Mono.just(ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).<CustomerPage>build());
+            }
+            return customerService.getCustomers(cursor, sort, size)
+                    .map(page -> ResponseEntity.ok().eTag(eTag).body(page));
+        });
+    }
+
+    /**
+     * Each customer is encoded as it arrives and rows are only read from the
+     * database as fast as the client takes them.
+     */
+    @GetMapping(path = "export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Customer> exportCustomers(){
+        return customerService.exportCustomers();
+    }
+
+    @GetMapping("{customerId}")
+    public Mono<ResponseEntity<Customer>> getCustomerById(@PathVariable("customerId") Long id){
+        // the result handler answers a matching If-None-Match with 304
+        return customerService.getCustomerById(id)
+                .map(customer -> ResponseEntity.ok()
+                        .eTag(CustomerETags.of(customer))
+                        .body(customer));
+    }
+
+    /**
+     * 201 with the new customer, its {@code Location} and its ETag, like
+     * {@link CustomerController#addCustomer}.
+     */
+    @PostMapping
+    public Mono<ResponseEntity<Customer>> addCustomer(@RequestBody CustomerRegistrationRequest customerRegistrationRequest,
+                                                      ServerHttpRequest request) {
+        return customerService.addCustomer(customerRegistrationRequest)
+                .map(customer -> ResponseEntity.created(UriComponentsBuilder.fromUri(request.getURI())
+                                .replaceQuery(null)
+                                .path("/{customerId}")
+                                .buildAndExpand(customer.getId())
+                                .toUri())
+                        .eTag(CustomerETags.of(customer))
+                        .body(customer));
+    }
+
+    @DeleteMapping("{customerId}")
+    public Mono<Void> deleteCustomer(@PathVariable("customerId") Long id,
+                                     @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch){
+        return customerService.deleteCustomer(id, CustomerETags.parseIfMatch(ifMatch));
+    }
+
+    @PatchMapping("{customerId}")
+    public Mono<ResponseEntity<Customer>> updateCustomer(@PathVariable("customerId") Long id,
+                                                         @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                         @RequestBody CustomerUpdateRequest customerUpdateRequest){
+        return customerService.updateCustomer(id, customerUpdateRequest, CustomerETags.parseIfMatch(ifMatch))
+                .map(customer -> ResponseEntity.ok()
+                        .eTag(CustomerETags.of(customer))
+                        .body(customer));
+    }
+}
@@ -0,0 +1,38 @@
+package com.atom.fullstack.customer;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of {@link CustomerDao} for the reactive profile.
+ * Absent rows are empty publishers rather than empty optionals.
+ */
+public interface ReactiveCustomerDao {
+    Flux<Customer> selectCustomers(CustomerCursor cursor, int limit);
+    /**
+     * Every customer ordered by id, read only as fast as the subscriber requests.
+     */
+    Flux<Customer> streamAllCustomers();
+    Mono<Customer> selectCustomerById(Long id);
+    /**
+     * See {@link CustomerDao#selectCustomersChangeCount()}.
+     */
+    Mono<Long> selectCustomersChangeCount();
+    /**
+     * Emits true and sets the generated id and the initial version when the
+     * customer was inserted, false when its email is already taken.
+     */
+    Mono<Boolean> insertCustomer(Customer customer);
+    Mono<Boolean> existsCustomerById(Long id);
+    Mono<Boolean> deleteCustomer(Long id);
+    /**
+     * Deletes the customer only at that version, emits false when no row
+     * matched.
+     */
+    Mono<Boolean> deleteCustomerIfVersion(Long id, Long version);
+    /**
+     * Same contract as {@link CustomerDao#updateCustomer(Customer)}, empty when
+     * no row matched.
+     */
+    Mono<Customer> updateCustomer(Customer update);
+}
@@ -0,0 +1,48 @@
+package com.atom.fullstack.customer;
+
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * {@link CustomerIdAllocator} for the reactive profile: the same blocks of
+ * {@link CustomerIdAllocator#BLOCK_SIZE} read from {@code customer_id_seq}, but
+ * handed out without a lock so no event loop thread waits on a block fetch.
+ * Subscribers that find the block used up at the same time each fetch one and
+ * only one of them is kept; the ids of the others are lost like those left over
+ * at shutdown.
+ */
+public class ReactiveCustomerIdAllocator {
+
+    private final DatabaseClient databaseClient;
+    private final AtomicReference<Block> block = new AtomicReference<>(new Block(0, -1));
+
+    public ReactiveCustomerIdAllocator(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    public Mono<Long> nextId() {
+        return Mono.defer(() -> {
+            Block current = block.get();
+            while (current.next() <= current.last()) {
+                if (block.compareAndSet(current, new Block(current.next() + 1, current.last()))) {
+                    return Mono.just(current.next());
+                }
+                current = block.get();
+            }
+            Block usedUp = current;
+            return databaseClient.sql("SELECT nextval('customer_id_seq')")
+                    .map(row -> row.get(0, Long.class))
+                    .one()
+                    .map(blockEnd -> {
+                        long first = blockEnd - CustomerIdAllocator.BLOCK_SIZE + 1;
+                        block.compareAndSet(usedUp, new Block(first + 1, blockEnd));
+                        return first;
+                    });
+        });
+    }
+
+    private record Block(long next, long last) {
+    }
+}
@@ -0,0 +1,133 @@
+package com.atom.fullstack.customer;
+
+import com.atom.fullstack.exception.DuplicateResourceException;
+import com.atom.fullstack.exception.PreconditionFailedException;
+import com.atom.fullstack.exception.RequestValidationException;
+import com.atom.fullstack.exception.ResourceNotFoundException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+import static com.atom.fullstack.logging.SamplingTurboFilter.HIGH_VOLUME;
+
+/**
+ * {@link CustomerService} for the reactive profile, with the same rules and
+ * errors on top of a {@link ReactiveCustomerDao}.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class ReactiveCustomerService {
+
+    private final ReactiveCustomerDao customerDao;
+
+    public Mono<CustomerPage> getCustomers(String cursorToken, String sort, Integer size) {
+        CustomerCursor cursor;
+        try {
+            cursor = cursorToken == null || cursorToken.isBlank()
+                    ? CustomerCursor.first(CustomerSortKey.fromParam(sort))
+                    : CustomerCursor.decode(cursorToken);
+        } catch (RequestValidationException e) {
+            return Mono.error(e);
+        }
+        if (size != null && size < 1) {
+            return Mono.error(new RequestValidationException("Page size must be positive"));
+        }
+        int pageSize = size == null ? CustomerService.DEFAULT_PAGE_SIZE : Math.min(size, CustomerService.MAX_PAGE_SIZE);
+        log.info(HIGH_VOLUME, "Fetching customers page of {}", pageSize);
+        return customerDao.selectCustomers(cursor, pageSize + 1)
+                .collectList()
+                .map(customers -> {
+                    if (customers.size() <= pageSize) {
+                        return new CustomerPage(customers, null);
+                    }
+                    List<Customer> page = List.copyOf(customers.subList(0, pageSize));
+                    Customer last = page.get(pageSize - 1);
+                    return new CustomerPage(page, CustomerCursor.after(cursor.sortKey(), last).encode());
+                });
+    }
+
+    public Flux<Customer> exportCustomers() {
+        log.info("Exporting all customers");
+        return customerDao.streamAllCustomers();
+    }
+
+    public Mono<Customer> getCustomerById(Long id) {
+        return customerDao.selectCustomerById(id)
+                .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("Customer " + id + " does not exist")));
+    }
+
+    public Mono<Customer> addCustomer(CustomerRegistrationRequest customerRegistrationRequest) {
+        Customer customer = Customer.builder()
+                .name(customerRegistrationRequest.name())
+                .email(customerRegistrationRequest.email())
+                .age(customerRegistrationRequest.age())
+                .build();
+        return customerDao.insertCustomer(customer)
+                .flatMap(inserted -> inserted
+                        ? Mono.just(customer)
+                        : Mono.error(new DuplicateResourceException("Email already taken")));
+    }
+
+    public Mono<Long> getCustomersChangeCount() {
+        return customerDao.selectCustomersChangeCount();
+    }
+
+    public Mono<Void> deleteCustomer(Long id) {
+        return deleteCustomer(id, null);
+    }
+
+    /**
+     * Same rules as {@link CustomerService#deleteCustomer(Long, Long)}.
+     */
+    public Mono<Void> deleteCustomer(Long id, Long expectedVersion) {
+        Mono<Boolean> deleted = expectedVersion == null
+                ? customerDao.deleteCustomer(id)
+                : customerDao.deleteCustomerIfVersion(id, expectedVersion);
+        return deleted.flatMap(done -> {
+            if (done) {
+                return Mono.<Void>empty();
+            }
+            if (expectedVersion == null) {
+                return Mono.error(new ResourceNotFoundException("Customer " + id + " does not exist"));
+            }
+            return customerDao.existsCustomerById(id)
+                    .flatMap(exists -> Mono.error(exists
+                            ? new PreconditionFailedException("Customer " + id + " has been modified")
+                            : new ResourceNotFoundException("Customer " + id + " does not exist")));
+        });
+    }
+
+    public Mono<Customer> updateCustomer(Long id, CustomerUpdateRequest updateRequest, Long expectedVersion) {
+        if (updateRequest.name() == null && updateRequest.email() == null && updateRequest.age() == null) {
+            return getCustomerById(id)
+                    .flatMap(customer -> expectedVersion != null && !expectedVersion.equals(customer.getVersion())
+                            ? Mono.error(new PreconditionFailedException("Customer " + id + " has been modified"))
+                            : Mono.just(customer));
+        }
+        Customer update = Customer.builder()
+                .id(id)
+                .name(updateRequest.name())
+                .email(updateRequest.email())
+                .age(updateRequest.age())
+                .version(expectedVersion)
+                .build();
+        return customerDao.updateCustomer(update)
+                .onErrorMap(e -> e instanceof DataIntegrityViolationException violation
+                                && CustomerService.isEmailTaken(violation),
+                        e -> new DuplicateResourceException("Email already taken"))
+                .switchIfEmpty(Mono.defer(() -> {
+                    if (expectedVersion == null) {
+                        return Mono.error(new ResourceNotFoundException("Customer " + id + " does not exist"));
+                    }
+                    // only pay for the extra lookup when we have to tell 404 from 412
+                    return customerDao.existsCustomerById(id)
+                            .flatMap(exists -> Mono.error(exists
+                                    ? new PreconditionFailedException("Customer " + id + " has been modified")
+                                    : new ResourceNotFoundException("Customer " + id + " does not exist")));
+                }));
+    }
+}
@@ -0,0 +1,158 @@
+package com.atom.fullstack.customer;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe scalable Bloom filter (Almeida et al., 2007). When the current
+ * slice reaches its capacity a new slice with twice the capacity and half the
+ * false-positive probability is added, so the overall probability stays below
+ * the configured one however many values are added.
+ */
+final class ScalableBloomFilter {
+
+    private static final double TIGHTENING_RATIO = 0.5;
+    private static final int GROWTH_FACTOR = 2;
+    private static final long SEED_1 = 0x9E3779B97F4A7C15L;
+    private static final long SEED_2 = 0xC2B2AE3D27D4EB4FL;
+
+    private final List<Slice> slices = new CopyOnWriteArrayList<>();
+    private final AtomicLong size = new AtomicLong();
+
+    ScalableBloomFilter(long initialCapacity, double falsePositiveProbability) {
+        if (initialCapacity < 1 || falsePositiveProbability <= 0 || falsePositiveProbability >= 1) {
+            throw new IllegalArgumentException("Invalid Bloom filter sizing");
+        }
+        slices.add(new Slice(initialCapacity, falsePositiveProbability * (1 - TIGHTENING_RATIO)));
+    }
+
+    boolean mightContain(String value) {
+        long h1 = hash(value, SEED_1);
+        long h2 = hash(value, SEED_2) | 1;
+        for (Slice slice : slices) {
+            if (slice.mightContain(h1, h2)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void add(String value) {
+        long h1 = hash(value, SEED_1);
+        long h2 = hash(value, SEED_2) | 1;
+        for (Slice slice : slices) {
+            if (slice.mightContain(h1, h2)) {
+                return;
+            }
+        }
+        Slice slice = slices.get(slices.size() - 1);
+        if (slice.isFull()) {
+            slice = grow(slice);
+        }
+        slice.put(h1, h2);
+        size.incrementAndGet();
+    }
+
+    long size() {
+        return size.get();
+    }
+
+    long memoryBytes() {
+        return slices.stream().mapToLong(slice -> slice.bitCount / Byte.SIZE).sum();
+    }
+
+    /**
+     * Probability that {@link #mightContain} answers true for a value never
+     * added, estimated from how full each slice actually is.
+     */
+    double expectedFalsePositiveProbability() {
+        double allSlicesNegative = 1;
+        for (Slice slice : slices) {
+            allSlicesNegative *= 1 - slice.falsePositiveProbability();
+        }
+        return 1 - allSlicesNegative;
+    }
+
+    private synchronized Slice grow(Slice full) {
+        Slice last = slices.get(slices.size() - 1);
+        if (last != full) {
+            return last;
+        }
+        Slice next = new Slice(full.capacity * GROWTH_FACTOR, full.targetProbability * TIGHTENING_RATIO);
+        slices.add(next);
+        return next;
+    }
+
+    private static long hash(String value, long seed) {
+        long h = seed ^ (value.length() * 0xFF51AFD7ED558CCDL);
+        for (int i = 0; i < value.length(); i++) {
+            h = (h ^ value.charAt(i)) * 0xBF58476D1CE4E5B9L;
+            h ^= h >>> 31;
+        }
+        // splitmix64 finalizer
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+
+    private static final class Slice {
+        private final long capacity;
+        private final double targetProbability;
+        private final long bitCount;
+        private final int hashCount;
+        private final AtomicLongArray words;
+        private final AtomicLong insertions = new AtomicLong();
+        private final AtomicLong setBits = new AtomicLong();
+
+        private Slice(long capacity, double targetProbability) {
+            this.capacity = capacity;
+            this.targetProbability = targetProbability;
+            long optimalBits = (long) Math.ceil(-capacity * Math.log(targetProbability) / (Math.log(2) * Math.log(2)));
+            int wordCount = (int) Math.max(1, (optimalBits + Long.SIZE - 1) / Long.SIZE);
+            this.bitCount = (long) wordCount * Long.SIZE;
+            this.hashCount = (int) Math.max(1, Math.round((double) bitCount / capacity * Math.log(2)));
+            this.words = new AtomicLongArray(wordCount);
+        }
+
+        private boolean isFull() {
+            return insertions.get() >= capacity;
+        }
+
+        private boolean mightContain(long h1, long h2) {
+            for (int i = 0; i < hashCount; i++) {
+                long index = Math.floorMod(h1 + i * h2, bitCount);
+                if ((words.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void put(long h1, long h2) {
+            for (int i = 0; i < hashCount; i++) {
+                long index = Math.floorMod(h1 + i * h2, bitCount);
+                if (setBit((int) (index >>> 6), 1L << index)) {
+                    setBits.incrementAndGet();
+                }
+            }
+            insertions.incrementAndGet();
+        }
+
+        private boolean setBit(int word, long mask) {
+            long current;
+            do {
+                current = words.get(word);
+                if ((current & mask) != 0) {
+                    return false;
+                }
+            } while (!words.compareAndSet(word, current, current | mask));
+            return true;
+        }
+
+        private double falsePositiveProbability() {
+            return Math.pow((double) setBits.get() / bitCount, hashCount);
+        }
+    }
+}
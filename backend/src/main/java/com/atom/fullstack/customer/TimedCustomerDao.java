@@ -0,0 +1,192 @@
+package com.atom.fullstack.customer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Records a {@code customer.dao} timer for every call, tagged with the
+ * operation and the implementation behind it. Sits directly on the
+ * implementation, so cache hits and filtered checks are not counted as
+ * database time.
+ */
+class TimedCustomerDao extends DelegatingCustomerDao {
+
+    static final String METRIC_NAME = "customer.dao";
+
+    private final OperationTimers timers;
+
+    TimedCustomerDao(CustomerDao delegate, String implementation, MeterRegistry meterRegistry) {
+        super(delegate);
+        this.timers = new OperationTimers(meterRegistry, METRIC_NAME, Tags.of("dao", implementation));
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return timers.record("selectAllCustomers", () -> delegate().selectAllCustomers());
+    }
+
+    @Override
+    public List<Customer> selectCustomers(CustomerCursor cursor, int limit) {
+        return timers.record("selectCustomers", () -> delegate().selectCustomers(cursor, limit));
+    }
+
+    @Override
+    public Stream<Customer> streamAllCustomers() {
+        // a stream is timed until it is closed, not just until the query is sent
+        Timer.Sample sample = timers.start();
+        Stream<Customer> customers;
+        try {
+            customers = delegate().streamAllCustomers();
+        } catch (RuntimeException e) {
+            timers.stop(sample, "streamAllCustomers", e);
+            throw e;
+        }
+        // a row that fails to read or map surfaces here, long after the call returned
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        Spliterator<Customer> rows = customers.spliterator();
+        Spliterator<Customer> watched = new Spliterators.AbstractSpliterator<Customer>(
+                rows.estimateSize(), rows.characteristics() & ~(Spliterator.SIZED | Spliterator.SUBSIZED)) {
+            // what the caller threw while handling a row, e.g. a client gone away: not the DAO's failure
+            private RuntimeException fromAction;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super Customer> action) {
+                try {
+                    return rows.tryAdvance(customer -> {
+                        try {
+                            action.accept(customer);
+                        } catch (RuntimeException e) {
+                            fromAction = e;
+                            throw e;
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    if (e != fromAction) {
+                        failure.compareAndSet(null, e);
+                    }
+                    throw e;
+                }
+            }
+        };
+        return StreamSupport.stream(watched, false)
+                .onClose(customers::close)
+                .onClose(() -> timers.stop(sample, "streamAllCustomers", failure.get()));
+    }
+
+    @Override
+    public List<CustomerSearchHit> searchCustomers(CustomerSearchQuery query, CustomerSearchCursor after, int limit) {
+        return timers.record("searchCustomers", () -> delegate().searchCustomers(query, after, limit));
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Long id) {
+        return timers.record("selectCustomerById", () -> delegate().selectCustomerById(id));
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Long> ids) {
+        return timers.record("selectCustomersByIds", () -> delegate().selectCustomersByIds(ids));
+    }
+
+    @Override
+    public List<CustomerProjection> selectCustomerProjections(CustomerCursor cursor, int limit,
+                                                              CustomerFields fields) {
+        return timers.record("selectCustomerProjections",
+                () -> delegate().selectCustomerProjections(cursor, limit, fields));
+    }
+
+    @Override
+    public Optional<CustomerProjection> selectCustomerProjectionById(Long id, CustomerFields fields) {
+        return timers.record("selectCustomerProjectionById",
+                () -> delegate().selectCustomerProjectionById(id, fields));
+    }
+
+    @Override
+    public List<CustomerProjection> selectCustomerProjectionsByIds(Collection<Long> ids, CustomerFields fields) {
+        return timers.record("selectCustomerProjectionsByIds",
+                () -> delegate().selectCustomerProjectionsByIds(ids, fields));
+    }
+
+    @Override
+    public Optional<Long> selectCustomerVersion(Long id) {
+        return timers.record("selectCustomerVersion", () -> delegate().selectCustomerVersion(id));
+    }
+
+    @Override
+    public long selectCustomersChangeCount() {
+        return timers.record("selectCustomersChangeCount", () -> delegate().selectCustomersChangeCount());
+    }
+
+    @Override
+    public List<CustomerAgeBucket> selectCustomerAgeBuckets(int minAge, int maxAge, int bucketWidth) {
+        return timers.record("selectCustomerAgeBuckets",
+                () -> delegate().selectCustomerAgeBuckets(minAge, maxAge, bucketWidth));
+    }
+
+    @Override
+    public long countCustomers(int minAge, int maxAge) {
+        return timers.record("countCustomers", () -> delegate().countCustomers(minAge, maxAge));
+    }
+
+    @Override
+    public Optional<Long> estimateCustomerCount() {
+        return timers.record("estimateCustomerCount", () -> delegate().estimateCustomerCount());
+    }
+
+    @Override
+    public boolean insertCustomer(Customer customer) {
+        return timers.record("insertCustomer", () -> delegate().insertCustomer(customer));
+    }
+
+    @Override
+    public void insertCustomers(List<Customer> customers) {
+        timers.run("insertCustomers", () -> delegate().insertCustomers(customers));
+    }
+
+    @Override
+    public int insertCustomersIfEmailAbsent(List<Customer> customers) {
+        return timers.record("insertCustomersIfEmailAbsent", () -> delegate().insertCustomersIfEmailAbsent(customers));
+    }
+
+    @Override
+    public boolean existsCustomerByEmail(String email) {
+        return timers.record("existsCustomerByEmail", () -> delegate().existsCustomerByEmail(email));
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return timers.record("selectExistingEmails", () -> delegate().selectExistingEmails(emails));
+    }
+
+    @Override
+    public boolean existsCustomerById(Long id) {
+        return timers.record("existsCustomerById", () -> delegate().existsCustomerById(id));
+    }
+
+    @Override
+    public boolean deleteCustomer(Long id) {
+        return timers.record("deleteCustomer", () -> delegate().deleteCustomer(id));
+    }
+
+    @Override
+    public boolean deleteCustomerIfVersion(Long id, Long version) {
+        return timers.record("deleteCustomerIfVersion", () -> delegate().deleteCustomerIfVersion(id, version));
+    }
+
+    @Override
+    public Optional<Customer> updateCustomer(Customer update) {
+        return timers.record("updateCustomer", () -> delegate().updateCustomer(update));
+    }
+}
@@ -0,0 +1,15 @@
+package com.atom.fullstack.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Only ever describes the client's request, where it was thrown says nothing
+ * more, so it has no stack trace.
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class RequestValidationException extends RuntimeException {
+    public RequestValidationException(String message) {
+        super(message, null, false, false);
+    }
+}
@@ -0,0 +1,29 @@
+package com.atom.fullstack.exception;
+
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.io.IOException;
+
+/**
+ * Adds {@code Retry-After} to 503s that know when to come back. The error
+ * itself is still rendered by Boot's error controller, so the body looks like
+ * every other error.
+ */
+@RestControllerAdvice
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+class RetryAfterExceptionHandler {
+
+    @ExceptionHandler(ServiceUnavailableException.class)
+    void serviceUnavailable(ServiceUnavailableException e, HttpServletResponse response) throws IOException {
+        if (e.getRetryAfter() != null) {
+            // whole seconds, rounded up so a client never comes back too early
+            long seconds = Math.max(1, (e.getRetryAfter().toMillis() + 999) / 1000);
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(seconds));
+        }
+        response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, e.getMessage());
+    }
+}
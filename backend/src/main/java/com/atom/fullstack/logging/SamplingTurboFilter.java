@@ -0,0 +1,97 @@
+package com.atom.fullstack.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+import org.slf4j.MarkerFactory;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps one in {@code keepOneIn} events of a logger category at {@code level}
+ * or below and drops the rest before an event is even created. With a
+ * {@code marker} only events carrying it are sampled, so the audit lines of a
+ * category can stay complete while its per-request lines are thinned out.
+ * Events with an exception are always kept. Configured in logback-spring.xml:
+ *
+ * <pre>
+ * &lt;turboFilter class="com.atom.fullstack.logging.SamplingTurboFilter"&gt;
+ *     &lt;loggerName&gt;com.atom.fullstack.customer.CustomerService&lt;/loggerName&gt;
+ *     &lt;marker&gt;HIGH_VOLUME&lt;/marker&gt;
+ *     &lt;level&gt;INFO&lt;/level&gt;
+ *     &lt;keepOneIn&gt;100&lt;/keepOneIn&gt;
+ * &lt;/turboFilter&gt;
+ * </pre>
+ */
+public class SamplingTurboFilter extends TurboFilter {
+
+    /**
+     * Marks events logged on every read, the ones worth sampling.
+     */
+    public static final Marker HIGH_VOLUME = MarkerFactory.getMarker("HIGH_VOLUME");
+
+    private final AtomicLong events = new AtomicLong();
+    private String loggerName;
+    private String marker;
+    private Level level = Level.INFO;
+    private int keepOneIn = 100;
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level eventLevel, String format, Object[] params,
+                              Throwable t) {
+        // format is null for isXxxEnabled() checks, which must not use up a turn
+        if (!isStarted() || format == null || hasThrowable(params, t) || !inCategory(logger.getName())
+                || !marked(marker)) {
+            return FilterReply.NEUTRAL;
+        }
+        if (!level.isGreaterOrEqual(eventLevel) || !eventLevel.isGreaterOrEqual(logger.getEffectiveLevel())) {
+            return FilterReply.NEUTRAL;
+        }
+        return events.getAndIncrement() % keepOneIn == 0 ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+
+    @Override
+    public void start() {
+        if (loggerName == null || loggerName.isBlank()) {
+            addError("No loggerName set for " + getName());
+            return;
+        }
+        if (keepOneIn < 1) {
+            addError("keepOneIn must be positive, was " + keepOneIn);
+            return;
+        }
+        super.start();
+    }
+
+    private static boolean hasThrowable(Object[] params, Throwable t) {
+        // log.info("...", arg, e) arrives with the exception still among the arguments
+        return t != null || (params != null && params.length > 0 && params[params.length - 1] instanceof Throwable);
+    }
+
+    private boolean marked(Marker eventMarker) {
+        return this.marker == null || (eventMarker != null && eventMarker.contains(this.marker));
+    }
+
+    private boolean inCategory(String name) {
+        return name.startsWith(loggerName)
+                && (name.length() == loggerName.length() || name.charAt(loggerName.length()) == '.');
+    }
+
+    public void setLoggerName(String loggerName) {
+        this.loggerName = loggerName;
+    }
+
+    public void setMarker(String marker) {
+        this.marker = marker;
+    }
+
+    public void setLevel(Level level) {
+        this.level = level;
+    }
+
+    public void setKeepOneIn(int keepOneIn) {
+        this.keepOneIn = keepOneIn;
+    }
+}
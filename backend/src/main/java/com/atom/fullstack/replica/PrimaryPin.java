@@ -0,0 +1,44 @@
+package com.atom.fullstack.replica;
+
+import java.util.function.Supplier;
+
+/**
+ * Sends the read-only transactions a thread starts to the primary while pinned,
+ * for reads that must see the latest writes.
+ */
+public final class PrimaryPin implements AutoCloseable {
+
+    private static final ThreadLocal<Boolean> PINNED = new ThreadLocal<>();
+
+    private final boolean outer;
+
+    private PrimaryPin(boolean outer) {
+        this.outer = outer;
+    }
+
+    /**
+     * Pins the current thread until the returned pin is closed.
+     */
+    public static PrimaryPin pin() {
+        PrimaryPin pin = new PrimaryPin(isPinned());
+        PINNED.set(true);
+        return pin;
+    }
+
+    public static <T> T call(Supplier<T> action) {
+        try (PrimaryPin ignored = pin()) {
+            return action.get();
+        }
+    }
+
+    public static boolean isPinned() {
+        return Boolean.TRUE.equals(PINNED.get());
+    }
+
+    @Override
+    public void close() {
+        if (!outer) {
+            PINNED.remove();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.atom.fullstack.replica;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replaces the single {@code spring.datasource} with a primary plus the read
+ * replicas in {@code atom.replica.urls} when {@code atom.replica.enabled} is
+ * set. JdbcTemplate, JPA and Flyway all get the routing {@link DataSource}:
+ * read-only transactions go to a replica that is not lagging, the rest to the
+ * primary.
+ */
+@Configuration
+@ConditionalOnProperty(name = "atom.replica.enabled", havingValue = "true")
+@EnableConfigurationProperties(ReplicaProperties.class)
+@Slf4j
+public class ReplicaRoutingConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(HikariDataSource primaryDataSource,
+                                                             DataSourceProperties dataSourceProperties,
+                                                             ReplicaProperties properties,
+                                                             MeterRegistry meterRegistry) {
+        if (properties.urls().isEmpty()) {
+            throw new IllegalStateException("atom.replica.enabled needs at least one atom.replica.urls entry");
+        }
+        List<DataSource> replicas = new ArrayList<>(properties.urls().size());
+        for (int i = 0; i < properties.urls().size(); i++) {
+            replicas.add(replica(i, properties.urls().get(i), dataSourceProperties, properties, meterRegistry));
+        }
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primaryDataSource, replicas,
+                properties.maxLag());
+        for (ReplicaRoutingDataSource.Replica replica : routing.replicas()) {
+            Gauge.builder("atom.replica.lag", replica, r -> r.lagMillis)
+                    .description("How far the replica was behind at the last check, -1 when the check failed")
+                    .baseUnit("milliseconds")
+                    .tag("replica", replica.key)
+                    .register(meterRegistry);
+        }
+        routing.startLagChecks(properties.lagCheckInterval());
+        log.info("Routing read-only transactions to {} replicas", replicas.size());
+        return routing;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+        // known up front, so the proxy does not borrow a connection to find out
+        dataSource.setDefaultAutoCommit(true);
+        dataSource.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        return dataSource;
+    }
+
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    public FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilter(ReplicaProperties properties) {
+        return new FilterRegistrationBean<>(new ReadYourWritesFilter(properties.stickyWindow()));
+    }
+
+    private static HikariDataSource replica(int index, String url, DataSourceProperties primary,
+                                            ReplicaProperties properties, MeterRegistry meterRegistry) {
+        HikariDataSource dataSource = primary.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .url(url)
+                .username(properties.username() != null ? properties.username() : primary.determineUsername())
+                .password(properties.password() != null ? properties.password() : primary.determinePassword())
+                .build();
+        dataSource.setPoolName("replica-" + index);
+        dataSource.setMaximumPoolSize(properties.maximumPoolSize());
+        dataSource.setReadOnly(true);
+        dataSource.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        return dataSource;
+    }
+}
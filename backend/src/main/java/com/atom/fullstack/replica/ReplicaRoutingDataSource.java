@@ -0,0 +1,146 @@
+package com.atom.fullstack.replica;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * Sends read-only transactions to a replica, round robin, and everything else
+ * to the primary. A replica is skipped while its last lag check failed or
+ * found it more than {@code maxLag} behind; with none left reads go to the
+ * primary. {@link PrimaryPin} overrides the routing for reads that must see
+ * the latest writes.
+ * <p>
+ * The read-only flag is only known once the transaction has begun, so this has
+ * to sit behind a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy},
+ * which fetches the connection at the first statement.
+ * <p>
+ * Closing it stops the lag checks and closes the replica pools.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+    static final String PRIMARY = "primary";
+
+    private static final String LAG_QUERY = """
+            SELECT CASE
+                       WHEN NOT pg_is_in_recovery() THEN 0
+                       WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                       ELSE coalesce(extract(epoch FROM now() - pg_last_xact_replay_timestamp()), 0)
+                   END
+            """;
+
+    private final List<Replica> replicas;
+    private final long maxLagMillis;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ScheduledExecutorService lagChecks = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "replica-lag-check");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, Duration maxLag) {
+        this.replicas = IntStream.range(0, replicas.size())
+                .mapToObj(i -> new Replica("replica-" + i, replicas.get(i)))
+                .toList();
+        this.maxLagMillis = maxLag.toMillis();
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        this.replicas.forEach(replica -> targets.put(replica.key, replica.dataSource));
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+    }
+
+    List<Replica> replicas() {
+        return replicas;
+    }
+
+    /**
+     * Checks replica lag now and then every {@code interval}.
+     */
+    public void startLagChecks(Duration interval) {
+        lagChecks.scheduleWithFixedDelay(this::checkLag, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() throws Exception {
+        lagChecks.shutdownNow();
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (replicas.isEmpty() || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                || PrimaryPin.isPinned()) {
+            return PRIMARY;
+        }
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (replica.usable) {
+                return replica.key;
+            }
+        }
+        return PRIMARY;
+    }
+
+    /**
+     * Measures how far behind every replica is. Until the first check a replica
+     * gets no reads.
+     */
+    void checkLag() {
+        for (Replica replica : replicas) {
+            try {
+                Double lagSeconds = new JdbcTemplate(replica.dataSource).queryForObject(LAG_QUERY, Double.class);
+                replica.record(lagSeconds == null ? 0 : Math.round(lagSeconds * 1000), maxLagMillis);
+            } catch (RuntimeException e) {
+                if (replica.usable) {
+                    log.warn("Lag check of {} failed, reading from the primary instead", replica.key, e);
+                }
+                replica.record(-1, maxLagMillis);
+            }
+        }
+    }
+
+    static final class Replica {
+
+        final String key;
+        final DataSource dataSource;
+        // -1 until the first successful check, and after a failed one
+        volatile long lagMillis = -1;
+        volatile boolean usable;
+
+        Replica(String key, DataSource dataSource) {
+            this.key = key;
+            this.dataSource = dataSource;
+        }
+
+        void record(long lagMillis, long maxLagMillis) {
+            boolean wasUsable = usable;
+            this.lagMillis = lagMillis;
+            this.usable = lagMillis >= 0 && lagMillis <= maxLagMillis;
+            if (wasUsable && !usable && lagMillis >= 0) {
+                log.warn("{} is {}ms behind, reading from the primary instead", key, lagMillis);
+            } else if (!wasUsable && usable) {
+                log.info("{} is serving reads", key);
+            }
+        }
+    }
+}
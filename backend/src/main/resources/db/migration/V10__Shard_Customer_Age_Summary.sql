@@ -0,0 +1,47 @@
+-- One row per age made every write of customers of the same age queue on the
+-- same row. Split each age into 16 shards by id, like the change counter of
+-- V3, and let readers sum them. The shard follows the id rather than chance so
+-- a customer is always counted in, and removed from, the same row: no shard
+-- goes below zero and "customers > 0" still means the age has customers.
+ALTER TABLE customer_age_summary DROP CONSTRAINT customer_age_summary_pkey;
+ALTER TABLE customer_age_summary ADD COLUMN shard SMALLINT NOT NULL DEFAULT 0;
+
+-- no writes between the backfill and the new function taking over
+LOCK TABLE customer IN SHARE MODE;
+
+DELETE FROM customer_age_summary;
+
+INSERT INTO customer_age_summary (age, shard, customers)
+SELECT age, (id % 16)::smallint, count(*)
+FROM customer
+GROUP BY 1, 2;
+
+ALTER TABLE customer_age_summary ALTER COLUMN shard DROP DEFAULT;
+ALTER TABLE customer_age_summary ADD PRIMARY KEY (age, shard);
+
+-- Applies the net change per age and shard of one statement, upserted in key
+-- order so two statements touching the same rows lock them in the same order.
+CREATE OR REPLACE FUNCTION summarize_customer_ages() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO customer_age_summary (age, shard, customers)
+        SELECT age, (id % 16)::smallint, count(*) FROM new_rows GROUP BY 1, 2 ORDER BY 1, 2
+        ON CONFLICT (age, shard) DO UPDATE SET customers = customer_age_summary.customers + excluded.customers;
+    ELSIF TG_OP = 'DELETE' THEN
+        INSERT INTO customer_age_summary (age, shard, customers)
+        SELECT age, (id % 16)::smallint, -count(*) FROM old_rows GROUP BY 1, 2 ORDER BY 1, 2
+        ON CONFLICT (age, shard) DO UPDATE SET customers = customer_age_summary.customers + excluded.customers;
+    ELSE
+        INSERT INTO customer_age_summary (age, shard, customers)
+        SELECT age, shard, sum(delta)
+        FROM (SELECT age, (id % 16)::smallint AS shard, 1 AS delta FROM new_rows
+              UNION ALL
+              SELECT age, (id % 16)::smallint, -1 FROM old_rows) changes
+        GROUP BY age, shard
+        HAVING sum(delta) <> 0
+        ORDER BY age, shard
+        ON CONFLICT (age, shard) DO UPDATE SET customers = customer_age_summary.customers + excluded.customers;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
@@ -0,0 +1,25 @@
+-- Counts committed writes to customer, for the ETag of customer lists. Writers
+-- bump one of 16 shards at random so concurrent writes rarely wait on the same
+-- row; readers sum them.
+CREATE TABLE customer_change_counter (
+    shard SMALLINT PRIMARY KEY,
+    changes BIGINT NOT NULL DEFAULT 0
+);
+
+INSERT INTO customer_change_counter (shard)
+SELECT generate_series(0, 15);
+
+CREATE FUNCTION count_customer_change() RETURNS trigger AS $$
+BEGIN
+    UPDATE customer_change_counter
+    SET changes = changes + 1
+    WHERE shard = floor(random() * 16)::smallint;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- once per statement, so a bulk insert costs one counter update
+CREATE TRIGGER customer_change_counter
+    AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON customer
+    FOR EACH STATEMENT
+EXECUTE FUNCTION count_customer_change();
@@ -0,0 +1,9 @@
+-- Customer search: trigram GIN indexes for fuzzy matches, and pattern-ordered
+-- btree indexes on the lowercased columns for prefix ranges.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX customer_name_trgm_idx ON customer USING gin (name gin_trgm_ops);
+CREATE INDEX customer_email_trgm_idx ON customer USING gin (email gin_trgm_ops);
+
+CREATE INDEX customer_name_prefix_idx ON customer (lower(name) text_pattern_ops);
+CREATE INDEX customer_email_prefix_idx ON customer (lower(email) text_pattern_ops);
@@ -0,0 +1,73 @@
+-- Customers per age, kept up to date by the triggers below, so statistics and
+-- counts by age range read at most one row per age instead of the table.
+-- Rows are never deleted, an age nobody has any more stays at zero.
+CREATE TABLE customer_age_summary (
+    age INT PRIMARY KEY,
+    customers BIGINT NOT NULL
+);
+
+-- no writes between the backfill and the triggers taking over
+LOCK TABLE customer IN SHARE MODE;
+
+INSERT INTO customer_age_summary (age, customers)
+SELECT age, count(*)
+FROM customer
+GROUP BY age;
+
+-- Applies the net change per age of one statement. Ages are upserted in order
+-- so two statements touching the same ages lock their rows in the same order.
+CREATE FUNCTION summarize_customer_ages() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO customer_age_summary (age, customers)
+        SELECT age, count(*) FROM new_rows GROUP BY age ORDER BY age
+        ON CONFLICT (age) DO UPDATE SET customers = customer_age_summary.customers + excluded.customers;
+    ELSIF TG_OP = 'DELETE' THEN
+        INSERT INTO customer_age_summary (age, customers)
+        SELECT age, -count(*) FROM old_rows GROUP BY age ORDER BY age
+        ON CONFLICT (age) DO UPDATE SET customers = customer_age_summary.customers + excluded.customers;
+    ELSE
+        INSERT INTO customer_age_summary (age, customers)
+        SELECT age, sum(delta)
+        FROM (SELECT age, 1 AS delta FROM new_rows
+              UNION ALL
+              SELECT age, -1 FROM old_rows) changes
+        GROUP BY age
+        HAVING sum(delta) <> 0
+        ORDER BY age
+        ON CONFLICT (age) DO UPDATE SET customers = customer_age_summary.customers + excluded.customers;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- a trigger with transition tables can only fire on one kind of statement
+CREATE TRIGGER customer_age_summary_insert
+    AFTER INSERT ON customer
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT
+EXECUTE FUNCTION summarize_customer_ages();
+
+CREATE TRIGGER customer_age_summary_update
+    AFTER UPDATE ON customer
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT
+EXECUTE FUNCTION summarize_customer_ages();
+
+CREATE TRIGGER customer_age_summary_delete
+    AFTER DELETE ON customer
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT
+EXECUTE FUNCTION summarize_customer_ages();
+
+CREATE FUNCTION reset_customer_ages() RETURNS trigger AS $$
+BEGIN
+    UPDATE customer_age_summary SET customers = 0;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER customer_age_summary_truncate
+    AFTER TRUNCATE ON customer
+    FOR EACH STATEMENT
+EXECUTE FUNCTION reset_customer_ages();
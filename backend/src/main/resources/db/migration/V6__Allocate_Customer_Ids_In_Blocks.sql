@@ -0,0 +1,11 @@
+-- Each nextval now reserves the 50 ids ending at the value returned, which the
+-- application hands out itself (CustomerIdAllocator, and Hibernate's pooled
+-- optimizer with allocationSize = 50). The column default still works, it
+-- just leaves the other 49 ids of its block unused.
+ALTER SEQUENCE customer_id_seq INCREMENT BY 50;
+
+-- Mark the sequence as called, so the first block ends at 51 or later and
+-- every block lies above the ids handed out one at a time so far.
+SELECT setval('customer_id_seq',
+              greatest((SELECT last_value FROM customer_id_seq), (SELECT coalesce(max(id), 1) FROM customer)),
+              true);
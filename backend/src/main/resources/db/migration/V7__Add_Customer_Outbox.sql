@@ -0,0 +1,63 @@
+-- One row per changed customer, written by the triggers below in the writing
+-- transaction, so a change is in the outbox exactly when it is committed.
+-- Readers take rows in (tx_id, id) order and only those of transactions older
+-- than every transaction still running: a row can then no longer appear
+-- behind one already read, which plain id order cannot promise.
+CREATE TABLE customer_outbox (
+    id BIGSERIAL PRIMARY KEY,
+    tx_id XID8 NOT NULL DEFAULT pg_current_xact_id(),
+    -- CREATED, UPDATED, DELETED, or RESET after a truncate
+    change_type VARCHAR(8) NOT NULL,
+    customer_id BIGINT,
+    version BIGINT,
+    created_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+CREATE INDEX customer_outbox_position ON customer_outbox (tx_id, id);
+CREATE INDEX customer_outbox_created_at ON customer_outbox (created_at);
+
+CREATE FUNCTION record_customer_changes() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO customer_outbox (change_type, customer_id, version)
+        SELECT 'CREATED', id, version FROM new_rows ORDER BY id;
+    ELSIF TG_OP = 'UPDATE' THEN
+        INSERT INTO customer_outbox (change_type, customer_id, version)
+        SELECT 'UPDATED', id, version FROM new_rows ORDER BY id;
+    ELSE
+        INSERT INTO customer_outbox (change_type, customer_id, version)
+        SELECT 'DELETED', id, version FROM old_rows ORDER BY id;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER customer_outbox_insert
+    AFTER INSERT ON customer
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT
+EXECUTE FUNCTION record_customer_changes();
+
+CREATE TRIGGER customer_outbox_update
+    AFTER UPDATE ON customer
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT
+EXECUTE FUNCTION record_customer_changes();
+
+CREATE TRIGGER customer_outbox_delete
+    AFTER DELETE ON customer
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT
+EXECUTE FUNCTION record_customer_changes();
+
+CREATE FUNCTION record_customer_reset() RETURNS trigger AS $$
+BEGIN
+    INSERT INTO customer_outbox (change_type) VALUES ('RESET');
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER customer_outbox_truncate
+    AFTER TRUNCATE ON customer
+    FOR EACH STATEMENT
+EXECUTE FUNCTION record_customer_reset();
@@ -0,0 +1,57 @@
+-- Tells every instance listening on customer_changes which customers a
+-- committed statement touched, so they can drop them from their caches.
+-- Postgres delivers a notification only when its transaction commits, and
+-- folds identical ones within a transaction into one.
+-- The payload is the changed ids separated by commas, or * for "drop
+-- everything" when a statement changed too many rows for the 8000 byte
+-- payload limit, or after a truncate.
+CREATE FUNCTION notify_customer_changes() RETURNS trigger AS $$
+DECLARE
+    changed INT;
+    ids TEXT;
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        SELECT count(*), string_agg(id::text, ',') INTO changed, ids
+        FROM (SELECT id FROM old_rows LIMIT 301) changed_rows;
+    ELSE
+        SELECT count(*), string_agg(id::text, ',') INTO changed, ids
+        FROM (SELECT id FROM new_rows LIMIT 301) changed_rows;
+    END IF;
+    IF changed > 300 THEN
+        PERFORM pg_notify('customer_changes', '*');
+    ELSIF changed > 0 THEN
+        PERFORM pg_notify('customer_changes', ids);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER customer_notify_insert
+    AFTER INSERT ON customer
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT
+EXECUTE FUNCTION notify_customer_changes();
+
+CREATE TRIGGER customer_notify_update
+    AFTER UPDATE ON customer
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT
+EXECUTE FUNCTION notify_customer_changes();
+
+CREATE TRIGGER customer_notify_delete
+    AFTER DELETE ON customer
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT
+EXECUTE FUNCTION notify_customer_changes();
+
+CREATE FUNCTION notify_customer_reset() RETURNS trigger AS $$
+BEGIN
+    PERFORM pg_notify('customer_changes', '*');
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER customer_notify_truncate
+    AFTER TRUNCATE ON customer
+    FOR EACH STATEMENT
+EXECUTE FUNCTION notify_customer_reset();
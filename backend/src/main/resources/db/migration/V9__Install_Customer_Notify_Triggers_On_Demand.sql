@@ -0,0 +1,39 @@
+-- pg_notify takes a cluster-wide lock at commit, so the V8 triggers would
+-- serialize every customer write even where no instance caches customers.
+-- They are dropped here and installed by install_customer_notify_triggers(),
+-- which an instance calls before it starts listening. CREATE TRIGGER waits
+-- for the writes already running, so every write committed after the call
+-- returns is notified. Once installed the triggers stay; drop them by hand
+-- after turning the cache off everywhere.
+DROP TRIGGER customer_notify_insert ON customer;
+DROP TRIGGER customer_notify_update ON customer;
+DROP TRIGGER customer_notify_delete ON customer;
+DROP TRIGGER customer_notify_truncate ON customer;
+
+CREATE FUNCTION install_customer_notify_triggers() RETURNS void AS $$
+BEGIN
+    -- statement triggers, one notification per statement however many rows it changed
+    CREATE OR REPLACE TRIGGER customer_notify_insert
+        AFTER INSERT ON customer
+        REFERENCING NEW TABLE AS new_rows
+        FOR EACH STATEMENT
+    EXECUTE FUNCTION notify_customer_changes();
+
+    CREATE OR REPLACE TRIGGER customer_notify_update
+        AFTER UPDATE ON customer
+        REFERENCING NEW TABLE AS new_rows
+        FOR EACH STATEMENT
+    EXECUTE FUNCTION notify_customer_changes();
+
+    CREATE OR REPLACE TRIGGER customer_notify_delete
+        AFTER DELETE ON customer
+        REFERENCING OLD TABLE AS old_rows
+        FOR EACH STATEMENT
+    EXECUTE FUNCTION notify_customer_changes();
+
+    CREATE OR REPLACE TRIGGER customer_notify_truncate
+        AFTER TRUNCATE ON customer
+        FOR EACH STATEMENT
+    EXECUTE FUNCTION notify_customer_reset();
+END;
+$$ LANGUAGE plpgsql;
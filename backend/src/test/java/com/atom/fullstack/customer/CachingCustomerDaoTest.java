@@ -0,0 +1,183 @@
+package com.atom.fullstack.customer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CachingCustomerDaoTest {
+
+    private CachingCustomerDao underTest;
+
+    @Mock
+    private CustomerDao customerDao;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CachingCustomerDao(customerDao, new CustomerDaoProperties.Cache(
+                true, 100, Duration.ofMinutes(1), Duration.ofSeconds(5),
+                new CustomerDaoProperties.Invalidation(false, Duration.ofSeconds(5), Duration.ofSeconds(1))));
+    }
+
+    @Test
+    void selectCustomerByIdHitsDatabaseOnce() {
+        //Given
+        Customer customer = new Customer(1L, "name", "email", 20);
+        when(customerDao.selectCustomerById(1L)).thenReturn(Optional.of(customer));
+        //When
+        underTest.selectCustomerById(1L);
+        Optional<Customer> actual = underTest.selectCustomerById(1L);
+        //Then
+        assertThat(actual).contains(customer);
+        assertThat(underTest.existsCustomerById(1L)).isTrue();
+        verify(customerDao, times(1)).selectCustomerById(1L);
+        verify(customerDao, times(0)).existsCustomerById(1L);
+    }
+
+    @Test
+    void selectCustomerVersionIsAnsweredFromCachedCustomer() {
+        //Given
+        Customer customer = new Customer(1L, "name", "email", 20, 7L);
+        when(customerDao.selectCustomerById(1L)).thenReturn(Optional.of(customer));
+        underTest.selectCustomerById(1L);
+        //When
+        Optional<Long> version = underTest.selectCustomerVersion(1L);
+        //Then
+        assertThat(version).contains(7L);
+        verify(customerDao, times(0)).selectCustomerVersion(1L);
+    }
+
+    @Test
+    void selectCustomersByIdsLoadsOnlyUncachedIds() {
+        //Given
+        Customer cached = new Customer(1L, "cached", "email", 20);
+        Customer loaded = new Customer(2L, "loaded", "other email", 30);
+        when(customerDao.selectCustomerById(1L)).thenReturn(Optional.of(cached));
+        when(customerDao.selectCustomersByIds(argThat(ids -> Set.copyOf(ids).equals(Set.of(2L, 3L)))))
+                .thenReturn(List.of(loaded));
+        underTest.selectCustomerById(1L);
+        //When
+        List<Customer> actual = underTest.selectCustomersByIds(List.of(1L, 2L, 3L));
+        //Then
+        assertThat(actual).containsExactlyInAnyOrder(cached, loaded);
+        assertThat(underTest.selectCustomerById(2L)).contains(loaded);
+        assertThat(underTest.existsCustomerById(3L)).isFalse();
+        verify(customerDao, times(0)).selectCustomerById(2L);
+        verify(customerDao, times(0)).existsCustomerById(3L);
+    }
+
+    @Test
+    void cachesNotFound() {
+        //Given
+        when(customerDao.selectCustomerById(1L)).thenReturn(Optional.empty());
+        //When
+        boolean exists = underTest.existsCustomerById(1L);
+        Optional<Customer> actual = underTest.selectCustomerById(1L);
+        //Then
+        assertThat(exists).isFalse();
+        assertThat(actual).isEmpty();
+        verify(customerDao, times(1)).selectCustomerById(1L);
+        verify(customerDao, times(0)).existsCustomerById(1L);
+    }
+
+    @Test
+    void insertDuringExistenceCheckIsNotHiddenByTheMiss() {
+        //Given
+        Customer inserted = new Customer("new", "new email", 30);
+        when(customerDao.insertCustomer(inserted)).thenAnswer(invocation -> {
+            inserted.setId(5L);
+            return true;
+        });
+        when(customerDao.selectCustomerById(5L))
+                .thenAnswer(invocation -> {
+                    // the insert commits after our query read nothing
+                    underTest.insertCustomer(inserted);
+                    return Optional.empty();
+                })
+                .thenReturn(Optional.of(new Customer(5L, "new", "new email", 30)));
+        //When
+        boolean before = underTest.existsCustomerById(5L);
+        boolean after = underTest.existsCustomerById(5L);
+        //Then
+        assertThat(before).isFalse();
+        assertThat(after).isTrue();
+    }
+
+    @Test
+    void updateEvictsCustomer() {
+        //Given
+        Customer customer = new Customer(1L, "name", "email", 20);
+        Customer updated = new Customer(1L, "new name", "email", 20);
+        when(customerDao.selectCustomerById(1L))
+                .thenReturn(Optional.of(customer))
+                .thenReturn(Optional.of(updated));
+        underTest.selectCustomerById(1L);
+        //When
+        underTest.updateCustomer(Customer.builder().id(1L).name("new name").build());
+        //Then
+        assertThat(underTest.selectCustomerById(1L)).contains(updated);
+    }
+
+    @Test
+    void deleteEvictsCustomer() {
+        //Given
+        when(customerDao.selectCustomerById(1L))
+                .thenReturn(Optional.of(new Customer(1L, "name", "email", 20)))
+                .thenReturn(Optional.empty());
+        underTest.selectCustomerById(1L);
+        //When
+        underTest.deleteCustomer(1L);
+        //Then
+        assertThat(underTest.selectCustomerById(1L)).isEmpty();
+    }
+
+    @Test
+    void insertEvictsTheCachedMissOfItsNewId() {
+        //Given
+        Customer inserted = new Customer("new", "new email", 30);
+        when(customerDao.insertCustomer(inserted)).thenAnswer(invocation -> {
+            inserted.setId(2L);
+            return true;
+        });
+        when(customerDao.selectCustomerById(2L)).thenReturn(Optional.empty());
+        when(customerDao.selectCustomerById(3L)).thenReturn(Optional.empty());
+        underTest.selectCustomerById(2L);
+        underTest.selectCustomerById(3L);
+        //When
+        underTest.insertCustomer(inserted);
+        //Then
+        assertThat(underTest.cache().getIfPresent(2L)).isNull();
+        assertThat(underTest.cache().getIfPresent(3L)).isEmpty();
+    }
+
+    @Test
+    void failedLoadIsNotCached() {
+        //Given
+        Customer customer = new Customer(1L, "name", "email", 20);
+        when(customerDao.selectCustomerById(1L))
+                .thenThrow(new QueryTimeoutException("timeout"))
+                .thenReturn(Optional.of(customer));
+        //When
+        assertThatThrownBy(() -> underTest.selectCustomerById(1L))
+                .isInstanceOf(QueryTimeoutException.class);
+        Optional<Customer> actual = underTest.selectCustomerById(1L);
+        //Then
+        assertThat(actual).contains(customer);
+        verify(customerDao, times(2)).selectCustomerById(1L);
+    }
+}
@@ -0,0 +1,124 @@
+package com.atom.fullstack.customer;
+
+import com.atom.fullstack.AbstractTestContainers;
+import com.atom.fullstack.SpringBootExampleApplication;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Two instances of the application against one database, each with its own
+ * cache, as behind the load balancer.
+ */
+class CustomerCacheCoherenceTest extends AbstractTestContainers {
+
+    private static final Duration WAIT = Duration.ofSeconds(10);
+
+    private ConfigurableApplicationContext first;
+    private ConfigurableApplicationContext second;
+    private CachingCustomerDao firstDao;
+    private CustomerDao secondDao;
+
+    @BeforeEach
+    void setUp() {
+        first = start();
+        second = start();
+        firstDao = (CachingCustomerDao) first.getBean("customerDao", CustomerDao.class);
+        secondDao = second.getBean("customerDao", CustomerDao.class);
+        waitUntil(() -> !firstDao.bypassed() && !((CachingCustomerDao) secondDao).bypassed());
+    }
+
+    @AfterEach
+    void tearDown() {
+        first.close();
+        second.close();
+    }
+
+    @Test
+    void writeOnOneInstanceEvictsCustomerCachedByTheOther() {
+        //Given
+        Customer customer = new Customer("name", UUID.randomUUID() + "@email.com", 20);
+        secondDao.insertCustomer(customer);
+        Long id = customer.getId();
+        assertThat(firstDao.selectCustomerById(id)).map(Customer::getAge).contains(20);
+        //When
+        secondDao.updateCustomer(Customer.builder().id(id).age(21).build());
+        //Then
+        waitUntil(() -> firstDao.cache().getIfPresent(id) == null);
+        assertThat(firstDao.selectCustomerById(id)).map(Customer::getAge).contains(21);
+    }
+
+    @Test
+    void deleteOnOneInstanceEvictsCustomerCachedByTheOther() {
+        //Given
+        Customer customer = new Customer("name", UUID.randomUUID() + "@email.com", 20);
+        secondDao.insertCustomer(customer);
+        Long id = customer.getId();
+        assertThat(firstDao.selectCustomerById(id)).isPresent();
+        //When
+        secondDao.deleteCustomer(id);
+        //Then
+        waitUntil(() -> firstDao.cache().getIfPresent(id) == null);
+        assertThat(firstDao.selectCustomerById(id)).isEmpty();
+    }
+
+    @Test
+    void writeMissedWhileDisconnectedIsNotServedAfterReconnect() {
+        //Given
+        Customer customer = new Customer("name", UUID.randomUUID() + "@email.com", 20);
+        secondDao.insertCustomer(customer);
+        Long id = customer.getId();
+        assertThat(firstDao.selectCustomerById(id)).isPresent();
+        //When
+        // kills the listening connections of both instances, the update below is never notified
+        getJdbcTemplate().queryForList("""
+                SELECT pg_terminate_backend(pid)
+                FROM pg_stat_activity
+                WHERE application_name = 'customer-cache-invalidation'
+                """);
+        waitUntil(firstDao::bypassed);
+        getJdbcTemplate().update("UPDATE customer SET age = 21 WHERE id = ?", id);
+        //Then
+        assertThat(firstDao.selectCustomerById(id)).map(Customer::getAge).contains(21);
+        waitUntil(() -> !firstDao.bypassed());
+        assertThat(firstDao.selectCustomerById(id)).map(Customer::getAge).contains(21);
+    }
+
+    private static ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(SpringBootExampleApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(Map.of(
+                        "spring.datasource.url", postgreSQLContainer.getJdbcUrl(),
+                        "spring.datasource.username", postgreSQLContainer.getUsername(),
+                        "spring.datasource.password", postgreSQLContainer.getPassword(),
+                        "spring.jpa.show-sql", "false",
+                        "atom.faker.enabled", "false",
+                        "customer.dao.cache.enabled", "true",
+                        "customer.dao.cache.invalidation.max-staleness", "2s",
+                        "customer.dao.cache.invalidation.reconnect-delay", "500ms"))
+                .run();
+    }
+
+    private static void waitUntil(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + WAIT.toNanos();
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition met within " + WAIT).isLessThan(deadline);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
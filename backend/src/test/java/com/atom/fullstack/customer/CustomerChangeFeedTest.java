@@ -0,0 +1,159 @@
+package com.atom.fullstack.customer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerChangeFeedTest {
+
+    private static final int BATCH_SIZE = 500;
+    private static final CustomerChangeCursor HEAD = new CustomerChangeCursor(1, 1);
+
+    @Mock
+    private CustomerOutbox outbox;
+    @Mock
+    private ScheduledExecutorService poller;
+    // sender tasks run when the test says so
+    private final List<Runnable> pendingSends = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        when(outbox.selectLatestCursor()).thenReturn(Optional.of(HEAD));
+    }
+
+    @Test
+    void pollSendsNewChangesToSubscribersInOrder() {
+        //Given
+        CustomerChangeFeed underTest = feed(10, CustomerOutboxProperties.SlowSubscriberPolicy.DISCONNECT);
+        RecordingEmitter emitter = new RecordingEmitter();
+        underTest.subscribe(emitter, null);
+        when(outbox.selectChangesAfter(HEAD, BATCH_SIZE)).thenReturn(List.of(change(2, 1), change(2, 2)));
+        //When
+        underTest.poll();
+        runPendingSends();
+        //Then
+        assertThat(emitter.ids()).containsExactly("2-1", "2-2");
+    }
+
+    @Test
+    void resumesFromLastEventIdWithoutRepeatingChanges() {
+        //Given
+        CustomerChangeFeed underTest = feed(10, CustomerOutboxProperties.SlowSubscriberPolicy.DISCONNECT);
+        RecordingEmitter emitter = new RecordingEmitter();
+        CustomerChangeCursor lastSeen = new CustomerChangeCursor(0, 5);
+        when(outbox.exists(lastSeen)).thenReturn(true);
+        // by the time the subscriber catches up, the live change is in the outbox too
+        when(outbox.selectChangesAfter(lastSeen, BATCH_SIZE)).thenReturn(List.of(change(1, 1), change(2, 1)));
+        when(outbox.selectChangesAfter(HEAD, BATCH_SIZE)).thenReturn(List.of(change(2, 1)));
+        underTest.subscribe(emitter, lastSeen.encode());
+        //When
+        underTest.poll();
+        runPendingSends();
+        //Then
+        assertThat(emitter.ids()).containsExactly("1-1", "2-1");
+    }
+
+    @Test
+    void resumingFromPrunedChangeStartsOverWithReset() {
+        //Given
+        CustomerChangeFeed underTest = feed(10, CustomerOutboxProperties.SlowSubscriberPolicy.DISCONNECT);
+        RecordingEmitter emitter = new RecordingEmitter();
+        when(outbox.exists(new CustomerChangeCursor(0, 7))).thenReturn(false);
+        //When
+        underTest.subscribe(emitter, "0-7");
+        runPendingSends();
+        //Then
+        assertThat(emitter.ids()).containsExactly(HEAD.encode());
+        assertThat(emitter.events.get(0)).contains("RESET");
+    }
+
+    @Test
+    void disconnectsSubscriberThatFallsTooFarBehind() {
+        //Given
+        CustomerChangeFeed underTest = feed(1, CustomerOutboxProperties.SlowSubscriberPolicy.DISCONNECT);
+        RecordingEmitter emitter = new RecordingEmitter();
+        underTest.subscribe(emitter, null);
+        when(outbox.selectChangesAfter(HEAD, BATCH_SIZE)).thenReturn(List.of(change(2, 1), change(2, 2)));
+        //When
+        underTest.poll();
+        //Then
+        assertThat(emitter.completed).isTrue();
+        assertThat(underTest.subscriberCount()).isZero();
+    }
+
+    @Test
+    void dropOldestKeepsSubscriberAndReportsDroppedChanges() {
+        //Given
+        CustomerChangeFeed underTest = feed(1, CustomerOutboxProperties.SlowSubscriberPolicy.DROP_OLDEST);
+        RecordingEmitter emitter = new RecordingEmitter();
+        underTest.subscribe(emitter, null);
+        when(outbox.selectChangesAfter(HEAD, BATCH_SIZE))
+                .thenReturn(List.of(change(2, 1), change(2, 2), change(2, 3)));
+        //When
+        underTest.poll();
+        runPendingSends();
+        //Then
+        assertThat(emitter.completed).isFalse();
+        assertThat(emitter.events.get(0)).contains("event:dropped").contains("2");
+        assertThat(emitter.ids()).containsExactly("2-3");
+    }
+
+    private CustomerChangeFeed feed(int bufferSize, CustomerOutboxProperties.SlowSubscriberPolicy policy) {
+        return new CustomerChangeFeed(outbox,
+                new CustomerOutboxProperties.Feed(Duration.ofMillis(200), BATCH_SIZE, bufferSize, policy, 10,
+                        Duration.ofSeconds(15), Duration.ofMinutes(30), 1),
+                poller, pendingSends::add, new SimpleMeterRegistry());
+    }
+
+    private void runPendingSends() {
+        while (!pendingSends.isEmpty()) {
+            pendingSends.remove(0).run();
+        }
+    }
+
+    private static CustomerChange change(long txId, long id) {
+        return new CustomerChange(new CustomerChangeCursor(txId, id), CustomerChange.Type.UPDATED, id, 1L,
+                Instant.now());
+    }
+
+    private static final class RecordingEmitter extends SseEmitter {
+
+        private final List<String> events = new ArrayList<>();
+        private boolean completed;
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            events.add(builder.build().stream()
+                    .map(data -> String.valueOf(data.getData()))
+                    .collect(Collectors.joining()));
+        }
+
+        @Override
+        public void complete() {
+            completed = true;
+        }
+
+        List<String> ids() {
+            return events.stream()
+                    .filter(event -> event.startsWith("id:"))
+                    .map(event -> event.substring(3, event.indexOf('\n')))
+                    .toList();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.atom.fullstack.customer;
+
+import com.atom.fullstack.exception.RequestValidationException;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerFieldsTest {
+
+    @Test
+    void parseAlwaysIncludesId() {
+        //When
+        CustomerFields actual = CustomerFields.parse(" EMAIL , age");
+        //Then
+        assertThat(actual).isSameAs(CustomerFields.of(CustomerField.ID, CustomerField.EMAIL, CustomerField.AGE));
+        assertThat(actual.columns()).isEqualTo("id, email, age, version");
+        assertThat(actual).hasToString("id,email,age");
+    }
+
+    @Test
+    void parseOfNothingIsAllFields() {
+        assertThat(CustomerFields.parse(null)).isSameAs(CustomerFields.ALL);
+        assertThat(CustomerFields.parse(" ")).isSameAs(CustomerFields.ALL);
+        assertThat(CustomerFields.ALL.columns()).isEqualTo("id, name, email, age, version");
+    }
+
+    @Test
+    void willThrowWhenFieldIsUnknown() {
+        assertThatThrownBy(() -> CustomerFields.parse("id,version"))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("Unknown customer field version");
+    }
+}
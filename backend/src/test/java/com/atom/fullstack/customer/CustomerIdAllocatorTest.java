@@ -0,0 +1,47 @@
+package com.atom.fullstack.customer;
+
+import com.atom.fullstack.AbstractTestContainers;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerIdAllocatorTest extends AbstractTestContainers {
+
+    @Test
+    void nextIdTakesOneBlockFromTheSequence() {
+        // Given
+        CustomerIdAllocator underTest = new CustomerIdAllocator(getJdbcTemplate());
+
+        // When
+        long first = underTest.nextId();
+        long[] rest = new long[CustomerIdAllocator.BLOCK_SIZE - 1];
+        for (int i = 0; i < rest.length; i++) {
+            rest[i] = underTest.nextId();
+        }
+        long blockEnd = getJdbcTemplate().queryForObject("SELECT last_value FROM customer_id_seq", Long.class);
+
+        // Then
+        assertThat(first).isEqualTo(blockEnd - CustomerIdAllocator.BLOCK_SIZE + 1);
+        assertThat(rest[rest.length - 1]).isEqualTo(blockEnd);
+    }
+
+    @Test
+    void nextIdsSpanningBlocksAreDistinctAndNeverReused() {
+        // Given
+        CustomerIdAllocator underTest = new CustomerIdAllocator(getJdbcTemplate());
+        CustomerIdAllocator other = new CustomerIdAllocator(getJdbcTemplate());
+        long leftOver = underTest.nextId();
+
+        // When
+        long[] ids = underTest.nextIds(3 * CustomerIdAllocator.BLOCK_SIZE);
+        long[] otherIds = other.nextIds(CustomerIdAllocator.BLOCK_SIZE);
+
+        // Then
+        assertThat(ids[0]).isEqualTo(leftOver + 1);
+        assertThat(Arrays.stream(ids).distinct().count()).isEqualTo(ids.length);
+        assertThat(ids).doesNotContain(otherIds);
+        assertThat(ids).doesNotContain(leftOver);
+    }
+}
@@ -5,9 +5,12 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.jdbc.core.JdbcTemplate;
 
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
@@ -20,7 +23,8 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainers {
     void setUp() {
         underTest = new CustomerJDBCDataAccessService(
                 getJdbcTemplate(),
-                customerRowMapper
+                customerRowMapper,
+                new CustomerIdAllocator(getJdbcTemplate())
         );
     }
 
@@ -42,6 +46,66 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainers {
     }
 
 
+    @Test
+    void selectCustomersPagesByIdWithoutOverlap() {
+        // given
+        for (int i = 0; i < 3; i++) {
+            underTest.insertCustomer(Customer.builder()
+                    .name(faker.name().fullName())
+                    .email(faker.internet().emailAddress() + "-" + UUID.randomUUID())
+                    .age(faker.number().numberBetween(18, 60))
+                    .build());
+        }
+
+        // when
+        List<Customer> firstPage = underTest.selectCustomers(CustomerCursor.first(CustomerSortKey.ID), 2);
+        Customer last = firstPage.get(firstPage.size() - 1);
+        List<Customer> secondPage = underTest.selectCustomers(CustomerCursor.after(CustomerSortKey.ID, last), 2);
+
+        // then
+        assertThat(firstPage).hasSize(2);
+        assertThat(firstPage.get(0).getId()).isLessThan(last.getId());
+        assertThat(secondPage).isNotEmpty();
+        assertThat(secondPage).allMatch(c -> c.getId() > last.getId());
+    }
+
+    @Test
+    void selectCustomersPagesByEmail() {
+        // given
+        String prefix = UUID.randomUUID().toString();
+        underTest.insertCustomer(new Customer("b", prefix + "-b@email.com", 20));
+        underTest.insertCustomer(new Customer("a", prefix + "-a@email.com", 20));
+
+        // when
+        List<Customer> page = underTest.selectCustomers(
+                new CustomerCursor(CustomerSortKey.EMAIL, prefix), 2);
+
+        // then
+        assertThat(page).extracting(Customer::getEmail)
+                .containsExactly(prefix + "-a@email.com", prefix + "-b@email.com");
+    }
+
+    @Test
+    void streamAllCustomers() {
+        // given
+        Customer customer = Customer.builder()
+                .name(faker.name().fullName())
+                .email(faker.internet().emailAddress() + "-" + UUID.randomUUID())
+                .age(faker.number().numberBetween(18, 60))
+                .build();
+        underTest.insertCustomer(customer);
+
+        // when
+        List<Customer> streamed;
+        try (Stream<Customer> customers = underTest.streamAllCustomers()) {
+            streamed = customers.toList();
+        }
+
+        // then
+        assertThat(streamed).anyMatch(c -> c.getEmail().equals(customer.getEmail()));
+        assertThat(streamed).isSortedAccordingTo(Comparator.comparing(Customer::getId));
+    }
+
     @Test
     void selectCustomerById() {
         // Given
@@ -106,14 +170,220 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainers {
                 .build();
 
         // When
-        underTest.insertCustomer(customer);
+        boolean inserted = underTest.insertCustomer(customer);
 
         // Then
+        assertTrue(inserted);
+        assertThat(customer.getId()).isNotNull();
         List<Customer> customers = underTest.selectAllCustomers();
         assertThat(customers).isNotEmpty();
         assertThat(customers).anyMatch(c -> c.getEmail().equals(customer.getEmail()));
     }
 
+    @Test
+    void willNotInsertCustomerWithTakenEmail() {
+        // Given
+        String email = faker.internet().emailAddress() + "-" + UUID.randomUUID();
+        underTest.insertCustomer(new Customer("first", email, 20));
+
+        // When
+        Customer duplicate = new Customer("second", email, 30);
+        boolean inserted = underTest.insertCustomer(duplicate);
+
+        // Then
+        assertFalse(inserted);
+        assertThat(duplicate.getId()).isNull();
+        assertThat(underTest.selectAllCustomers())
+                .filteredOn(c -> c.getEmail().equals(email))
+                .singleElement()
+                .satisfies(c -> assertThat(c.getName()).isEqualTo("first"));
+    }
+
+    @Test
+    void insertCustomersInOneBatch() {
+        // Given
+        String prefix = UUID.randomUUID().toString();
+        List<Customer> customers = List.of(
+                new Customer("a", prefix + "-a@email.com", 20),
+                new Customer("b", prefix + "-b@email.com", 30));
+
+        // When
+        underTest.insertCustomers(customers);
+
+        // Then
+        assertThat(underTest.selectExistingEmails(List.of(
+                prefix + "-a@email.com", prefix + "-b@email.com", prefix + "-c@email.com")))
+                .containsExactlyInAnyOrder(prefix + "-a@email.com", prefix + "-b@email.com");
+        assertThat(underTest.selectCustomersByIds(customers.stream().map(Customer::getId).toList()))
+                .containsExactlyInAnyOrderElementsOf(customers);
+    }
+
+    @Test
+    void insertCustomersIfEmailAbsentSkipsTakenEmails() {
+        // Given
+        String prefix = UUID.randomUUID().toString();
+        underTest.insertCustomer(new Customer("taken", prefix + "-a@email.com", 20));
+        Customer taken = new Customer("a", prefix + "-a@email.com", 20);
+        Customer fresh = new Customer("b", prefix + "-b@email.com", 30);
+        Customer repeated = new Customer("c", prefix + "-b@email.com", 40);
+
+        // When
+        int inserted = underTest.insertCustomersIfEmailAbsent(List.of(taken, fresh, repeated));
+
+        // Then
+        assertThat(inserted).isEqualTo(1);
+        assertThat(taken.getId()).isNull();
+        assertThat(repeated.getId()).isNull();
+        assertThat(underTest.selectCustomerById(fresh.getId()))
+                .hasValueSatisfying(c -> assertThat(c.getName()).isEqualTo("b"));
+    }
+
+    @Test
+    void searchCustomersRanksPrefixMatchesFirstAndContinuesAfterCursor() {
+        // Given
+        String token = faker.letterify("zq??????");
+        String fuzzy = token.substring(0, token.length() - 1) + (token.endsWith("x") ? "y" : "x");
+        Customer exact = new Customer(token, UUID.randomUUID() + "@email.com", 20);
+        Customer prefixed = new Customer(token + "son", UUID.randomUUID() + "@email.com", 20);
+        Customer similar = new Customer(fuzzy, UUID.randomUUID() + "@email.com", 20);
+        underTest.insertCustomers(List.of(similar, prefixed, exact));
+        CustomerSearchQuery query = new CustomerSearchQuery(token.toUpperCase());
+
+        // When
+        List<CustomerSearchHit> firstPage = underTest.searchCustomers(query, null, 2);
+        List<CustomerSearchHit> secondPage = underTest.searchCustomers(
+                query, CustomerSearchCursor.after(firstPage.get(1)), 2);
+
+        // Then
+        assertThat(firstPage).extracting(hit -> hit.customer().getName())
+                .containsExactly(token, token + "son");
+        assertThat(secondPage).extracting(hit -> hit.customer().getName())
+                .containsExactly(fuzzy);
+        assertThat(secondPage.get(0).score()).isLessThan(1);
+    }
+
+    @Test
+    void ageSummaryFollowsInsertsUpdatesAndDeletes() {
+        // Given
+        // ages no other test uses, so the summary rows are ours alone
+        int base = 10_000 + faker.number().numberBetween(0, 10_000) * 20;
+        Customer youngest = new Customer("youngest", UUID.randomUUID() + "@email.com", base + 1);
+        Customer middle = new Customer("middle", UUID.randomUUID() + "@email.com", base + 5);
+        Customer oldest = new Customer("oldest", UUID.randomUUID() + "@email.com", base + 12);
+        // one statement for two rows, then one for a single row
+        underTest.insertCustomersIfEmailAbsent(List.of(youngest, middle));
+        underTest.insertCustomer(oldest);
+        List<CustomerAgeBucket> inserted = underTest.selectCustomerAgeBuckets(base, base + 19, 10);
+
+        // When
+        underTest.updateCustomer(Customer.builder().id(middle.getId()).age(base + 15).build());
+        underTest.deleteCustomer(youngest.getId());
+        List<CustomerAgeBucket> changed = underTest.selectCustomerAgeBuckets(base, base + 19, 10);
+
+        // Then
+        assertThat(inserted).containsExactly(
+                new CustomerAgeBucket(base, 2, base + 1, base + 5, 2L * base + 6),
+                new CustomerAgeBucket(base + 10, 1, base + 12, base + 12, base + 12));
+        assertThat(changed).containsExactly(
+                new CustomerAgeBucket(base + 10, 2, base + 12, base + 15, 2L * base + 27));
+        assertThat(underTest.countCustomers(base, base + 19)).isEqualTo(2);
+        assertThat(underTest.countCustomers(base, base + 9)).isZero();
+    }
+
+    @Test
+    void ageSummarySpreadsOneAgeOverShardsAndSumsThem() {
+        // Given
+        int age = 30_000 + faker.number().numberBetween(0, 10_000);
+        List<Customer> customers = IntStream.range(0, 20)
+                .mapToObj(i -> new Customer("same age", UUID.randomUUID() + "@email.com", age))
+                .toList();
+
+        // When
+        underTest.insertCustomersIfEmailAbsent(customers);
+        underTest.deleteCustomer(customers.get(0).getId());
+
+        // Then
+        Integer shards = getJdbcTemplate().queryForObject(
+                "SELECT count(*) FROM customer_age_summary WHERE age = ? AND customers > 0", Integer.class, age);
+        assertThat(shards).isGreaterThan(1);
+        assertThat(underTest.countCustomers(age, age)).isEqualTo(19);
+        assertThat(underTest.selectCustomerAgeBuckets(age, age, 1))
+                .containsExactly(new CustomerAgeBucket(age, 19, age, age, 19L * age));
+    }
+
+    @Test
+    void estimateCustomerCountAfterAnalyze() {
+        // Given
+        underTest.insertCustomer(new Customer("counted", UUID.randomUUID() + "@email.com", 20));
+        getJdbcTemplate().execute("ANALYZE customer");
+
+        // When
+        Optional<Long> estimate = underTest.estimateCustomerCount();
+
+        // Then
+        assertThat(estimate).hasValueSatisfying(count -> assertThat(count).isPositive());
+    }
+
+    @Test
+    void selectCustomersByIdsLeavesOutUnknownIds() {
+        // Given
+        Customer first = new Customer("first", UUID.randomUUID() + "@email.com", 20);
+        Customer second = new Customer("second", UUID.randomUUID() + "@email.com", 30);
+        underTest.insertCustomer(first);
+        underTest.insertCustomer(second);
+
+        // When
+        List<Customer> actual = underTest.selectCustomersByIds(List.of(second.getId(), -1L, first.getId()));
+
+        // Then
+        assertThat(actual).extracting(Customer::getEmail)
+                .containsExactlyInAnyOrder(first.getEmail(), second.getEmail());
+    }
+
+    @Test
+    void selectCustomerProjectionByIdReadsOnlyFieldsAskedFor() {
+        // Given
+        Customer customer = new Customer("name", UUID.randomUUID() + "@email.com", 20);
+        underTest.insertCustomer(customer);
+        CustomerFields fields = CustomerFields.parse("email");
+
+        // When
+        Optional<CustomerProjection> actual = underTest.selectCustomerProjectionById(customer.getId(), fields);
+
+        // Then
+        assertThat(actual).contains(new CustomerProjection(customer.getId(), null, customer.getEmail(), null,
+                customer.getVersion()));
+    }
+
+    @Test
+    void selectCustomerProjectionsPagesLikeSelectCustomers() {
+        // Given
+        for (int i = 0; i < 3; i++) {
+            underTest.insertCustomer(new Customer("name", UUID.randomUUID() + "@email.com", 20 + i));
+        }
+        CustomerFields fields = CustomerFields.parse("age");
+        CustomerCursor first = CustomerCursor.first(CustomerSortKey.ID);
+
+        // When
+        List<CustomerProjection> firstPage = underTest.selectCustomerProjections(first, 2, fields);
+        List<CustomerProjection> secondPage = underTest.selectCustomerProjections(
+                CustomerCursor.after(CustomerSortKey.ID, firstPage.get(1)), 2, fields);
+
+        // Then
+        assertThat(firstPage).extracting(CustomerProjection::id)
+                .containsExactlyElementsOf(underTest.selectCustomers(first, 2).stream().map(Customer::getId).toList());
+        assertThat(secondPage).allSatisfy(customer -> {
+            assertThat(customer.id()).isGreaterThan(firstPage.get(1).id());
+            assertThat(customer.name()).isNull();
+            assertThat(customer.age()).isNotNull();
+        });
+    }
+
+    @Test
+    void selectExistingEmailsOfEmptyCollection() {
+        assertThat(underTest.selectExistingEmails(List.of())).isEmpty();
+    }
+
     @Test
     void existsCustomerByEmail() {
         // Given
@@ -202,10 +472,72 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainers {
 
         // Then
         assertTrue(insertedCustomerOpt.isPresent(), "Inserted customer not found");
-        underTest.deleteCustomer(insertedCustomerOpt.get().getId());
+        assertTrue(underTest.deleteCustomer(insertedCustomerOpt.get().getId()));
         assertFalse(underTest.existsCustomerByEmail(customer.getEmail()));
     }
 
+    @Test
+    void deleteCustomerIfVersionOnlyDeletesThatVersion() {
+        // Given
+        Customer customer = new Customer("name", faker.internet().emailAddress() + "-" + UUID.randomUUID(), 20);
+        underTest.insertCustomer(customer);
+        long version = underTest.selectCustomerVersion(customer.getId()).orElseThrow();
+
+        // When
+        boolean staleDeleted = underTest.deleteCustomerIfVersion(customer.getId(), version + 1);
+        boolean deleted = underTest.deleteCustomerIfVersion(customer.getId(), version);
+
+        // Then
+        assertFalse(staleDeleted);
+        assertTrue(deleted);
+        assertThat(underTest.selectCustomerVersion(customer.getId())).isEmpty();
+    }
+
+    @Test
+    void everyWriteAdvancesChangeCount() {
+        // Given
+        long before = underTest.selectCustomersChangeCount();
+        Customer customer = new Customer("name", faker.internet().emailAddress() + "-" + UUID.randomUUID(), 20);
+
+        // When
+        underTest.insertCustomer(customer);
+        long afterInsert = underTest.selectCustomersChangeCount();
+        underTest.updateCustomer(Customer.builder().id(customer.getId()).age(21).build());
+        long afterUpdate = underTest.selectCustomersChangeCount();
+
+        // Then
+        assertThat(afterInsert).isGreaterThan(before);
+        assertThat(afterUpdate).isGreaterThan(afterInsert);
+    }
+
+    @Test
+    void everyStatementBumpsExactlyOneShard() {
+        // Given
+        long before = underTest.selectCustomersChangeCount();
+
+        // When
+        for (int i = 0; i < 20; i++) {
+            underTest.insertCustomer(new Customer("name", UUID.randomUUID() + "@email.com", 20));
+        }
+        long after = underTest.selectCustomersChangeCount();
+
+        // Then
+        // other tests may write concurrently, never fewer than ours
+        assertThat(after - before).isGreaterThanOrEqualTo(20);
+    }
+
+    @Test
+    void deleteCustomerReturnsFalseWhenIdNotPresent() {
+        // Given
+        long id = -1;
+
+        // When
+        var actual = underTest.deleteCustomer(id);
+
+        // Then
+        assertFalse(actual);
+    }
+
     @Test
     void updateCustomerName() {
         // Given
@@ -354,6 +686,58 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainers {
 
     }
 
+    @Test
+    void updateCustomerIncrementsVersion() {
+        // Given
+        Customer customer = new Customer(faker.name().fullName(),
+                faker.internet().emailAddress() + "-" + UUID.randomUUID(), 30);
+        underTest.insertCustomer(customer);
+        Customer inserted = underTest.selectAllCustomers()
+                .stream()
+                .filter(c -> c.getEmail().equals(customer.getEmail()))
+                .findFirst()
+                .orElseThrow();
+
+        // When
+        Optional<Customer> actual = underTest.updateCustomer(Customer.builder()
+                .id(inserted.getId())
+                .age(31)
+                .version(inserted.getVersion())
+                .build());
+
+        // Then
+        assertThat(actual).isPresent().hasValueSatisfying(c -> {
+            assertThat(c.getAge()).isEqualTo(31);
+            assertThat(c.getName()).isEqualTo(customer.getName());
+            assertThat(c.getVersion()).isEqualTo(inserted.getVersion() + 1);
+        });
+    }
+
+    @Test
+    void willNotUpdateWhenVersionIsStale() {
+        // Given
+        Customer customer = new Customer(faker.name().fullName(),
+                faker.internet().emailAddress() + "-" + UUID.randomUUID(), 30);
+        underTest.insertCustomer(customer);
+        Customer inserted = underTest.selectAllCustomers()
+                .stream()
+                .filter(c -> c.getEmail().equals(customer.getEmail()))
+                .findFirst()
+                .orElseThrow();
+
+        // When
+        Optional<Customer> actual = underTest.updateCustomer(Customer.builder()
+                .id(inserted.getId())
+                .age(31)
+                .version(inserted.getVersion() + 1)
+                .build());
+
+        // Then
+        assertThat(actual).isEmpty();
+        assertThat(underTest.selectCustomerById(inserted.getId()))
+                .hasValueSatisfying(c -> assertThat(c.getAge()).isEqualTo(30));
+    }
+
     @Test
     void willNotUpdateWhenNothingToUpdate(){
         //Given
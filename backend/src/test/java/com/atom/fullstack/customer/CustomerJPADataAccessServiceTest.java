@@ -1,11 +1,20 @@
 package com.atom.fullstack.customer;
 
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
 
 
 class CustomerJPADataAccessServiceTest {
@@ -14,10 +23,14 @@ class CustomerJPADataAccessServiceTest {
     private AutoCloseable autoCloseable;
     @Mock
     private CustomerRepository customerRepository;
+    @Mock
+    private EntityManager entityManager;
+    @Mock
+    private CustomerIdAllocator idAllocator;
     @BeforeEach
     void setUp() {
         autoCloseable = MockitoAnnotations.openMocks(this);
-        underTest = new CustomerJPADataAccessService(customerRepository);
+        underTest = new CustomerJPADataAccessService(customerRepository, entityManager, idAllocator);
     }
 
     @AfterEach
@@ -34,6 +47,36 @@ class CustomerJPADataAccessServiceTest {
                 .findAll();
     }
 
+    @Test
+    void selectFirstCustomersPage() {
+        //When
+        underTest.selectCustomers(CustomerCursor.first(CustomerSortKey.ID), 10);
+        //Then
+        Mockito.verify(customerRepository)
+                .findAllBy(PageRequest.of(0, 10, Sort.by("id")));
+    }
+
+    @Test
+    void selectCustomersPageAfterEmail() {
+        //When
+        underTest.selectCustomers(new CustomerCursor(CustomerSortKey.EMAIL, "foo@gmail.com"), 10);
+        //Then
+        Mockito.verify(customerRepository)
+                .findByEmailGreaterThan("foo@gmail.com", PageRequest.of(0, 10, Sort.by("email")));
+    }
+
+    @Test
+    void streamAllCustomersDetachesEachCustomer() {
+        //Given
+        Customer customer = new Customer(1L, "name", "email", 20);
+        Mockito.when(customerRepository.streamAllBy()).thenReturn(Stream.of(customer));
+        //When
+        List<Customer> actual = underTest.streamAllCustomers().toList();
+        //Then
+        assertThat(actual).containsExactly(customer);
+        Mockito.verify(entityManager).detach(customer);
+    }
+
     @Test
     void selectCustomerById() {
         //Given
@@ -47,12 +90,59 @@ class CustomerJPADataAccessServiceTest {
     @Test
     void insertCustomer() {
         //Given
-        Customer customer = new Customer();
-        underTest.insertCustomer(customer);
+        Customer customer = new Customer("name", "email", 20);
+        Mockito.when(idAllocator.nextId()).thenReturn(1L);
+        Mockito.when(customerRepository.insertIfEmailAbsent(1L, "name", "email", 20))
+                .thenReturn(Optional.of(0L));
+        //When
+        boolean inserted = underTest.insertCustomer(customer);
         //Then
-        Mockito.verify(customerRepository)
-                .save(customer);
+        assertThat(inserted).isTrue();
+        assertThat(customer.getId()).isEqualTo(1L);
+        assertThat(customer.getVersion()).isZero();
+    }
 
+    @Test
+    void willNotInsertCustomerWithTakenEmail() {
+        //Given
+        Customer customer = new Customer("name", "email", 20);
+        Mockito.when(idAllocator.nextId()).thenReturn(1L);
+        Mockito.when(customerRepository.insertIfEmailAbsent(1L, "name", "email", 20))
+                .thenReturn(Optional.empty());
+        //When
+        boolean inserted = underTest.insertCustomer(customer);
+        //Then
+        assertThat(inserted).isFalse();
+        assertThat(customer.getId()).isNull();
+    }
+
+    @Test
+    void insertCustomers() {
+        //Given
+        Customer customer = new Customer("name", "email", 20);
+        Mockito.when(idAllocator.nextIds(1)).thenReturn(new long[]{1L});
+        CustomerRepository.InsertedRow row = Mockito.mock(CustomerRepository.InsertedRow.class);
+        Mockito.when(row.getId()).thenReturn(1L);
+        Mockito.when(row.getVersion()).thenReturn(0L);
+        Mockito.when(customerRepository.insertAll(
+                new Long[]{1L}, new String[]{"name"}, new String[]{"email"}, new Integer[]{20}))
+                .thenReturn(List.of(row));
+        //When
+        underTest.insertCustomers(List.of(customer));
+        //Then
+        assertThat(customer.getId()).isEqualTo(1L);
+        assertThat(customer.getVersion()).isZero();
+    }
+
+    @Test
+    void selectExistingEmails() {
+        //Given
+        List<String> emails = List.of("foo@gmail.com", "bar@gmail.com");
+        //When
+        underTest.selectExistingEmails(emails);
+        //Then
+        Mockito.verify(customerRepository)
+                .findExistingEmails(emails);
     }
 
     @Test
@@ -81,20 +171,39 @@ class CustomerJPADataAccessServiceTest {
     void deleteCustomer() {
         // Given
         long Id = 1L;
+        Mockito.when(customerRepository.deleteCustomerById(Id)).thenReturn(1);
         // When
-        underTest.deleteCustomer(Id);
+        boolean deleted = underTest.deleteCustomer(Id);
         //Then
-        Mockito.verify(customerRepository)
-                .deleteById(Id);
+        assertThat(deleted).isTrue();
     }
 
     @Test
     void updateCustomer() {
         //Given
-        Customer customer = new Customer();
-        underTest.updateCustomer(customer);
+        Customer customer = new Customer(1L, "name", "email", 20, 3L);
+        Mockito.when(customerRepository.findById(1L)).thenReturn(Optional.of(customer));
+        Mockito.when(customerRepository.saveAndFlush(customer)).thenReturn(customer);
+        //When
+        underTest.updateCustomer(Customer.builder().id(1L).name("new name").version(3L).build());
         //Then
+        assertThat(customer.getName()).isEqualTo("new name");
+        assertThat(customer.getEmail()).isEqualTo("email");
         Mockito.verify(customerRepository)
-                .save(customer);
+                .saveAndFlush(customer);
+    }
+
+    @Test
+    void willNotUpdateCustomerWithStaleVersion() {
+        //Given
+        Customer customer = new Customer(1L, "name", "email", 20, 4L);
+        Mockito.when(customerRepository.findById(1L)).thenReturn(Optional.of(customer));
+        //When
+        Optional<Customer> actual = underTest.updateCustomer(
+                Customer.builder().id(1L).name("new name").version(3L).build());
+        //Then
+        assertThat(actual).isEmpty();
+        Mockito.verify(customerRepository, Mockito.never())
+                .saveAndFlush(Mockito.any());
     }
 }
\ No newline at end of file
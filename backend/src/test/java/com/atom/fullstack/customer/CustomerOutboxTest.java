@@ -0,0 +1,68 @@
+package com.atom.fullstack.customer;
+
+import com.atom.fullstack.AbstractTestContainers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class CustomerOutboxTest extends AbstractTestContainers {
+
+    private CustomerOutbox underTest;
+    private CustomerJDBCDataAccessService customerDao;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerOutbox(getJdbcTemplate());
+        customerDao = new CustomerJDBCDataAccessService(getJdbcTemplate(), new CustomerRowMapper(),
+                new CustomerIdAllocator(getJdbcTemplate()));
+    }
+
+    @Test
+    void writesAreRecordedInCommitOrder() {
+        // Given
+        CustomerChangeCursor before = underTest.selectLatestCursor().orElse(CustomerChangeCursor.START);
+        Customer first = new Customer("first", UUID.randomUUID() + "@email.com", 20);
+        Customer second = new Customer("second", UUID.randomUUID() + "@email.com", 30);
+
+        // When
+        customerDao.insertCustomersIfEmailAbsent(List.of(first, second));
+        customerDao.updateCustomer(Customer.builder().id(first.getId()).age(21).build());
+        customerDao.deleteCustomer(second.getId());
+
+        // Then
+        List<CustomerChange> changes = underTest.selectChangesAfter(before, 10);
+        assertThat(changes).extracting(CustomerChange::type, CustomerChange::customerId, CustomerChange::version)
+                .containsExactly(
+                        tuple(CustomerChange.Type.CREATED, first.getId(), 0L),
+                        tuple(CustomerChange.Type.CREATED, second.getId(), 0L),
+                        tuple(CustomerChange.Type.UPDATED, first.getId(), 1L),
+                        tuple(CustomerChange.Type.DELETED, second.getId(), 0L));
+        assertThat(changes).extracting(CustomerChange::cursor).isSorted();
+        assertThat(underTest.selectLatestCursor()).contains(changes.get(3).cursor());
+        assertThat(underTest.selectChangesAfter(changes.get(1).cursor(), 10)).hasSize(2);
+    }
+
+    @Test
+    void pruneDeletesOldChangesInBatches() {
+        // Given
+        customerDao.insertCustomersIfEmailAbsent(List.of(
+                new Customer("a", UUID.randomUUID() + "@email.com", 20),
+                new Customer("b", UUID.randomUUID() + "@email.com", 20),
+                new Customer("c", UUID.randomUUID() + "@email.com", 20)));
+        CustomerChangeCursor latest = underTest.selectLatestCursor().orElseThrow();
+
+        // When
+        long pruned = underTest.pruneBefore(Instant.now().plusSeconds(60), 2);
+
+        // Then
+        assertThat(pruned).isGreaterThanOrEqualTo(3);
+        assertThat(underTest.exists(latest)).isFalse();
+        assertThat(underTest.selectChangesAfter(CustomerChangeCursor.START, 10)).isEmpty();
+    }
+}
@@ -0,0 +1,133 @@
+package com.atom.fullstack.customer;
+
+import com.atom.fullstack.AbstractTestContainers;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.test.StepVerifier;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerR2dbcDataAccessServiceTest extends AbstractTestContainers {
+
+    private CustomerR2dbcDataAccessService underTest;
+
+    @BeforeEach
+    void setUp() {
+        ConnectionFactoryOptions options = ConnectionFactoryOptions.builder()
+                .option(ConnectionFactoryOptions.DRIVER, "postgresql")
+                .option(ConnectionFactoryOptions.HOST, postgreSQLContainer.getHost())
+                .option(ConnectionFactoryOptions.PORT, postgreSQLContainer.getFirstMappedPort())
+                .option(ConnectionFactoryOptions.DATABASE, postgreSQLContainer.getDatabaseName())
+                .option(ConnectionFactoryOptions.USER, postgreSQLContainer.getUsername())
+                .option(ConnectionFactoryOptions.PASSWORD, postgreSQLContainer.getPassword())
+                .build();
+        DatabaseClient databaseClient = DatabaseClient.create(ConnectionFactories.get(options));
+        underTest = new CustomerR2dbcDataAccessService(databaseClient, new ReactiveCustomerIdAllocator(databaseClient));
+    }
+
+    @Test
+    void insertThenSelectCustomerById() {
+        // Given
+        Customer customer = new Customer("name", "r2dbc-" + UUID.randomUUID() + "@email.com", 20);
+
+        // When
+        Boolean inserted = underTest.insertCustomer(customer).block();
+
+        // Then
+        assertThat(inserted).isTrue();
+        StepVerifier.create(underTest.selectCustomerById(customer.getId()))
+                .assertNext(c -> {
+                    assertThat(c.getEmail()).isEqualTo(customer.getEmail());
+                    assertThat(c.getVersion()).isZero();
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void insertsTakeConsecutiveIdsFromOneBlock() {
+        // Given
+        Customer first = new Customer("name", "r2dbc-" + UUID.randomUUID() + "@email.com", 20);
+        Customer second = new Customer("name", "r2dbc-" + UUID.randomUUID() + "@email.com", 20);
+
+        // When
+        underTest.insertCustomer(first).block();
+        underTest.insertCustomer(second).block();
+
+        // Then
+        assertThat(second.getId()).isEqualTo(first.getId() + 1);
+        assertThat(second.getVersion()).isZero();
+    }
+
+    @Test
+    void insertWithTakenEmailEmitsFalse() {
+        // Given
+        String email = "r2dbc-" + UUID.randomUUID() + "@email.com";
+        underTest.insertCustomer(new Customer("first", email, 20)).block();
+
+        // When
+        // Then
+        StepVerifier.create(underTest.insertCustomer(new Customer("second", email, 30)))
+                .expectNext(false)
+                .verifyComplete();
+    }
+
+    @Test
+    void updateWithStaleVersionIsEmpty() {
+        // Given
+        Customer customer = new Customer("name", "r2dbc-" + UUID.randomUUID() + "@email.com", 20);
+        underTest.insertCustomer(customer).block();
+        Customer stale = Customer.builder().id(customer.getId()).age(30).version(5L).build();
+
+        // When
+        // Then
+        StepVerifier.create(underTest.updateCustomer(stale)).verifyComplete();
+        StepVerifier.create(underTest.updateCustomer(Customer.builder().id(customer.getId()).age(30).version(0L).build()))
+                .assertNext(c -> assertThat(c.getVersion()).isEqualTo(1L))
+                .verifyComplete();
+    }
+
+    @Test
+    void streamAllCustomersHonoursDemand() {
+        // Given
+        for (int i = 0; i < 3; i++) {
+            underTest.insertCustomer(new Customer("name", "r2dbc-" + UUID.randomUUID() + "@email.com", 20)).block();
+        }
+
+        // When
+        // Then
+        StepVerifier.create(underTest.streamAllCustomers(), 2)
+                .expectNextCount(2)
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void deleteIfVersionOnlyMatchesCurrentVersion() {
+        // Given
+        Customer customer = new Customer("name", "r2dbc-" + UUID.randomUUID() + "@email.com", 20);
+        underTest.insertCustomer(customer).block();
+        Long changes = underTest.selectCustomersChangeCount().block();
+
+        // When
+        Boolean deleted = underTest.deleteCustomerIfVersion(customer.getId(), customer.getVersion() + 1).block();
+
+        // Then
+        assertThat(deleted).isFalse();
+        StepVerifier.create(underTest.deleteCustomerIfVersion(customer.getId(), customer.getVersion()))
+                .expectNext(true)
+                .verifyComplete();
+        assertThat(underTest.selectCustomersChangeCount().block()).isGreaterThan(changes);
+    }
+
+    @Test
+    void deleteMissingCustomerEmitsFalse() {
+        StepVerifier.create(underTest.deleteCustomer(-1L))
+                .expectNext(false)
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,202 @@
+package com.atom.fullstack.customer;
+
+import com.atom.fullstack.AbstractTestContainers;
+import com.atom.fullstack.exception.DuplicateResourceException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Fires concurrent registrations of the same emails at Postgres, comparing the
+ * old exists-then-insert sequence with the single conflict-aware insert, and
+ * concurrent bulk imports of the same ages.
+ */
+class CustomerRegistrationConcurrencyTest extends AbstractTestContainers {
+
+    private static final int THREADS = 16;
+    private static final int EMAILS = 200;
+
+    private JdbcTemplate jdbcTemplate;
+    private CustomerService underTest;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = getJdbcTemplate();
+        underTest = new CustomerService(new CustomerJDBCDataAccessService(
+                jdbcTemplate, new CustomerRowMapper(), new CustomerIdAllocator(jdbcTemplate)));
+    }
+
+    @Test
+    void concurrentDuplicateRegistrationsCreateEachCustomerExactlyOnce() throws Exception {
+        // Given
+        List<String> emails = emails();
+        Outcome outcome = new Outcome();
+
+        // When
+        long nanos = race(emails, outcome, email -> {
+            try {
+                underTest.addCustomer(new CustomerRegistrationRequest("name", email, 20));
+                outcome.created.incrementAndGet();
+            } catch (DuplicateResourceException e) {
+                outcome.duplicates.incrementAndGet();
+            }
+        });
+
+        // Then
+        report("insert on conflict", nanos, outcome);
+        assertThat(outcome.created).hasValue(EMAILS);
+        assertThat(outcome.duplicates).hasValue(EMAILS * (THREADS - 1));
+        assertThat(outcome.failures).hasValue(0);
+        assertThat(rowsFor(emails)).isEqualTo(EMAILS);
+    }
+
+    @Test
+    void checkThenActLeaksConstraintViolations() throws Exception {
+        // Given
+        List<String> emails = emails();
+        Outcome outcome = new Outcome();
+
+        // When
+        long nanos = race(emails, outcome, email -> {
+            // what addCustomer used to do: two round trips with a gap between them
+            Boolean exists = jdbcTemplate.queryForObject(
+                    "SELECT EXISTS(SELECT 1 FROM customer WHERE email = ?)", Boolean.class, email);
+            if (Boolean.TRUE.equals(exists)) {
+                outcome.duplicates.incrementAndGet();
+                return;
+            }
+            jdbcTemplate.update("INSERT INTO customer (name, email, age) VALUES (?, ?, ?)", "name", email, 20);
+            outcome.created.incrementAndGet();
+        });
+
+        // Then
+        report("exists then insert", nanos, outcome);
+        // the constraint still holds, but losers of the race get a 500 instead of a 409
+        assertThat(outcome.created).hasValue(EMAILS);
+        assertThat(outcome.duplicates.get() + outcome.failures.get()).isEqualTo(EMAILS * (THREADS - 1));
+        assertThat(rowsFor(emails)).isEqualTo(EMAILS);
+    }
+
+    @Test
+    void concurrentBulkImportsOfTheSameAgesDoNotDeadlock() throws Exception {
+        // Given
+        String run = UUID.randomUUID().toString();
+        List<List<CustomerRegistrationRequest>> imports = new ArrayList<>(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            List<CustomerRegistrationRequest> chunk = new ArrayList<>(CustomerController.BULK_CHUNK_SIZE);
+            for (int i = 0; i < CustomerController.BULK_CHUNK_SIZE; i++) {
+                // every import covers the same ages, half of them in the opposite order
+                int age = t % 2 == 0 ? 18 + i % 80 : 97 - i % 80;
+                chunk.add(new CustomerRegistrationRequest("name", t + "-" + i + "-" + run + "@email.com", age));
+            }
+            imports.add(chunk);
+        }
+
+        // When
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<CustomerBulkResult> results = new ArrayList<>();
+        try {
+            CountDownLatch gate = new CountDownLatch(1);
+            List<Future<List<CustomerBulkResult>>> attempts = new ArrayList<>(THREADS);
+            for (List<CustomerRegistrationRequest> chunk : imports) {
+                attempts.add(executor.submit(() -> {
+                    gate.await();
+                    return underTest.addCustomers(chunk, 0);
+                }));
+            }
+            gate.countDown();
+            for (Future<List<CustomerBulkResult>> attempt : attempts) {
+                results.addAll(attempt.get(60, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Then
+        assertThat(results)
+                .hasSize(THREADS * CustomerController.BULK_CHUNK_SIZE)
+                .allMatch(result -> result.status() == CustomerBulkStatus.CREATED);
+    }
+
+    private long race(List<String> emails, Outcome outcome, Registration registration) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            long start = System.nanoTime();
+            for (String email : emails) {
+                CountDownLatch gate = new CountDownLatch(1);
+                List<Future<?>> attempts = new ArrayList<>(THREADS);
+                for (int t = 0; t < THREADS; t++) {
+                    attempts.add(executor.submit((Callable<Void>) () -> {
+                        gate.await();
+                        registration.register(email);
+                        return null;
+                    }));
+                }
+                gate.countDown();
+                for (Future<?> attempt : attempts) {
+                    try {
+                        attempt.get(30, TimeUnit.SECONDS);
+                    } catch (ExecutionException e) {
+                        if (!(e.getCause() instanceof DataIntegrityViolationException)) {
+                            throw e;
+                        }
+                        outcome.failures.incrementAndGet();
+                    }
+                }
+            }
+            return System.nanoTime() - start;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void report(String strategy, long nanos, Outcome outcome) {
+        int attempts = EMAILS * THREADS;
+        System.out.printf("%s: %d registrations in %d ms (%.0f/s), created=%d duplicate=%d constraint violations=%d%n",
+                strategy, attempts, TimeUnit.NANOSECONDS.toMillis(nanos), attempts / (nanos / 1e9),
+                outcome.created.get(), outcome.duplicates.get(), outcome.failures.get());
+    }
+
+    private int rowsFor(List<String> emails) {
+        Integer rows = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM customer WHERE email = ANY(?)",
+                Integer.class,
+                (Object) emails.toArray(String[]::new));
+        return rows == null ? 0 : rows;
+    }
+
+    private static List<String> emails() {
+        String run = UUID.randomUUID().toString();
+        List<String> emails = new ArrayList<>(EMAILS);
+        for (int i = 0; i < EMAILS; i++) {
+            emails.add("customer-" + i + "-" + run + "@email.com");
+        }
+        return emails;
+    }
+
+    @FunctionalInterface
+    private interface Registration {
+        void register(String email);
+    }
+
+    private static final class Outcome {
+        private final AtomicInteger created = new AtomicInteger();
+        private final AtomicInteger duplicates = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+    }
+}
@@ -7,6 +7,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -36,6 +38,26 @@ class CustomerRepositoryTest extends AbstractTestContainers {
         assertTrue(expected);
     }
 
+    @Test
+    void findProjectionByIdSelectsOnlyFieldsAskedFor() {
+        // Given
+        Customer customer = Customer.builder()
+                .name(faker.name().fullName())
+                .email(faker.internet().emailAddress() + "-" + UUID.randomUUID())
+                .age(faker.number().numberBetween(18, 60))
+                .build();
+        underTest.saveAndFlush(customer);
+        CustomerFields fields = CustomerFields.parse("email");
+        // When
+        Optional<CustomerProjection> actual = underTest.findProjectionById(customer.getId(), fields);
+        List<CustomerProjection> batch = underTest.findProjectionsByIds(List.of(customer.getId(), -1L), fields);
+        // Then
+        CustomerProjection expected = new CustomerProjection(customer.getId(), null, customer.getEmail(), null,
+                customer.getVersion());
+        assertEquals(Optional.of(expected), actual);
+        assertEquals(List.of(expected), batch);
+    }
+
     @Test
     void existsCustomerByEmailShouldFail() {
         // Given
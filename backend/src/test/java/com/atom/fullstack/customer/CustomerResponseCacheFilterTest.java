@@ -0,0 +1,165 @@
+package com.atom.fullstack.customer;
+
+import com.atom.fullstack.replica.PrimaryPin;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerResponseCacheFilterTest {
+
+    private static final String BODY = "{\"id\":1,\"name\":\"" + "name".repeat(100) + "\"}";
+
+    private final AtomicInteger served = new AtomicInteger();
+    private final AtomicInteger servedPinned = new AtomicInteger();
+    private CustomerResponseCacheFilter underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerResponseCacheFilter(new CustomerResponseCacheProperties(
+                true, DataSize.ofMegabytes(1), Duration.ofMinutes(1), DataSize.ofBytes(256)));
+    }
+
+    @Test
+    void servesRepeatedReadsFromCacheCompressed() throws Exception {
+        //Given
+        get("/api/v1/customer/1", null, null);
+        //When
+        MockHttpServletResponse response = get("/api/v1/customer/1", "gzip, deflate", null);
+        //Then
+        assertThat(served).hasValue(1);
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getHeader(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+        assertThat(response.getHeader(HttpHeaders.VARY)).isEqualTo(HttpHeaders.ACCEPT_ENCODING);
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isEqualTo("\"3\"");
+        assertThat(gunzip(response.getContentAsByteArray())).isEqualTo(BODY);
+    }
+
+    @Test
+    void answersMatchingTagFromCacheWithNotModified() throws Exception {
+        //Given
+        get("/api/v1/customer/1", null, null);
+        //When
+        MockHttpServletResponse response = get("/api/v1/customer/1", null, "\"3\"");
+        //Then
+        assertThat(served).hasValue(1);
+        assertThat(response.getStatus()).isEqualTo(304);
+        assertThat(response.getContentAsByteArray()).isEmpty();
+    }
+
+    @Test
+    void customerChangeEvictsCustomerAndPages() throws Exception {
+        //Given
+        get("/api/v1/customer/1", null, null);
+        get("/api/v1/customer/2", null, null);
+        get("/api/v1/customer", null, null);
+        //When
+        underTest.customerChanged(new CustomerChangedEvent(1L));
+        get("/api/v1/customer/1", null, null);
+        get("/api/v1/customer/2", null, null);
+        MockHttpServletResponse response = get("/api/v1/customer", "br", null);
+        //Then
+        assertThat(served).hasValue(5);
+        assertThat(response.getHeader(HttpHeaders.CONTENT_ENCODING)).isNull();
+        assertThat(response.getContentAsString()).isEqualTo(BODY);
+    }
+
+    @Test
+    void writeOnAnotherInstanceEvictsCustomersAndPages() throws Exception {
+        //Given
+        get("/api/v1/customer/1", null, null);
+        get("/api/v1/customer/2", null, null);
+        get("/api/v1/customer", null, null);
+        //When
+        underTest.invalidate(List.of(2L));
+        get("/api/v1/customer/1", null, null);
+        get("/api/v1/customer/2", null, null);
+        get("/api/v1/customer", null, null);
+        //Then
+        assertThat(served).hasValue(5);
+    }
+
+    @Test
+    void bypassedCacheNeitherServesNorKeeps() throws Exception {
+        //Given
+        get("/api/v1/customer/1", null, null);
+        underTest.bypass(true);
+        //When
+        get("/api/v1/customer/1", null, null);
+        get("/api/v1/customer/2", null, null);
+        //Then
+        assertThat(served).hasValue(3);
+        assertThat(underTest.cache().asMap().keySet())
+                .extracting(CustomerResponseCacheFilter.CacheKey::customerId)
+                .containsExactly(1L);
+    }
+
+    @Test
+    void rendersResponsesItKeepsFromThePrimary() throws Exception {
+        //Given
+        get("/api/v1/customer/1", null, null);
+        underTest.bypass(true);
+        //When
+        get("/api/v1/customer/1", null, null);
+        //Then
+        assertThat(served).hasValue(2);
+        assertThat(servedPinned).hasValue(1);
+        assertThat(PrimaryPin.isPinned()).isFalse();
+    }
+
+    @Test
+    void negotiatesEncodingIgnoringRefusedOnes() {
+        assertThat(CustomerResponseCacheFilter.Encoding.negotiate("gzip;q=0, deflate"))
+                .isEqualTo(CustomerResponseCacheFilter.Encoding.DEFLATE);
+        assertThat(CustomerResponseCacheFilter.Encoding.negotiate("br, *;q=0.1"))
+                .isEqualTo(CustomerResponseCacheFilter.Encoding.GZIP);
+        assertThat(CustomerResponseCacheFilter.Encoding.negotiate(null))
+                .isEqualTo(CustomerResponseCacheFilter.Encoding.IDENTITY);
+    }
+
+    private MockHttpServletResponse get(String path, String acceptEncoding, String ifNoneMatch) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        if (acceptEncoding != null) {
+            request.addHeader(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        }
+        if (ifNoneMatch != null) {
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        underTest.doFilter(request, response, new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                served.incrementAndGet();
+                if (PrimaryPin.isPinned()) {
+                    servedPinned.incrementAndGet();
+                }
+                resp.setContentType("application/json");
+                resp.setHeader(HttpHeaders.ETAG, "\"3\"");
+                resp.getOutputStream().write(BODY.getBytes(StandardCharsets.UTF_8));
+            }
+        }));
+        return response;
+    }
+
+    private static String gunzip(byte[] body) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.atom.fullstack.customer;
+
+import com.atom.fullstack.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerServiceLimiterTest {
+
+    private final ExecutorService callers = Executors.newSingleThreadExecutor();
+    private SimpleMeterRegistry meterRegistry;
+    private CustomerService underTest;
+
+    @Mock
+    private CustomerDao customerDao;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        underTest = limited(false);
+    }
+
+    private CustomerService limited(boolean groupCommit) {
+        CustomerLimitProperties.Limit one = new CustomerLimitProperties.Limit(1, 1, 1, 2.0, 0.2);
+        CustomerLimitProperties properties = new CustomerLimitProperties(true, Duration.ofSeconds(2), one, one, one);
+        AspectJProxyFactory factory = new AspectJProxyFactory(new CustomerService(customerDao));
+        factory.setProxyTargetClass(true);
+        factory.addAspect(new CustomerServiceLimiter(properties, groupCommit, meterRegistry));
+        return factory.getProxy();
+    }
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+    }
+
+    @Test
+    void readsOverTheLimitAreRejectedWhileWritesGoThrough() throws Exception {
+        //Given
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            reading.countDown();
+            release.await();
+            return Optional.of(new Customer(1L, "name", "email", 20));
+        }).when(customerDao).selectCustomerById(1L);
+        when(customerDao.deleteCustomer(2L)).thenReturn(true);
+        CompletableFuture<Customer> slowRead = CompletableFuture.supplyAsync(
+                () -> underTest.getCustomerById(1L), callers);
+        assertThat(reading.await(5, TimeUnit.SECONDS)).isTrue();
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.getCustomerById(1L))
+                .isInstanceOfSatisfying(ServiceUnavailableException.class,
+                        e -> assertThat(e.getRetryAfter()).isEqualTo(Duration.ofSeconds(2)));
+        underTest.deleteCustomer(2L);
+        release.countDown();
+        assertThat(slowRead).succeedsWithin(Duration.ofSeconds(5));
+        assertThat(meterRegistry.get("customer.limit.rejected").tag("kind", "read").counter().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("customer.limit.rejected").tag("kind", "write").counter().count())
+                .isZero();
+    }
+
+    @Test
+    void slowPagesDoNotTakeTheSlotsOfLookups() throws Exception {
+        //Given
+        CountDownLatch paging = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            paging.countDown();
+            release.await();
+            return List.of();
+        }).when(customerDao).selectCustomers(any(), anyInt());
+        when(customerDao.selectCustomerById(1L)).thenReturn(Optional.of(new Customer(1L, "name", "email", 20)));
+        CompletableFuture<CustomerPage> slowPage = CompletableFuture.supplyAsync(
+                () -> underTest.getCustomers(null, null, 10), callers);
+        assertThat(paging.await(5, TimeUnit.SECONDS)).isTrue();
+        //When
+        Customer actual = underTest.getCustomerById(1L);
+        //Then
+        assertThat(actual.getId()).isEqualTo(1L);
+        assertThatThrownBy(() -> underTest.getCustomers(null, null, 10))
+                .isInstanceOf(ServiceUnavailableException.class);
+        release.countDown();
+        assertThat(slowPage).succeedsWithin(Duration.ofSeconds(5));
+        assertThat(meterRegistry.get("customer.limit.rejected").tag("kind", "query").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void registrationsAreLeftToGroupCommit() throws Exception {
+        //Given
+        CustomerService withGroupCommit = limited(true);
+        CountDownLatch inserting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            inserting.countDown();
+            release.await();
+            return true;
+        }).doReturn(true).when(customerDao).insertCustomer(any());
+        CompletableFuture<Customer> slowRegistration = CompletableFuture.supplyAsync(
+                () -> withGroupCommit.addCustomer(new CustomerRegistrationRequest("name", "first@email.com", 20)),
+                callers);
+        assertThat(inserting.await(5, TimeUnit.SECONDS)).isTrue();
+        //When
+        Customer actual = withGroupCommit.addCustomer(new CustomerRegistrationRequest("name", "second@email.com", 20));
+        //Then
+        assertThat(actual.getEmail()).isEqualTo("second@email.com");
+        release.countDown();
+        assertThat(slowRegistration).succeedsWithin(Duration.ofSeconds(5));
+        assertThat(meterRegistry.get("customer.limit.rejected").tag("kind", "write").counter().count())
+                .isZero();
+    }
+
+    @Test
+    void releasesTheSlotWhenTheCallFails() {
+        //Given
+        when(customerDao.selectCustomerById(1L))
+                .thenThrow(new QueryTimeoutException("timeout"))
+                .thenReturn(Optional.of(new Customer(1L, "name", "email", 20)));
+        assertThatThrownBy(() -> underTest.getCustomerById(1L)).isInstanceOf(QueryTimeoutException.class);
+        //When
+        Customer actual = underTest.getCustomerById(1L);
+        //Then
+        assertThat(actual.getId()).isEqualTo(1L);
+        assertThat(meterRegistry.get("customer.limit.in.flight").tag("kind", "read").gauge().value()).isZero();
+    }
+}
@@ -1,6 +1,8 @@
 package com.atom.fullstack.customer;
 
 import com.atom.fullstack.exception.DuplicateResourceException;
+import com.atom.fullstack.exception.PreconditionFailedException;
+import com.atom.fullstack.exception.RequestValidationException;
 import com.atom.fullstack.exception.ResourceNotFoundException;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -11,8 +13,17 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.postgresql.util.PSQLException;
+import org.postgresql.util.ServerErrorMessage;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
@@ -34,11 +45,98 @@ class CustomerServiceTest {
     }
 
     @Test
-    void getAllCustomers() {
+    void getCustomersReturnsLastPageWithoutCursor() {
+        //Given
+        List<Customer> customers = List.of(
+                new Customer(1L, "name", "email", 20),
+                new Customer(2L, "other", "other email", 21));
+        when(customerDao.selectCustomers(CustomerCursor.first(CustomerSortKey.ID), CustomerService.DEFAULT_PAGE_SIZE + 1))
+                .thenReturn(customers);
+        //When
+        CustomerPage actual = underTest.getCustomers(null, null, null);
+        //Then
+        assertThat(actual.customers()).isEqualTo(customers);
+        assertThat(actual.nextCursor()).isNull();
+    }
+
+    @Test
+    void getCustomersReturnsCursorWhenMoreRowsExist() {
+        //Given
+        List<Customer> customers = List.of(
+                new Customer(1L, "name", "a@email", 20),
+                new Customer(2L, "other", "b@email", 21),
+                new Customer(3L, "third", "c@email", 22));
+        when(customerDao.selectCustomers(CustomerCursor.first(CustomerSortKey.EMAIL), 3))
+                .thenReturn(customers);
+        //When
+        CustomerPage actual = underTest.getCustomers(null, "email", 2);
+        //Then
+        assertThat(actual.customers()).isEqualTo(customers.subList(0, 2));
+        assertThat(CustomerCursor.decode(actual.nextCursor()))
+                .isEqualTo(new CustomerCursor(CustomerSortKey.EMAIL, "b@email"));
+    }
+
+    @Test
+    void getCustomersCapsPageSize() {
+        //Given
+        CustomerCursor cursor = new CustomerCursor(CustomerSortKey.ID, "42");
+        when(customerDao.selectCustomers(cursor, CustomerService.MAX_PAGE_SIZE + 1)).thenReturn(List.of());
+        //When
+        CustomerPage actual = underTest.getCustomers(cursor.encode(), null, 10_000);
+        //Then
+        assertThat(actual.customers()).isEqualTo(List.of());
+        assertThat(actual.nextCursor()).isNull();
+    }
+
+    @Test
+    void getCustomerProjectionsReadsSortKeyButReturnsOnlyFieldsAskedFor() {
+        //Given
+        CustomerFields read = CustomerFields.of(CustomerField.ID, CustomerField.AGE, CustomerField.EMAIL);
+        List<CustomerProjection> rows = List.of(
+                new CustomerProjection(1L, null, "a@email", 20, 0L),
+                new CustomerProjection(2L, null, "b@email", 21, 0L),
+                new CustomerProjection(3L, null, "c@email", 22, 0L));
+        when(customerDao.selectCustomerProjections(CustomerCursor.first(CustomerSortKey.EMAIL), 3, read))
+                .thenReturn(rows);
+        //When
+        CustomerProjectionPage actual = underTest.getCustomerProjections(null, "email", 2, "age");
+        //Then
+        assertThat(actual.customers()).isEqualTo(List.of(
+                new CustomerProjection(1L, null, null, 20, 0L),
+                new CustomerProjection(2L, null, null, 21, 0L)));
+        assertThat(CustomerCursor.decode(actual.nextCursor()))
+                .isEqualTo(new CustomerCursor(CustomerSortKey.EMAIL, "b@email"));
+    }
+
+    @Test
+    void willThrowWhenFieldIsUnknown() {
+        assertThatThrownBy(() -> underTest.getCustomerProjectionById(1L, "id,password"))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("Unknown customer field password");
+    }
+
+    @Test
+    void willThrowWhenCursorIsMalformed() {
+        assertThatThrownBy(() -> underTest.getCustomers("not-a-cursor", null, null))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("Invalid cursor");
+    }
+
+    @Test
+    void exportCustomersStreamsEveryCustomerAndClosesTheStream() {
+        //Given
+        AtomicBoolean closed = new AtomicBoolean();
+        List<Customer> customers = List.of(
+                new Customer(1L, "name", "email", 20),
+                new Customer(2L, "other", "other email", 21));
+        when(customerDao.streamAllCustomers())
+                .thenReturn(customers.stream().onClose(() -> closed.set(true)));
+        List<Customer> exported = new ArrayList<>();
         //When
-        underTest.getAllCustomers();
+        underTest.exportCustomers(exported::add);
         //Then
-        Mockito.verify(customerDao).selectAllCustomers();
+        assertThat(exported).isEqualTo(customers);
+        assertThat(closed.get()).isTrue();
     }
 
     @Test
@@ -67,12 +165,142 @@ class CustomerServiceTest {
                 .hasMessage("Customer " + id + " does not exist");
     }
 
+    @Test
+    void searchCustomersReturnsCursorAfterLastHitOfPage() {
+        //Given
+        List<CustomerSearchHit> hits = new ArrayList<>();
+        for (long id = 1; id <= CustomerService.DEFAULT_PAGE_SIZE + 1; id++) {
+            hits.add(new CustomerSearchHit(new Customer(id, "name", "email" + id, 20), 1.5));
+        }
+        when(customerDao.searchCustomers(new CustomerSearchQuery("name"), null, CustomerService.DEFAULT_PAGE_SIZE + 1))
+                .thenReturn(hits);
+        //When
+        CustomerPage page = underTest.searchCustomers("  name ", null, null);
+        //Then
+        assertThat(page.customers().size()).isEqualTo(CustomerService.DEFAULT_PAGE_SIZE);
+        assertThat(CustomerSearchCursor.decode(page.nextCursor()))
+                .isEqualTo(new CustomerSearchCursor(1.5, CustomerService.DEFAULT_PAGE_SIZE));
+    }
+
+    @Test
+    void willThrowWhenSearchQueryIsBlank() {
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.searchCustomers(" ", null, null))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("Search query must not be blank");
+    }
+
+    @Test
+    void getCustomerStatisticsFoldsAgeBuckets() {
+        //Given
+        when(customerDao.selectCustomerAgeBuckets(18, Integer.MAX_VALUE, 10)).thenReturn(List.of(
+                new CustomerAgeBucket(10, 2, 18, 19, 37),
+                new CustomerAgeBucket(30, 1, 35, 35, 35)));
+        //When
+        CustomerStatistics actual = underTest.getCustomerStatistics(18, null, null);
+        //Then
+        assertThat(actual).isEqualTo(new CustomerStatistics(3, 24.0, 18, 35, List.of(
+                new CustomerStatistics.AgeBucket(10, 19, 2),
+                new CustomerStatistics.AgeBucket(30, 39, 1))));
+    }
+
+    @Test
+    void getCustomerStatisticsOfEmptyRangeHasNoAges() {
+        //Given
+        when(customerDao.selectCustomerAgeBuckets(Integer.MIN_VALUE, Integer.MAX_VALUE, 5)).thenReturn(List.of());
+        //When
+        CustomerStatistics actual = underTest.getCustomerStatistics(null, null, 5);
+        //Then
+        assertThat(actual).isEqualTo(new CustomerStatistics(0, null, null, null, List.of()));
+    }
+
+    @Test
+    void willThrowWhenMinAgeIsAboveMaxAge() {
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.countCustomers(30, 20, true))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("minAge must not be greater than maxAge");
+    }
+
+    @Test
+    void countCustomersUsesEstimateOnlyWhenAllowedAndUnbounded() {
+        //Given
+        when(customerDao.estimateCustomerCount()).thenReturn(Optional.of(1_000L));
+        when(customerDao.countCustomers(20, Integer.MAX_VALUE)).thenReturn(42L);
+        //When
+        CustomerCount estimated = underTest.countCustomers(null, null, false);
+        CustomerCount bounded = underTest.countCustomers(20, null, false);
+        //Then
+        assertThat(estimated).isEqualTo(new CustomerCount(1_000, false));
+        assertThat(bounded).isEqualTo(new CustomerCount(42, true));
+    }
+
+    @Test
+    void countCustomersIsExactWhenTableWasNeverAnalyzed() {
+        //Given
+        when(customerDao.estimateCustomerCount()).thenReturn(Optional.empty());
+        when(customerDao.countCustomers(Integer.MIN_VALUE, Integer.MAX_VALUE)).thenReturn(7L);
+        //When
+        CustomerCount actual = underTest.countCustomers(null, null, false);
+        //Then
+        assertThat(actual).isEqualTo(new CustomerCount(7, true));
+    }
+
+    @Test
+    void getCustomersByIdsKeepsRequestOrderAndReportsMissingIds() {
+        //Given
+        Customer first = new Customer(1L, "first", "first email", 20);
+        Customer third = new Customer(3L, "third", "third email", 30);
+        when(customerDao.selectCustomersByIds(Set.of(3L, 2L, 1L))).thenReturn(List.of(first, third));
+        //When
+        CustomerBatch actual = underTest.getCustomersByIds(List.of(3L, 2L, 1L, 3L));
+        //Then
+        assertThat(actual).isEqualTo(new CustomerBatch(List.of(third, first), List.of(2L)));
+    }
+
+    @Test
+    void getCustomerProjectionsByIdsKeepsRequestOrderAndReportsMissingIds() {
+        //Given
+        CustomerFields fields = CustomerFields.of(CustomerField.ID, CustomerField.EMAIL);
+        CustomerProjection first = new CustomerProjection(1L, null, "first email", null, 0L);
+        CustomerProjection third = new CustomerProjection(3L, null, "third email", null, 0L);
+        when(customerDao.selectCustomerProjectionsByIds(Set.of(3L, 2L, 1L), fields))
+                .thenReturn(List.of(first, third));
+        //When
+        CustomerProjectionBatch actual = underTest.getCustomerProjectionsByIds(List.of(3L, 2L, 1L), "email");
+        //Then
+        assertThat(actual).isEqualTo(new CustomerProjectionBatch(List.of(third, first), List.of(2L)));
+    }
+
+    @Test
+    void willThrowWhenBatchContainsNullId() {
+        assertThatThrownBy(() -> underTest.getCustomersByIds(Arrays.asList(1L, null)))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("ids must not contain null");
+    }
+
+    @Test
+    void willThrowWhenBatchIsTooLarge() {
+        //Given
+        List<Long> ids = new ArrayList<>();
+        for (long id = 1; id <= CustomerService.MAX_BATCH_SIZE + 1; id++) {
+            ids.add(id);
+        }
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.getCustomersByIds(ids))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("At most " + CustomerService.MAX_BATCH_SIZE + " ids per batch");
+        verify(customerDao, Mockito.never()).selectCustomersByIds(Mockito.any());
+    }
+
     @Test
     void addCustomer() {
         //Given
         CustomerRegistrationRequest customerRegistrationRequest = new CustomerRegistrationRequest("name", "email", 20);
-        // cHECK IF EMAIL EXISTS
-        when(customerDao.existsCustomerByEmail(customerRegistrationRequest.email())).thenReturn(false);
+        when(customerDao.insertCustomer(Mockito.any())).thenReturn(true);
         //When
         underTest.addCustomer(customerRegistrationRequest);
         //Then
@@ -86,12 +314,29 @@ class CustomerServiceTest {
         assertThat(capturedCustomer.getAge()).isEqualTo(customerRegistrationRequest.age());
     }
 
+    @Test
+    void addCustomerReturnsCustomerAsStored() {
+        //Given
+        when(customerDao.insertCustomer(Mockito.any())).thenAnswer(invocation -> {
+            Customer customer = invocation.getArgument(0);
+            customer.setId(51L);
+            customer.setVersion(0L);
+            return true;
+        });
+        //When
+        Customer actual = underTest.addCustomer(new CustomerRegistrationRequest("name", "email", 20));
+        //Then
+        assertThat(actual).isEqualTo(new Customer(51L, "name", "email", 20));
+        assertThat(actual.getVersion()).isEqualTo(0L);
+    }
+
     @Test
     void willThrowWhenEmailExistsWhileAddingNewCustomer(){
         // Given
         String email = "email";
         CustomerRegistrationRequest customerRegistrationRequest = new CustomerRegistrationRequest("name", email, 20);
-        when(customerDao.existsCustomerByEmail(email)).thenReturn(true);
+        // the insert is a no-op when the unique constraint already has the email
+        when(customerDao.insertCustomer(Mockito.any())).thenReturn(false);
         // When
         //underTest.addCustomer(customerRegistrationRequest);
         // Then
@@ -99,31 +344,125 @@ class CustomerServiceTest {
                 .isInstanceOf(DuplicateResourceException.class)
                 .hasMessage("Email already taken");
 
+        verify(customerDao, Mockito.never()).existsCustomerByEmail(Mockito.any());
+    }
+
+    @Test
+    void addCustomersChecksEmailsOnceAndInsertsInOneBatch() {
+        //Given
+        List<CustomerRegistrationRequest> requests = Arrays.asList(
+                new CustomerRegistrationRequest("new", "new@email", 20),
+                new CustomerRegistrationRequest("taken", "taken@email", 21),
+                new CustomerRegistrationRequest("repeated", "new@email", 22),
+                new CustomerRegistrationRequest(null, "invalid@email", 23),
+                null);
+        when(customerDao.selectExistingEmails(Set.of("new@email", "taken@email")))
+                .thenReturn(Set.of("taken@email"));
+        //When
+        List<CustomerBulkResult> actual = underTest.addCustomers(requests, 10);
+        //Then
+        assertThat(actual).isEqualTo(List.of(
+                CustomerBulkResult.created(10, "new@email"),
+                CustomerBulkResult.duplicate(11, "taken@email", "Email already taken"),
+                CustomerBulkResult.duplicate(12, "new@email", "Email repeated in request"),
+                CustomerBulkResult.invalid(13, "invalid@email"),
+                CustomerBulkResult.invalid(14, null)));
+        verify(customerDao).insertCustomers(List.of(new Customer("new", "new@email", 20)));
         verify(customerDao, Mockito.never()).insertCustomer(Mockito.any());
     }
 
+    @Test
+    void addCustomersFallsBackToSingleInsertsWhenBatchLosesARace() {
+        //Given
+        List<CustomerRegistrationRequest> requests = List.of(
+                new CustomerRegistrationRequest("first", "first@email", 20),
+                new CustomerRegistrationRequest("second", "second@email", 21));
+        Customer first = new Customer("first", "first@email", 20);
+        Customer second = new Customer("second", "second@email", 21);
+        Mockito.doThrow(new DuplicateKeyException("customer_email_key"))
+                .when(customerDao).insertCustomers(List.of(first, second));
+        when(customerDao.insertCustomer(first)).thenReturn(true);
+        when(customerDao.insertCustomer(second)).thenReturn(false);
+        //When
+        List<CustomerBulkResult> actual = underTest.addCustomers(requests, 0);
+        //Then
+        assertThat(actual).isEqualTo(List.of(
+                CustomerBulkResult.created(0, "first@email"),
+                CustomerBulkResult.duplicate(1, "second@email", "Email already taken")));
+        verify(customerDao).insertCustomer(first);
+    }
+
     @Test
     void deleteCustomer() {
+        //Given
+        Long id = 1L;
+        when(customerDao.deleteCustomer(id)).thenReturn(true);
+        //When
+        underTest.deleteCustomer(id);
+        //Then
+        verify(customerDao).deleteCustomer(id);
+        verify(customerDao, Mockito.never()).existsCustomerById(Mockito.any());
     }
 
     @Test
-    void canUpdateAllCustomerProperties() {
+    void willThrowWhenDeletingCustomerThatDoesNotExist() {
         //Given
         Long id = 1L;
-        Customer customer = new Customer(id,"name", "email@email",21);
+        when(customerDao.deleteCustomer(id)).thenReturn(false);
         //When
-        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
+        //Then
+        assertThatThrownBy(() -> underTest.deleteCustomer(id))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("Customer " + id + " does not exist");
+    }
+
+    @Test
+    void willThrowWhenDeletingCustomerWithStaleVersion() {
+        //Given
+        Long id = 1L;
+        when(customerDao.deleteCustomerIfVersion(id, 3L)).thenReturn(false);
+        when(customerDao.existsCustomerById(id)).thenReturn(true);
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.deleteCustomer(id, 3L))
+                .isInstanceOf(PreconditionFailedException.class)
+                .hasMessage("Customer " + id + " has been modified");
+        verify(customerDao, Mockito.never()).deleteCustomer(id);
+    }
+
+    @Test
+    void willThrowWhenGettingVersionOfCustomerThatDoesNotExist() {
+        //Given
+        Long id = 1L;
+        when(customerDao.selectCustomerVersion(id)).thenReturn(Optional.empty());
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.getCustomerVersion(id))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("Customer " + id + " does not exist");
+    }
+
+    @Test
+    void canUpdateAllCustomerProperties() {
+        //Given
+        Long id = 1L;
         CustomerUpdateRequest customerUpdateRequest = new CustomerUpdateRequest("new name", "new email", 23);
-        when(customerDao.existsCustomerByEmail("new email")).thenReturn(false);
-        underTest.updateCustomer(id, customerUpdateRequest);
+        Customer stored = new Customer(id, "new name", "new email", 23, 1L);
+        when(customerDao.updateCustomer(Mockito.any())).thenReturn(Optional.of(stored));
+        //When
+        Customer actual = underTest.updateCustomer(id, customerUpdateRequest, null);
         //Then
         ArgumentCaptor<Customer> argumentCaptor = ArgumentCaptor.forClass(Customer.class);
         verify(customerDao).updateCustomer(argumentCaptor.capture());
         Customer capturedCustomer = argumentCaptor.getValue();
+        assertThat(capturedCustomer.getId()).isEqualTo(id);
         assertThat(capturedCustomer.getAge()).isEqualTo(customerUpdateRequest.age());
         assertThat(capturedCustomer.getName()).isEqualTo(customerUpdateRequest.name());
         assertThat(capturedCustomer.getEmail()).isEqualTo(customerUpdateRequest.email());
-
+        assertThat(capturedCustomer.getVersion()).isNull();
+        assertThat(actual).isEqualTo(stored);
+        verify(customerDao, Mockito.never()).selectCustomerById(Mockito.any());
+        verify(customerDao, Mockito.never()).existsCustomerByEmail(Mockito.any());
     }
 
 
@@ -131,19 +470,18 @@ class CustomerServiceTest {
     void canUpdateCustomerName() {
         //Given
         Long id = 1L;
-        Customer customer = new Customer(id,"name", "email@email",21);
-        //When
-        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
         CustomerUpdateRequest customerUpdateRequest = new CustomerUpdateRequest("new name", null, null);
-//        when(customerDao.existsCustomerByEmail("new email")).thenReturn(false);
-        underTest.updateCustomer(id, customerUpdateRequest);
+        when(customerDao.updateCustomer(Mockito.any()))
+                .thenReturn(Optional.of(new Customer(id, "new name", "email@email", 21, 1L)));
+        //When
+        underTest.updateCustomer(id, customerUpdateRequest, null);
         //Then
         ArgumentCaptor<Customer> argumentCaptor = ArgumentCaptor.forClass(Customer.class);
         verify(customerDao).updateCustomer(argumentCaptor.capture());
         Customer capturedCustomer = argumentCaptor.getValue();
-        assertThat(capturedCustomer.getAge()).isEqualTo(customer.getAge());
+        assertThat(capturedCustomer.getAge()).isNull();
         assertThat(capturedCustomer.getName()).isEqualTo(customerUpdateRequest.name());
-        assertThat(capturedCustomer.getEmail()).isEqualTo(customer.getEmail());
+        assertThat(capturedCustomer.getEmail()).isNull();
 
     }
 
@@ -151,19 +489,18 @@ class CustomerServiceTest {
     void canUpdateCustomerAge() {
         //Given
         Long id = 1L;
-        Customer customer = new Customer(id,"name", "email@email",21);
-        //When
-        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
         CustomerUpdateRequest customerUpdateRequest = new CustomerUpdateRequest(null, null, 23);
-//        when(customerDao.existsCustomerByEmail("new email")).thenReturn(false);
-        underTest.updateCustomer(id, customerUpdateRequest);
+        when(customerDao.updateCustomer(Mockito.any()))
+                .thenReturn(Optional.of(new Customer(id, "name", "email@email", 23, 1L)));
+        //When
+        underTest.updateCustomer(id, customerUpdateRequest, null);
         //Then
         ArgumentCaptor<Customer> argumentCaptor = ArgumentCaptor.forClass(Customer.class);
         verify(customerDao).updateCustomer(argumentCaptor.capture());
         Customer capturedCustomer = argumentCaptor.getValue();
         assertThat(capturedCustomer.getAge()).isEqualTo(customerUpdateRequest.age());
-        assertThat(capturedCustomer.getName()).isEqualTo(customer.getName());
-        assertThat(capturedCustomer.getEmail()).isEqualTo(customer.getEmail());
+        assertThat(capturedCustomer.getName()).isNull();
+        assertThat(capturedCustomer.getEmail()).isNull();
 
     }
 
@@ -171,38 +508,125 @@ class CustomerServiceTest {
     void canUpdateCustomerEmail() {
         //Given
         Long id = 1L;
-        Customer customer = new Customer(id,"name", "email@email",21);
-        //When
-        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
         CustomerUpdateRequest customerUpdateRequest = new CustomerUpdateRequest(null, "new email", null);
-        when(customerDao.existsCustomerByEmail("new email")).thenReturn(false);
-        underTest.updateCustomer(id, customerUpdateRequest);
+        when(customerDao.updateCustomer(Mockito.any()))
+                .thenReturn(Optional.of(new Customer(id, "name", "new email", 21, 1L)));
+        //When
+        underTest.updateCustomer(id, customerUpdateRequest, null);
         //Then
         ArgumentCaptor<Customer> argumentCaptor = ArgumentCaptor.forClass(Customer.class);
         verify(customerDao).updateCustomer(argumentCaptor.capture());
         Customer capturedCustomer = argumentCaptor.getValue();
-        assertThat(capturedCustomer.getAge()).isEqualTo(customer.getAge());
-        assertThat(capturedCustomer.getName()).isEqualTo(customer.getName());
-        assertThat(capturedCustomer.getEmail()).isEqualTo(customer.getEmail());
+        assertThat(capturedCustomer.getAge()).isNull();
+        assertThat(capturedCustomer.getName()).isNull();
+        assertThat(capturedCustomer.getEmail()).isEqualTo(customerUpdateRequest.email());
     }
 
     @Test
-    void willThrowWhenEmailTakenWhileUpdate(){
+    void willPassExpectedVersionToUpdate() {
         //Given
         Long id = 1L;
-        Customer customer = new Customer(id,"name", "email@email",21);
+        CustomerUpdateRequest customerUpdateRequest = new CustomerUpdateRequest("new name", null, null);
+        when(customerDao.updateCustomer(Mockito.any()))
+                .thenReturn(Optional.of(new Customer(id, "new name", "email@email", 21, 4L)));
         //When
+        underTest.updateCustomer(id, customerUpdateRequest, 3L);
+        //Then
+        ArgumentCaptor<Customer> argumentCaptor = ArgumentCaptor.forClass(Customer.class);
+        verify(customerDao).updateCustomer(argumentCaptor.capture());
+        assertThat(argumentCaptor.getValue().getVersion()).isEqualTo(3L);
+    }
+
+    @Test
+    void willThrowWhenVersionDoesNotMatchWhileUpdate() {
+        //Given
+        Long id = 1L;
+        CustomerUpdateRequest customerUpdateRequest = new CustomerUpdateRequest("new name", null, null);
+        when(customerDao.updateCustomer(Mockito.any())).thenReturn(Optional.empty());
+        when(customerDao.existsCustomerById(id)).thenReturn(true);
+        //Then
+        assertThatThrownBy(() -> underTest.updateCustomer(id, customerUpdateRequest, 3L))
+                .isInstanceOf(PreconditionFailedException.class)
+                .hasMessage("Customer " + id + " has been modified");
+    }
+
+    @Test
+    void willThrowWhenCustomerDoesNotExistWhileUpdate() {
+        //Given
+        Long id = 1L;
+        CustomerUpdateRequest customerUpdateRequest = new CustomerUpdateRequest("new name", null, null);
+        when(customerDao.updateCustomer(Mockito.any())).thenReturn(Optional.empty());
+        //Then
+        assertThatThrownBy(() -> underTest.updateCustomer(id, customerUpdateRequest, null))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("Customer " + id + " does not exist");
+        verify(customerDao, Mockito.never()).existsCustomerById(id);
+    }
+
+    @Test
+    void willNotUpdateWhenNothingChanges() {
+        //Given
+        Long id = 1L;
+        Customer customer = new Customer(id, "name", "email@email", 21, 2L);
         when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
+        //When
+        Customer actual = underTest.updateCustomer(id, new CustomerUpdateRequest(null, null, null), 2L);
+        //Then
+        assertThat(actual).isEqualTo(customer);
+        verify(customerDao, Mockito.never()).updateCustomer(Mockito.any());
+    }
+
+    @Test
+    void willThrowWhenEmailTakenWhileUpdate(){
+        //Given
+        Long id = 1L;
         String newEmail = "new email";
         CustomerUpdateRequest customerUpdateRequest = new CustomerUpdateRequest(null, newEmail, null);
-        when(customerDao.existsCustomerByEmail(newEmail)).thenReturn(true);
+        when(customerDao.updateCustomer(Mockito.any()))
+                .thenThrow(new DuplicateKeyException("customer_email_key"));
 
-        //underTest.updateCustomer(id, customerUpdateRequest);\
-        assertThatThrownBy(()-> underTest.updateCustomer(id,customerUpdateRequest))
+        //Then
+        assertThatThrownBy(()-> underTest.updateCustomer(id, customerUpdateRequest, null))
                 .isInstanceOf(DuplicateResourceException.class)
                 .hasMessage("Email already taken");
+        verify(customerDao, Mockito.never()).existsCustomerByEmail(Mockito.any());
+
+    }
+
+    @Test
+    void willNotReportOtherConstraintViolationsAsTakenEmail() {
+        //Given
+        DataIntegrityViolationException violation = new DataIntegrityViolationException(
+                "new row violates check constraint \"customer_age_check\"");
+        when(customerDao.updateCustomer(Mockito.any())).thenThrow(violation);
+        //When
         //Then
-        verify(customerDao , Mockito.never()).updateCustomer(Mockito.any());
+        assertThatThrownBy(() -> underTest.updateCustomer(1L, new CustomerUpdateRequest(null, null, -1), null))
+                .isSameAs(violation);
+    }
+
+    @Test
+    void readsTheViolatedConstraintFromTheDriver() {
+        //Given
+        PSQLException primaryKey = new PSQLException(new ServerErrorMessage(
+                "SERROR\u0000C23505\u0000Mduplicate key, customer_email_key in detail\u0000ncustomer_pkey\u0000"));
+        PSQLException email = new PSQLException(new ServerErrorMessage(
+                "SERROR\u0000C23505\u0000Mduplicate key\u0000ncustomer_email_key\u0000"));
+        //When
+        //Then
+        assertFalse(CustomerService.isEmailTaken(new DuplicateKeyException("insert failed", primaryKey)));
+        assertTrue(CustomerService.isEmailTaken(new DuplicateKeyException("insert failed", email)));
+    }
 
+    @Test
+    void bulkInsertRethrowsViolationsOtherThanTakenEmail() {
+        //Given
+        List<CustomerRegistrationRequest> requests = List.of(new CustomerRegistrationRequest("first", "first@email", 20));
+        DataIntegrityViolationException violation = new DataIntegrityViolationException("customer_pkey");
+        Mockito.doThrow(violation).when(customerDao).insertCustomers(Mockito.anyList());
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.addCustomers(requests, 0)).isSameAs(violation);
+        verify(customerDao, Mockito.never()).insertCustomer(Mockito.any());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,139 @@
+package com.atom.fullstack.customer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class EmailFilteringCustomerDaoTest {
+
+    private EmailFilteringCustomerDao underTest;
+    private CustomerEmailFilter emailFilter;
+
+    @Mock
+    private CustomerDao customerDao;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        emailFilter = new CustomerEmailFilter(customerDao, new TransactionTemplate(transactionManager),
+                new CustomerDaoProperties.EmailFilter(true, 1_000, 0.01, 0.2), new SimpleMeterRegistry());
+        underTest = new EmailFilteringCustomerDao(customerDao, emailFilter);
+    }
+
+    @Test
+    void asksDatabaseUntilFilterIsBuilt() {
+        //Given
+        when(customerDao.existsCustomerByEmail("new@email")).thenReturn(false);
+        //When
+        boolean actual = underTest.existsCustomerByEmail("new@email");
+        //Then
+        assertThat(actual).isFalse();
+        verify(customerDao).existsCustomerByEmail("new@email");
+    }
+
+    @Test
+    void skipsDatabaseForEmailsThatCannotExist() {
+        //Given
+        when(customerDao.streamAllCustomers())
+                .thenReturn(Stream.of(new Customer(1L, "name", "Taken@Email", 20)));
+        emailFilter.rebuild();
+        //When
+        boolean actual = underTest.existsCustomerByEmail("new@email");
+        //Then
+        assertThat(actual).isFalse();
+        verify(customerDao, never()).existsCustomerByEmail("new@email");
+    }
+
+    @Test
+    void asksDatabaseWhenEmailMightExist() {
+        //Given
+        when(customerDao.streamAllCustomers())
+                .thenReturn(Stream.of(new Customer(1L, "name", "Taken@Email", 20)));
+        emailFilter.rebuild();
+        when(customerDao.existsCustomerByEmail("taken@email")).thenReturn(true);
+        //When
+        boolean actual = underTest.existsCustomerByEmail("taken@email");
+        //Then
+        assertThat(actual).isTrue();
+    }
+
+    @Test
+    void selectExistingEmailsOnlyQueriesPossibleMatches() {
+        //Given
+        when(customerDao.streamAllCustomers()).thenReturn(Stream.empty());
+        emailFilter.rebuild();
+        underTest.insertCustomer(new Customer("name", "inserted@email", 20));
+        when(customerDao.selectExistingEmails(List.of("inserted@email"))).thenReturn(Set.of("inserted@email"));
+        //When
+        Set<String> actual = underTest.selectExistingEmails(List.of("new@email", "inserted@email"));
+        //Then
+        assertThat(actual).containsExactly("inserted@email");
+    }
+
+    @Test
+    void buildWaitsForInsertsThatStartedBeforeIt() throws Exception {
+        //Given
+        Customer customer = new Customer("name", "racing@email", 20);
+        AtomicBoolean stored = new AtomicBoolean();
+        CountDownLatch inserting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(customerDao.insertCustomer(customer)).thenAnswer(invocation -> {
+            inserting.countDown();
+            release.await();
+            stored.set(true);
+            return true;
+        });
+        // the scan sees what was stored when it started
+        when(customerDao.streamAllCustomers())
+                .thenAnswer(invocation -> stored.get() ? Stream.of(customer) : Stream.empty());
+        ExecutorService threads = Executors.newFixedThreadPool(2);
+        try {
+            Future<Boolean> insert = threads.submit(() -> underTest.insertCustomer(customer));
+            assertThat(inserting.await(5, TimeUnit.SECONDS)).isTrue();
+            Future<?> build = threads.submit(emailFilter::rebuild);
+            //When
+            release.countDown();
+            //Then
+            assertThat(insert.get(5, TimeUnit.SECONDS)).isTrue();
+            build.get(5, TimeUnit.SECONDS);
+        } finally {
+            threads.shutdownNow();
+        }
+        assertThat(emailFilter.mightExist("racing@email")).isTrue();
+    }
+
+    @Test
+    void selectExistingEmailsSkipsDatabaseWhenNothingCanMatch() {
+        //Given
+        when(customerDao.streamAllCustomers()).thenReturn(Stream.empty());
+        emailFilter.rebuild();
+        //When
+        Set<String> actual = underTest.selectExistingEmails(List.of("new@email", "other@email"));
+        //Then
+        assertThat(actual).isEmpty();
+        verify(customerDao, never()).selectExistingEmails(any());
+    }
+}
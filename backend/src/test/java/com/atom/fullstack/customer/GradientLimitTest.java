@@ -0,0 +1,86 @@
+package com.atom.fullstack.customer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GradientLimitTest {
+
+    private static final long BASELINE = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final GradientLimit underTest = new GradientLimit(
+            new CustomerLimitProperties.Limit(10, 2, 50, 2.0, 0.2));
+
+    @Test
+    void turnsCallsAwayAtTheLimit() {
+        //Given
+        for (int i = 0; i < 10; i++) {
+            assertThat(underTest.tryAcquire()).isEqualTo(i + 1);
+        }
+        //When
+        int rejected = underTest.tryAcquire();
+        //Then
+        assertThat(rejected).isZero();
+        assertThat(underTest.inFlight()).isEqualTo(10);
+    }
+
+    @Test
+    void growsWhileSaturatedAndLatencyHolds() {
+        //When
+        sample(200, BASELINE);
+        //Then
+        assertThat(underTest.limit()).isEqualTo(50);
+    }
+
+    @Test
+    void shrinksWhenLatencyRisesPastTolerance() {
+        //Given
+        sample(50, BASELINE);
+        int before = underTest.limit();
+        //When
+        sample(20, 10 * BASELINE);
+        //Then
+        assertThat(underTest.limit()).isLessThan(before / 2);
+    }
+
+    @Test
+    void doesNotGrowWhileMostlyIdle() {
+        //When
+        for (int i = 0; i < 100; i++) {
+            int inFlight = underTest.tryAcquire();
+            underTest.release(BASELINE, inFlight, false);
+        }
+        //Then
+        assertThat(underTest.limit()).isEqualTo(10);
+    }
+
+    @Test
+    void backsOffOnOverload() {
+        //Given
+        int inFlight = underTest.tryAcquire();
+        //When
+        underTest.release(BASELINE, inFlight, true);
+        //Then
+        assertThat(underTest.limit()).isEqualTo(9);
+        assertThat(underTest.inFlight()).isZero();
+    }
+
+    /**
+     * Fills the limit and releases every call with the same latency, as many
+     * times as asked.
+     */
+    private void sample(int rounds, long latencyNanos) {
+        for (int round = 0; round < rounds; round++) {
+            int acquired = 0;
+            int inFlight;
+            while ((inFlight = underTest.tryAcquire()) > 0) {
+                acquired = inFlight;
+            }
+            for (int i = 0; i < acquired; i++) {
+                underTest.release(latencyNanos, acquired, false);
+            }
+        }
+    }
+}
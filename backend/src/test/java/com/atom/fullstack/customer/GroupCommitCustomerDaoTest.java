@@ -0,0 +1,129 @@
+package com.atom.fullstack.customer;
+
+import com.atom.fullstack.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class GroupCommitCustomerDaoTest {
+
+    private final ExecutorService callers = Executors.newFixedThreadPool(3);
+    private SimpleMeterRegistry meterRegistry;
+    private GroupCommitCustomerDao underTest;
+
+    @Mock
+    private CustomerDao customerDao;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+        if (underTest != null) {
+            underTest.close();
+        }
+    }
+
+    @Test
+    void concurrentRegistrationsShareOneInsert() {
+        //Given
+        underTest = new GroupCommitCustomerDao(customerDao,
+                new CustomerDaoProperties.GroupCommit(true, 3, Duration.ofSeconds(5), 10), meterRegistry);
+        Customer first = new Customer("first", "first@email.com", 20);
+        Customer second = new Customer("second", "second@email.com", 20);
+        Customer taken = new Customer("taken", "taken@email.com", 20);
+        doAnswer(invocation -> {
+            first.setId(1L);
+            second.setId(2L);
+            return 2;
+        }).when(customerDao).insertCustomersIfEmailAbsent(anyList());
+        //When
+        CompletableFuture<Boolean> firstResult = register(first);
+        CompletableFuture<Boolean> secondResult = register(second);
+        CompletableFuture<Boolean> takenResult = register(taken);
+        //Then
+        assertThat(firstResult).succeedsWithin(Duration.ofSeconds(5)).isEqualTo(true);
+        assertThat(secondResult).succeedsWithin(Duration.ofSeconds(5)).isEqualTo(true);
+        assertThat(takenResult).succeedsWithin(Duration.ofSeconds(5)).isEqualTo(false);
+        verify(customerDao, times(1)).insertCustomersIfEmailAbsent(anyList());
+        assertThat(meterRegistry.get("customer.group.commit.flush.size").summary().totalAmount()).isEqualTo(3);
+    }
+
+    @Test
+    void failedGroupIsRetriedRowByRow() {
+        //Given
+        underTest = new GroupCommitCustomerDao(customerDao,
+                new CustomerDaoProperties.GroupCommit(true, 2, Duration.ofSeconds(5), 10), meterRegistry);
+        Customer good = new Customer("good", "good@email.com", 20);
+        Customer bad = new Customer("bad", "bad@email.com", 20);
+        when(customerDao.insertCustomersIfEmailAbsent(anyList()))
+                .thenThrow(new DataIntegrityViolationException("value too long"));
+        when(customerDao.insertCustomer(good)).thenReturn(true);
+        when(customerDao.insertCustomer(bad)).thenThrow(new DataIntegrityViolationException("value too long"));
+        //When
+        CompletableFuture<Boolean> goodResult = register(good);
+        CompletableFuture<Boolean> badResult = register(bad);
+        //Then
+        assertThat(goodResult).succeedsWithin(Duration.ofSeconds(5)).isEqualTo(true);
+        assertThat(badResult).failsWithin(Duration.ofSeconds(5))
+                .withThrowableOfType(Exception.class)
+                .withRootCauseInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    @Test
+    void rejectsRegistrationsWhenQueueIsFull() throws Exception {
+        //Given
+        underTest = new GroupCommitCustomerDao(customerDao,
+                new CustomerDaoProperties.GroupCommit(true, 1, Duration.ofMillis(1), 1), meterRegistry);
+        CountDownLatch flushing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            flushing.countDown();
+            release.await();
+            return 0;
+        }).when(customerDao).insertCustomersIfEmailAbsent(anyList());
+        CompletableFuture<Boolean> inFlight = register(new Customer("a", "a@email.com", 20));
+        assertThat(flushing.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<Boolean> queued = register(new Customer("b", "b@email.com", 20));
+        while (meterRegistry.get("customer.group.commit.queue.depth").gauge().value() < 1) {
+            Thread.sleep(10);
+        }
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.insertCustomer(new Customer("c", "c@email.com", 20)))
+                .isInstanceOf(ServiceUnavailableException.class);
+        assertThat(meterRegistry.get("customer.group.commit.rejected").counter().count()).isEqualTo(1);
+        release.countDown();
+        assertThat(inFlight).succeedsWithin(Duration.ofSeconds(5));
+        assertThat(queued).succeedsWithin(Duration.ofSeconds(5));
+    }
+
+    private CompletableFuture<Boolean> register(Customer customer) {
+        return CompletableFuture.supplyAsync(() -> underTest.insertCustomer(customer), callers);
+    }
+}
@@ -0,0 +1,175 @@
+package com.atom.fullstack.customer;
+
+import com.atom.fullstack.exception.DuplicateResourceException;
+import com.atom.fullstack.exception.PreconditionFailedException;
+import com.atom.fullstack.exception.RequestValidationException;
+import com.atom.fullstack.exception.ResourceNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveCustomerServiceTest {
+
+    private ReactiveCustomerService underTest;
+
+    @Mock
+    private ReactiveCustomerDao customerDao;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new ReactiveCustomerService(customerDao);
+    }
+
+    @Test
+    void getCustomersReturnsCursorWhenMoreRowsExist() {
+        //Given
+        when(customerDao.selectCustomers(CustomerCursor.first(CustomerSortKey.ID), 3))
+                .thenReturn(Flux.just(
+                        new Customer(1L, "a", "a@email", 20),
+                        new Customer(2L, "b", "b@email", 20),
+                        new Customer(3L, "c", "c@email", 20)));
+        //When
+        //Then
+        StepVerifier.create(underTest.getCustomers(null, null, 2))
+                .assertNext(page -> {
+                    assertThat(page.customers()).extracting(Customer::getId).containsExactly(1L, 2L);
+                    assertThat(CustomerCursor.decode(page.nextCursor()).lastId()).isEqualTo(2L);
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void getCustomersRejectsNonPositiveSize() {
+        StepVerifier.create(underTest.getCustomers(null, null, 0))
+                .verifyError(RequestValidationException.class);
+    }
+
+    @Test
+    void getCustomerByIdFailsWhenMissing() {
+        //Given
+        when(customerDao.selectCustomerById(1L)).thenReturn(Mono.empty());
+        //When
+        //Then
+        StepVerifier.create(underTest.getCustomerById(1L))
+                .verifyErrorMessage("Customer 1 does not exist");
+    }
+
+    @Test
+    void addCustomerEmitsTheInsertedCustomer() {
+        //Given
+        when(customerDao.insertCustomer(Mockito.any())).thenAnswer(invocation -> {
+            Customer customer = invocation.getArgument(0);
+            customer.setId(1L);
+            customer.setVersion(0L);
+            return Mono.just(true);
+        });
+        //When
+        //Then
+        StepVerifier.create(underTest.addCustomer(new CustomerRegistrationRequest("name", "email", 20)))
+                .assertNext(customer -> {
+                    assertThat(customer.getId()).isEqualTo(1L);
+                    assertThat(customer.getVersion()).isZero();
+                    assertThat(customer.getEmail()).isEqualTo("email");
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void addCustomerFailsWhenEmailTaken() {
+        //Given
+        when(customerDao.insertCustomer(Mockito.any())).thenReturn(Mono.just(false));
+        //When
+        //Then
+        StepVerifier.create(underTest.addCustomer(new CustomerRegistrationRequest("name", "email", 20)))
+                .verifyError(DuplicateResourceException.class);
+    }
+
+    @Test
+    void deleteCustomerFailsWhenMissing() {
+        //Given
+        when(customerDao.deleteCustomer(1L)).thenReturn(Mono.just(false));
+        //When
+        //Then
+        StepVerifier.create(underTest.deleteCustomer(1L))
+                .verifyError(ResourceNotFoundException.class);
+    }
+
+    @Test
+    void deleteCustomerWithStaleVersionFailsPrecondition() {
+        //Given
+        when(customerDao.deleteCustomerIfVersion(1L, 2L)).thenReturn(Mono.just(false));
+        when(customerDao.existsCustomerById(1L)).thenReturn(Mono.just(true));
+        //When
+        //Then
+        StepVerifier.create(underTest.deleteCustomer(1L, 2L))
+                .verifyError(PreconditionFailedException.class);
+    }
+
+    @Test
+    void deleteCustomerWithVersionFailsWhenMissing() {
+        //Given
+        when(customerDao.deleteCustomerIfVersion(1L, 2L)).thenReturn(Mono.just(false));
+        when(customerDao.existsCustomerById(1L)).thenReturn(Mono.just(false));
+        //When
+        //Then
+        StepVerifier.create(underTest.deleteCustomer(1L, 2L))
+                .verifyError(ResourceNotFoundException.class);
+    }
+
+    @Test
+    void updateCustomerWithStaleVersionFailsPrecondition() {
+        //Given
+        when(customerDao.updateCustomer(Mockito.any())).thenReturn(Mono.empty());
+        when(customerDao.existsCustomerById(1L)).thenReturn(Mono.just(true));
+        //When
+        //Then
+        StepVerifier.create(underTest.updateCustomer(1L, new CustomerUpdateRequest("name", null, null), 3L))
+                .verifyError(PreconditionFailedException.class);
+    }
+
+    @Test
+    void updateCustomerWithoutVersionDoesNotLookUpExistence() {
+        //Given
+        when(customerDao.updateCustomer(Mockito.any())).thenReturn(Mono.empty());
+        //When
+        //Then
+        StepVerifier.create(underTest.updateCustomer(1L, new CustomerUpdateRequest("name", null, null), null))
+                .verifyError(ResourceNotFoundException.class);
+        verify(customerDao, Mockito.never()).existsCustomerById(1L);
+    }
+
+    @Test
+    void updateCustomerWithTakenEmailFailsAsDuplicate() {
+        //Given
+        when(customerDao.updateCustomer(Mockito.any()))
+                .thenReturn(Mono.error(new DuplicateKeyException("customer_email_key")));
+        //When
+        //Then
+        StepVerifier.create(underTest.updateCustomer(1L, new CustomerUpdateRequest(null, "taken", null), null))
+                .verifyErrorMessage("Email already taken");
+    }
+
+    @Test
+    void updateCustomerPassesOtherViolationsThrough() {
+        //Given
+        DataIntegrityViolationException violation = new DataIntegrityViolationException("customer_age_check");
+        when(customerDao.updateCustomer(Mockito.any())).thenReturn(Mono.error(violation));
+        //When
+        //Then
+        StepVerifier.create(underTest.updateCustomer(1L, new CustomerUpdateRequest(null, null, -1), null))
+                .verifyErrorMatches(e -> e == violation);
+    }
+}
@@ -0,0 +1,46 @@
+package com.atom.fullstack.customer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ScalableBloomFilterTest {
+
+    @Test
+    void hasNoFalseNegativesAfterGrowing() {
+        //Given
+        ScalableBloomFilter underTest = new ScalableBloomFilter(100, 0.01);
+        //When
+        IntStream.range(0, 10_000).forEach(i -> underTest.add("customer-" + i + "@email.com"));
+        //Then
+        assertThat(IntStream.range(0, 10_000))
+                .allMatch(i -> underTest.mightContain("customer-" + i + "@email.com"));
+        assertThat(underTest.size()).isBetween(9_900L, 10_000L);
+    }
+
+    @Test
+    void keepsFalsePositiveRateNearTarget() {
+        //Given
+        ScalableBloomFilter underTest = new ScalableBloomFilter(1_000, 0.01);
+        IntStream.range(0, 20_000).forEach(i -> underTest.add("customer-" + i + "@email.com"));
+        //When
+        long falsePositives = IntStream.range(0, 100_000)
+                .filter(i -> underTest.mightContain("unknown-" + i + "@email.com"))
+                .count();
+        //Then
+        assertThat(falsePositives / 100_000.0).isLessThan(0.02);
+        assertThat(underTest.expectedFalsePositiveProbability()).isLessThan(0.02);
+        assertThat(underTest.memoryBytes()).isPositive();
+    }
+
+    @Test
+    void rejectsInvalidSizing() {
+        assertThatThrownBy(() -> new ScalableBloomFilter(0, 0.01))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new ScalableBloomFilter(10, 1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
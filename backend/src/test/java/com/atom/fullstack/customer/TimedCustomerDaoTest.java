@@ -0,0 +1,127 @@
+package com.atom.fullstack.customer;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TimedCustomerDaoTest {
+
+    private TimedCustomerDao underTest;
+    private SimpleMeterRegistry meterRegistry;
+
+    @Mock
+    private CustomerDao customerDao;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        underTest = new TimedCustomerDao(customerDao, "jdbc", meterRegistry);
+    }
+
+    @Test
+    void recordsCallsByOperationAndImplementation() {
+        //Given
+        when(customerDao.selectCustomerById(1L)).thenReturn(Optional.empty());
+        //When
+        underTest.selectCustomerById(1L);
+        underTest.selectCustomerById(1L);
+        //Then
+        Timer timer = meterRegistry.get("customer.dao")
+                .tags("operation", "selectCustomerById", "dao", "jdbc", "exception", "none")
+                .timer();
+        assertThat(timer.count()).isEqualTo(2);
+    }
+
+    @Test
+    void recordsFailuresByException() {
+        //Given
+        when(customerDao.deleteCustomer(1L)).thenThrow(new QueryTimeoutException("timeout"));
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.deleteCustomer(1L))
+                .isInstanceOf(QueryTimeoutException.class);
+        Timer timer = meterRegistry.get("customer.dao")
+                .tags("operation", "deleteCustomer", "exception", "QueryTimeoutException")
+                .timer();
+        assertThat(timer.count()).isEqualTo(1);
+        assertThat(meterRegistry.find("customer.dao").tags("exception", "none").timer()).isNull();
+    }
+
+    @Test
+    void timesStreamUntilClosed() {
+        //Given
+        when(customerDao.streamAllCustomers()).thenReturn(Stream.of(new Customer(1L, "name", "email", 20)));
+        //When
+        Stream<Customer> customers = underTest.streamAllCustomers();
+        //Then
+        assertThat(meterRegistry.find("customer.dao").tags("operation", "streamAllCustomers").timer()).isNull();
+        customers.close();
+        assertThat(meterRegistry.get("customer.dao").tags("operation", "streamAllCustomers").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void recordsStreamThatFailsWhileReadingAsFailed() {
+        //Given
+        when(customerDao.streamAllCustomers()).thenReturn(Stream.of(1L, 2L)
+                .map(id -> {
+                    if (id == 2L) {
+                        throw new QueryTimeoutException("timeout");
+                    }
+                    return new Customer(id, "name", "email", 20);
+                }));
+        //When
+        try (Stream<Customer> customers = underTest.streamAllCustomers()) {
+            assertThatThrownBy(customers::toList).isInstanceOf(QueryTimeoutException.class);
+        }
+        //Then
+        assertThat(meterRegistry.get("customer.dao")
+                .tags("operation", "streamAllCustomers", "exception", "QueryTimeoutException")
+                .timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.find("customer.dao").tags("exception", "none").timer()).isNull();
+    }
+
+    @Test
+    void doesNotRecordFailuresOfTheStreamConsumer() {
+        //Given
+        when(customerDao.streamAllCustomers()).thenReturn(Stream.of(new Customer(1L, "name", "email", 20)));
+        //When
+        try (Stream<Customer> customers = underTest.streamAllCustomers()) {
+            assertThatThrownBy(() -> customers.forEach(customer -> {
+                throw new UncheckedIOException(new IOException("Broken pipe"));
+            })).isInstanceOf(UncheckedIOException.class);
+        }
+        //Then
+        assertThat(meterRegistry.get("customer.dao")
+                .tags("operation", "streamAllCustomers", "exception", "none")
+                .timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void closingTheTimedStreamClosesTheDaoStream() {
+        //Given
+        AtomicBoolean closed = new AtomicBoolean();
+        when(customerDao.streamAllCustomers())
+                .thenReturn(Stream.of(new Customer(1L, "name", "email", 20)).onClose(() -> closed.set(true)));
+        //When
+        underTest.streamAllCustomers().close();
+        //Then
+        assertThat(closed).isTrue();
+    }
+}
@@ -1,6 +1,9 @@
 package com.atom.fullstack.journey;
 
 import com.atom.fullstack.customer.Customer;
+import com.atom.fullstack.customer.CustomerBulkResult;
+import com.atom.fullstack.customer.CustomerBulkStatus;
+import com.atom.fullstack.customer.CustomerPage;
 import com.atom.fullstack.customer.CustomerRegistrationRequest;
 import com.atom.fullstack.customer.CustomerUpdateRequest;
 import com.github.javafaker.Faker;
@@ -8,10 +11,16 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.EntityExchangeResult;
 import org.springframework.test.web.reactive.server.WebTestClient;
 
+import java.net.URI;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -21,6 +30,29 @@ public class CustomerIntegrationTest {
     @Autowired
     private WebTestClient webTestClient;
 
+    private List<Customer> getAllCustomers() {
+        List<Customer> customers = new ArrayList<>();
+        String cursor = null;
+        do {
+            String pageCursor = cursor;
+            CustomerPage page = webTestClient.get()
+                    .uri(uriBuilder -> uriBuilder.path("api/v1/customer")
+                            .queryParam("size", 100)
+                            .queryParamIfPresent("cursor", Optional.ofNullable(pageCursor))
+                            .build())
+                    .accept(MediaType.APPLICATION_JSON)
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody(CustomerPage.class)
+                    .returnResult()
+                    .getResponseBody();
+            assertThat(page).isNotNull();
+            customers.addAll(page.customers());
+            cursor = page.nextCursor();
+        } while (cursor != null);
+        return customers;
+    }
+
     @Test
     void canRegisterCustomer() {
         //Create Registeration Request
@@ -37,17 +69,9 @@ public class CustomerIntegrationTest {
                 .header("Accept", "application/json")
                 .bodyValue(customerRegistrationRequest)
                 .exchange()// Send Request
-                .expectStatus().isOk();
+                .expectStatus().isCreated();
         //Get All Customers
-        List<Customer> customerList = webTestClient.get()
-                .uri("api/v1/customer")
-                .accept(MediaType.APPLICATION_JSON)
-                .exchange()
-                .expectStatus().isOk()
-                .expectBodyList(new ParameterizedTypeReference<Customer>() {
-                })
-                .returnResult()
-                .getResponseBody();
+        List<Customer> customerList = getAllCustomers();
 
         //Assert Customer is in the list
         Customer expected = Customer.builder()
@@ -86,6 +110,78 @@ public class CustomerIntegrationTest {
 
     }
 
+    @Test
+    void registrationReturnsCreatedCustomerAndLocation() {
+        Faker faker = new Faker();
+        String email = faker.internet().emailAddress();
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest(faker.name().fullName(), email, 30);
+
+        EntityExchangeResult<Customer> created = webTestClient.post()
+                .uri("/api/v1/customer")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(request)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(Customer.class)
+                .returnResult();
+        Customer customer = created.getResponseBody();
+        assertThat(customer).isNotNull();
+        assertThat(customer.getId()).isNotNull();
+        assertThat(customer.getEmail()).isEqualTo(email);
+        URI location = created.getResponseHeaders().getLocation();
+        assertThat(location).isNotNull();
+        assertThat(location.getPath()).endsWith("/api/v1/customer/" + customer.getId());
+
+        // the new customer is there under its location, with the tag we were given
+        webTestClient.get()
+                .uri(location.getPath())
+                .header(HttpHeaders.IF_NONE_MATCH, created.getResponseHeaders().getETag())
+                .exchange()
+                .expectStatus().isNotModified();
+    }
+
+    @Test
+    void bulkRegistrationReportsWhereAMalformedCustomerStoppedIt() {
+        // one full chunk, registered before the parser reaches the broken element
+        String prefix = UUID.randomUUID().toString();
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < 1_000; i++) {
+            body.append("{\"name\":\"bulk\",\"email\":\"").append(prefix).append('-').append(i)
+                    .append("@email.com\",\"age\":30},");
+        }
+        body.append("{\"name\":\"partial\",\"email\":\"").append(prefix).append("-late@email.com\",\"age\":30},");
+        body.append("{\"name\": oops}]");
+
+        List<CustomerBulkResult> results = webTestClient.post()
+                .uri("/api/v1/customer/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(body.toString())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(CustomerBulkResult.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertThat(results).hasSize(1_001);
+        assertThat(results.subList(0, 1_000)).allMatch(result -> result.status() == CustomerBulkStatus.CREATED);
+        assertThat(results.get(1_000).status()).isEqualTo(CustomerBulkStatus.MALFORMED);
+        assertThat(results.get(1_000).index()).isEqualTo(1_001);
+        assertThat(getAllCustomers()).noneMatch(customer -> customer.getEmail().equals(prefix + "-late@email.com"));
+    }
+
+    @Test
+    void bulkRegistrationRejectsMalformedPayloadBeforeRegisteringAnything() {
+        String email = UUID.randomUUID() + "@email.com";
+        webTestClient.post()
+                .uri("/api/v1/customer/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("[{\"name\":\"first\",\"email\":\"" + email + "\",\"age\":30}, {\"name\": oops}]")
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        assertThat(getAllCustomers()).noneMatch(customer -> customer.getEmail().equals(email));
+    }
+
     @Test
     void canDeleteCustomer() {
         //Create Registeration Request
@@ -102,17 +198,9 @@ public class CustomerIntegrationTest {
                 .header("Accept", "application/json")
                 .bodyValue(customerRegistrationRequest)
                 .exchange()// Send Request
-                .expectStatus().isOk();
+                .expectStatus().isCreated();
         //Get All Customers
-        List<Customer> customerList = webTestClient.get()
-                .uri("api/v1/customer")
-                .accept(MediaType.APPLICATION_JSON)
-                .exchange()
-                .expectStatus().isOk()
-                .expectBodyList(new ParameterizedTypeReference<Customer>() {
-                })
-                .returnResult()
-                .getResponseBody();
+        List<Customer> customerList = getAllCustomers();
 
 
         // Get Customer by Id
@@ -153,17 +241,9 @@ public class CustomerIntegrationTest {
                 .header("Accept", "application/json")
                 .bodyValue(customerRegistrationRequest)
                 .exchange()// Send Request
-                .expectStatus().isOk();
+                .expectStatus().isCreated();
         //Get All Customers
-        List<Customer> customerList = webTestClient.get()
-                .uri("api/v1/customer")
-                .accept(MediaType.APPLICATION_JSON)
-                .exchange()
-                .expectStatus().isOk()
-                .expectBodyList(new ParameterizedTypeReference<Customer>() {
-                })
-                .returnResult()
-                .getResponseBody();
+        List<Customer> customerList = getAllCustomers();
 
 
         // Get Customer by Id
@@ -207,4 +287,83 @@ public class CustomerIntegrationTest {
 
         assertThat(updatedCustomer).isEqualTo(expectedCustomer);
     }
+
+    @Test
+    void canRevalidateCustomerWithETag() {
+        //Create Registeration Request
+        Faker faker = new Faker();
+        String email = faker.internet().emailAddress();
+        webTestClient.post()
+                .uri("/api/v1/customer")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new CustomerRegistrationRequest(faker.name().fullName(), email, 30))
+                .exchange()
+                .expectStatus().isCreated();
+        Long id = getAllCustomers().stream()
+                .filter(customer -> customer.getEmail().equals(email))
+                .map(Customer::getId)
+                .findFirst()
+                .orElseThrow();
+
+        // Unchanged customer is not sent again
+        String eTag = webTestClient.get()
+                .uri("api/v1/customer" + "/{id}", id)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(Customer.class)
+                .getResponseHeaders()
+                .getETag();
+        assertThat(eTag).isNotNull();
+        webTestClient.get()
+                .uri("api/v1/customer" + "/{id}", id)
+                .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+
+        // Changed customer is sent with a new tag, and the old tag no longer deletes it
+        webTestClient.patch()
+                .uri("api/v1/customer" + "/{id}", id)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new CustomerUpdateRequest(null, null, 31))
+                .exchange()
+                .expectStatus().isOk();
+        webTestClient.get()
+                .uri("api/v1/customer" + "/{id}", id)
+                .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().value(HttpHeaders.ETAG, newTag -> assertThat(newTag).isNotEqualTo(eTag));
+        webTestClient.delete()
+                .uri("api/v1/customer" + "/{id}", id)
+                .header(HttpHeaders.IF_MATCH, eTag)
+                .exchange()
+                .expectStatus().isEqualTo(412);
+    }
+
+    @Test
+    void canRevalidateCustomerListWithETag() {
+        String eTag = webTestClient.get()
+                .uri("api/v1/customer")
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(CustomerPage.class)
+                .getResponseHeaders()
+                .getETag();
+        assertThat(eTag).isNotNull();
+
+        Faker faker = new Faker();
+        webTestClient.post()
+                .uri("/api/v1/customer")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new CustomerRegistrationRequest(faker.name().fullName(), faker.internet().emailAddress(), 30))
+                .exchange()
+                .expectStatus().isCreated();
+
+        webTestClient.get()
+                .uri("api/v1/customer")
+                .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .exchange()
+                .expectStatus().isOk();
+    }
 }
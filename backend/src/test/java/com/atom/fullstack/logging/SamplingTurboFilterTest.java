@@ -0,0 +1,86 @@
+package com.atom.fullstack.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SamplingTurboFilterTest {
+
+    private final LoggerContext context = new LoggerContext();
+    private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+
+    @BeforeEach
+    void setUp() {
+        SamplingTurboFilter filter = new SamplingTurboFilter();
+        filter.setContext(context);
+        filter.setLoggerName("com.example.hot");
+        filter.setLevel(Level.INFO);
+        filter.setKeepOneIn(10);
+        filter.start();
+        context.addTurboFilter(filter);
+        appender.setContext(context);
+        appender.start();
+        Logger root = context.getLogger(Logger.ROOT_LOGGER_NAME);
+        root.setLevel(Level.INFO);
+        root.addAppender(appender);
+    }
+
+    @Test
+    void keepsOneInNOfTheCategory() {
+        //Given
+        Logger hot = context.getLogger("com.example.hot.Service");
+        //When
+        for (int i = 0; i < 100; i++) {
+            if (hot.isInfoEnabled()) {
+                hot.info("call {}", i);
+            }
+        }
+        //Then
+        assertThat(appender.list).hasSize(10);
+        assertThat(appender.list.get(1).getFormattedMessage()).isEqualTo("call 10");
+    }
+
+    @Test
+    void leavesOtherCategoriesLevelsAndFailuresAlone() {
+        //Given
+        Logger hot = context.getLogger("com.example.hot");
+        Logger sibling = context.getLogger("com.example.hotter");
+        //When
+        for (int i = 0; i < 5; i++) {
+            sibling.info("sibling {}", i);
+            hot.warn("warning {}", i);
+            hot.info("failed {}", i, new IllegalStateException());
+        }
+        //Then
+        assertThat(appender.list).hasSize(15);
+    }
+
+    @Test
+    void withAMarkerSamplesOnlyTheMarkedEvents() {
+        //Given
+        SamplingTurboFilter marked = new SamplingTurboFilter();
+        marked.setContext(context);
+        marked.setLoggerName("com.example.audited");
+        marked.setMarker(SamplingTurboFilter.HIGH_VOLUME.getName());
+        marked.setKeepOneIn(10);
+        marked.start();
+        context.addTurboFilter(marked);
+        Logger audited = context.getLogger("com.example.audited.Service");
+        //When
+        for (int i = 0; i < 100; i++) {
+            audited.info(SamplingTurboFilter.HIGH_VOLUME, "read {}", i);
+        }
+        for (int i = 0; i < 5; i++) {
+            audited.info("write {}", i);
+        }
+        //Then
+        assertThat(appender.list).hasSize(15);
+        assertThat(appender.list).filteredOn(event -> event.getFormattedMessage().startsWith("write")).hasSize(5);
+    }
+}
@@ -0,0 +1,145 @@
+package com.atom.fullstack.replica;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.Network;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+import org.testcontainers.images.builder.Transferable;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs against a real streaming replica: the second container is cloned from
+ * the first with pg_basebackup and follows it, so {@code pg_is_in_recovery()}
+ * tells which one served a query.
+ */
+@Testcontainers
+class ReplicaRoutingDataSourceTest {
+
+    private static final Network network = Network.newNetwork();
+
+    @Container
+    private static final PostgreSQLContainer<?> primary = new PostgreSQLContainer<>("postgres:16.2")
+            .withNetwork(network)
+            .withNetworkAliases("primary")
+            .withCopyToContainer(Transferable.of(
+                    "echo 'host replication all all trust' >> \"$PGDATA/pg_hba.conf\"\n"),
+                    "/docker-entrypoint-initdb.d/replication.sh");
+
+    @Container
+    private static final GenericContainer<?> replica = new GenericContainer<>("postgres:16.2")
+            .dependsOn(primary)
+            .withNetwork(network)
+            .withExposedPorts(5432)
+            .withCreateContainerCmdModifier(cmd -> cmd.withUser("postgres"))
+            .withCommand("bash", "-c", """
+                    pg_basebackup -h primary -U test -D /tmp/replica -R -X stream \
+                    && chmod 0700 /tmp/replica \
+                    && exec postgres -D /tmp/replica""")
+            .waitingFor(Wait.forLogMessage(".*ready to accept read-only connections.*", 1)
+                    .withStartupTimeout(Duration.ofMinutes(2)));
+
+    private static ReplicaRoutingDataSource routing;
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate readOnly;
+    private TransactionTemplate readWrite;
+
+    @BeforeAll
+    static void beforeAll() {
+        DataSource replicaDataSource = DataSourceBuilder.create()
+                .url("jdbc:postgresql://" + replica.getHost() + ":" + replica.getMappedPort(5432) + "/test")
+                .username(primary.getUsername())
+                .password(primary.getPassword())
+                .build();
+        routing = new ReplicaRoutingDataSource(dataSource(), List.of(replicaDataSource), Duration.ofSeconds(5));
+        routing.afterPropertiesSet();
+    }
+
+    @AfterAll
+    static void afterAll() throws Exception {
+        routing.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        routing.checkLag();
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        readWrite = new TransactionTemplate(transactionManager);
+    }
+
+    @Test
+    void readOnlyTransactionsGoToReplica() {
+        assertThat(servedByReplica(readOnly)).isTrue();
+    }
+
+    @Test
+    void writesAndReadsOutsideReadOnlyTransactionsGoToPrimary() {
+        assertThat(servedByReplica(readWrite)).isFalse();
+        assertThat(jdbcTemplate.queryForObject("SELECT pg_is_in_recovery()", Boolean.class)).isFalse();
+    }
+
+    @Test
+    void pinnedReadsGoToPrimary() {
+        assertThat(PrimaryPin.call(() -> servedByReplica(readOnly))).isFalse();
+    }
+
+    @Test
+    void laggingReplicaIsSkipped() {
+        //Given
+        routing.replicas().get(0).record(60_000, 5_000);
+        //When
+        //Then
+        assertThat(servedByReplica(readOnly)).isFalse();
+    }
+
+    @Test
+    void replicaSeesPrimaryWrites() throws Exception {
+        //Given
+        readWrite.executeWithoutResult(status -> {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS marker (value TEXT)");
+            jdbcTemplate.update("INSERT INTO marker VALUES ('written')");
+        });
+        //When
+        Integer rows = null;
+        for (int attempt = 0; attempt < 50 && (rows == null || rows == 0); attempt++) {
+            Thread.sleep(100);
+            rows = readOnly.execute(status -> jdbcTemplate.queryForObject(
+                    "SELECT count(*) FROM pg_tables WHERE tablename = 'marker'", Integer.class));
+        }
+        //Then
+        assertThat(rows).isEqualTo(1);
+    }
+
+    private boolean servedByReplica(TransactionTemplate transaction) {
+        return Boolean.TRUE.equals(transaction.execute(status ->
+                jdbcTemplate.queryForObject("SELECT pg_is_in_recovery()", Boolean.class)));
+    }
+
+    private static DataSource dataSource() {
+        return DataSourceBuilder.create()
+                .url(primary.getJdbcUrl())
+                .username(primary.getUsername())
+                .password(primary.getPassword())
+                .build();
+    }
+}
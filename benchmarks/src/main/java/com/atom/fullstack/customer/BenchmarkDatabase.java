@@ -0,0 +1,71 @@
+package com.atom.fullstack.customer;
+
+import com.atom.fullstack.SpringBootExampleApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Application context against Postgres for benchmarks. Uses the database named
+ * by {@code -Dbenchmark.datasource.url} (with {@code .username} and
+ * {@code .password}) when given, otherwise starts a throwaway container.
+ */
+final class BenchmarkDatabase implements AutoCloseable {
+
+    private final PostgreSQLContainer<?> container;
+    private final ConfigurableApplicationContext context;
+
+    private BenchmarkDatabase(PostgreSQLContainer<?> container, ConfigurableApplicationContext context) {
+        this.container = container;
+        this.context = context;
+    }
+
+    static BenchmarkDatabase start(Map<String, Object> extraProperties) {
+        return start(WebApplicationType.NONE, extraProperties);
+    }
+
+    static BenchmarkDatabase start(WebApplicationType webApplicationType, Map<String, Object> extraProperties) {
+        String url = System.getProperty("benchmark.datasource.url");
+        PostgreSQLContainer<?> container = null;
+        Map<String, Object> properties = new HashMap<>();
+        if (url == null) {
+            container = new PostgreSQLContainer<>("postgres:16.2")
+                    .withDatabaseName("customers-benchmark")
+                    .withUsername("atom")
+                    .withPassword("atom");
+            container.start();
+            properties.put("spring.datasource.url", container.getJdbcUrl());
+            properties.put("spring.datasource.username", container.getUsername());
+            properties.put("spring.datasource.password", container.getPassword());
+        } else {
+            properties.put("spring.datasource.url", url);
+            properties.put("spring.datasource.username", System.getProperty("benchmark.datasource.username", "atom"));
+            properties.put("spring.datasource.password", System.getProperty("benchmark.datasource.password", "Password"));
+        }
+        properties.put("spring.jpa.show-sql", "false");
+        properties.put("logging.level.org.springframework.web", "WARN");
+        properties.put("customer.dao.email-filter.enabled", "false");
+        properties.putAll(extraProperties);
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(SpringBootExampleApplication.class)
+                .web(webApplicationType)
+                .properties(properties)
+                .run();
+        return new BenchmarkDatabase(container, context);
+    }
+
+    ConfigurableApplicationContext context() {
+        return context;
+    }
+
+    @Override
+    public void close() {
+        context.close();
+        if (container != null) {
+            container.stop();
+        }
+    }
+}
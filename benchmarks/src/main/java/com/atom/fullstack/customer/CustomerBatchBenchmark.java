@@ -0,0 +1,93 @@
+package com.atom.fullstack.customer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fetching {@code batchSize} random customers one {@code selectCustomerById}
+ * at a time, the way a page render calls us today, against one
+ * {@code selectCustomersByIds}. Goes straight to the JDBC and JPA beans, so no
+ * cache helps either side.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomerBatchBenchmark {
+
+    @Param({"jdbc", "jpa"})
+    public String dao;
+
+    @Param({"10", "50", "200"})
+    public int batchSize;
+
+    @Param({"10000"})
+    public int customers;
+
+    private BenchmarkDatabase database;
+    private CustomerDao customerDao;
+    private long minId;
+    private long maxId;
+
+    @Setup
+    public void setUp() {
+        database = BenchmarkDatabase.start(Map.of());
+        customerDao = database.context().getBean(dao, CustomerDao.class);
+        String run = UUID.randomUUID().toString();
+        List<Customer> seed = new ArrayList<>(customers);
+        for (int i = 0; i < customers; i++) {
+            seed.add(new Customer("Customer " + i, "batch" + i + "-" + run + "@example.com", 18 + i % 60));
+        }
+        database.context().getBean("jdbc", CustomerDao.class).insertCustomers(seed);
+        JdbcTemplate jdbcTemplate = database.context().getBean(JdbcTemplate.class);
+        minId = jdbcTemplate.queryForObject("SELECT min(id) FROM customer", Long.class);
+        maxId = jdbcTemplate.queryForObject("SELECT max(id) FROM customer", Long.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public void singleGets(Blackhole blackhole) {
+        for (long id : randomIds()) {
+            blackhole.consume(customerDao.selectCustomerById(id));
+        }
+    }
+
+    @Benchmark
+    public List<Customer> batchGet() {
+        return customerDao.selectCustomersByIds(randomIds());
+    }
+
+    private List<Long> randomIds() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<Long> ids = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            ids.add(random.nextLong(minId, maxId + 1));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,103 @@
+package com.atom.fullstack.customer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The JDBC and JPA implementations side by side against a real Postgres, going
+ * through the Spring beans so transactions and proxies are part of the cost.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomerDaoBenchmark {
+
+    @Param({"jdbc", "jpa"})
+    public String dao;
+
+    @Param({"10000"})
+    public int customers;
+
+    private final AtomicLong registrations = new AtomicLong();
+    private final String run = UUID.randomUUID().toString();
+    private BenchmarkDatabase database;
+    private CustomerDao customerDao;
+    private long minId;
+    private long maxId;
+    private CustomerCursor middle;
+
+    @Setup
+    public void setUp() {
+        database = BenchmarkDatabase.start(Map.of());
+        customerDao = database.context().getBean(dao, CustomerDao.class);
+        List<Customer> seed = new ArrayList<>(customers);
+        for (int i = 0; i < customers; i++) {
+            seed.add(new Customer("Customer " + i, "seed" + i + "-" + run + "@example.com", 18 + i % 60));
+        }
+        database.context().getBean("jdbc", CustomerDao.class).insertCustomers(seed);
+        JdbcTemplate jdbcTemplate = database.context().getBean(JdbcTemplate.class);
+        minId = jdbcTemplate.queryForObject("SELECT min(id) FROM customer", Long.class);
+        maxId = jdbcTemplate.queryForObject("SELECT max(id) FROM customer", Long.class);
+        middle = new CustomerCursor(CustomerSortKey.ID, String.valueOf(minId + (maxId - minId) / 2));
+    }
+
+    @TearDown
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public Object get() {
+        return customerDao.selectCustomerById(randomId());
+    }
+
+    @Benchmark
+    public boolean insert() {
+        long n = registrations.incrementAndGet();
+        return customerDao.insertCustomer(new Customer("New " + n, "new" + n + "-" + run + "@example.com", 30));
+    }
+
+    @Benchmark
+    public Object update() {
+        return customerDao.updateCustomer(Customer.builder()
+                .id(randomId())
+                .age(ThreadLocalRandom.current().nextInt(18, 78))
+                .build());
+    }
+
+    @Benchmark
+    public List<Customer> listFirstPage() {
+        return customerDao.selectCustomers(CustomerCursor.first(CustomerSortKey.ID), CustomerService.DEFAULT_PAGE_SIZE + 1);
+    }
+
+    @Benchmark
+    public List<Customer> listPageAfterCursor() {
+        return customerDao.selectCustomers(middle, CustomerService.DEFAULT_PAGE_SIZE + 1);
+    }
+
+    private long randomId() {
+        return ThreadLocalRandom.current().nextLong(minId, maxId + 1);
+    }
+}
@@ -0,0 +1,66 @@
+package com.atom.fullstack.customer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+/**
+ * Jackson serialization of customer lists, as a page body and as the NDJSON
+ * export writes them one by one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CustomerJsonBenchmark {
+
+    @Param({"1", "20", "100", "1000"})
+    public int size;
+
+    // configured like the application's mapper
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private ObjectWriter pageWriter;
+    private ObjectWriter customerWriter;
+    private List<Customer> customers;
+
+    @Setup
+    public void setUp() {
+        pageWriter = objectMapper.writerFor(CustomerPage.class);
+        customerWriter = objectMapper.writerFor(Customer.class);
+        customers = LongStream.rangeClosed(1, size)
+                .mapToObj(id -> new Customer(id, "Customer " + id, "customer" + id + "@example.com",
+                        18 + (int) (id % 60), 0L))
+                .toList();
+    }
+
+    @Benchmark
+    public byte[] page() throws JsonProcessingException {
+        return pageWriter.writeValueAsBytes(new CustomerPage(customers, "cursor"));
+    }
+
+    @Benchmark
+    public void ndjson(Blackhole blackhole) throws JsonProcessingException {
+        for (Customer customer : customers) {
+            blackhole.consume(customerWriter.writeValueAsBytes(customer));
+        }
+    }
+}
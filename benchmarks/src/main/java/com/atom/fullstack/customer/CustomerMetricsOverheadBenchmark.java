@@ -0,0 +1,85 @@
+package com.atom.fullstack.customer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What the customer.dao and customer.service timers add to a call, with
+ * histograms and percentiles switched on as in application.properties. The
+ * DAO underneath is in memory so the instrumentation is not hidden by I/O.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CustomerMetricsOverheadBenchmark {
+
+    private CustomerDao plainDao;
+    private CustomerDao timedDao;
+    private CustomerService plainService;
+    private CustomerService timedService;
+
+    @Setup
+    public void setUp() {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        meterRegistry.config().meterFilter(new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                return DistributionStatisticConfig.builder()
+                        .percentilesHistogram(true)
+                        .percentiles(0.5, 0.95, 0.99)
+                        .build()
+                        .merge(config);
+            }
+        });
+        plainDao = new InMemoryCustomerDao();
+        plainDao.insertCustomer(new Customer("Customer", "customer@example.com", 30));
+        timedDao = new TimedCustomerDao(plainDao, "jdbc", meterRegistry);
+
+        plainService = new CustomerService(plainDao);
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(new CustomerService(timedDao));
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAspect(new CustomerServiceMetrics(meterRegistry,
+                new CustomerDaoProperties("jdbc", null, null)));
+        timedService = proxyFactory.getProxy();
+    }
+
+    @Benchmark
+    public Optional<Customer> plainDao() {
+        return plainDao.selectCustomerById(1L);
+    }
+
+    @Benchmark
+    public Optional<Customer> timedDao() {
+        return timedDao.selectCustomerById(1L);
+    }
+
+    @Benchmark
+    public Customer plainService() {
+        return plainService.getCustomerById(1L);
+    }
+
+    @Benchmark
+    public Customer timedService() {
+        return timedService.getCustomerById(1L);
+    }
+}
@@ -0,0 +1,104 @@
+package com.atom.fullstack.customer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Customer search at 10M rows: a prefix of an email, a prefix of a name, a
+ * misspelt name, and the same misspelt name with index scans switched off,
+ * which is what any server-side LIKE cost before the search indexes.
+ * <p>
+ * Seeding and indexing 10M rows takes a few minutes; point
+ * {@code -Dbenchmark.datasource.url} at a database that already has them to
+ * skip it on later runs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CustomerSearchBenchmark {
+
+    private static final String[] FIRST_NAMES = {
+            "Anna", "Ben", "Carla", "David", "Elena", "Felix", "Grace", "Hugo", "Iris", "Jonas",
+            "Katrin", "Liam", "Maria", "Noah", "Olga", "Paul", "Quinn", "Rosa", "Simon", "Tara"};
+    private static final String[] LAST_NAMES = {
+            "Smith", "Johnson", "Williams", "Brown", "Jones", "Miller", "Davis", "Garcia", "Wilson", "Moore",
+            "Taylor", "Anderson", "Thomas", "Jackson", "White", "Harris", "Martin", "Thompson", "Young", "King"};
+
+    @Param({"10000000"})
+    public int customers;
+
+    private BenchmarkDatabase database;
+    private CustomerDao customerDao;
+    private TransactionTemplate transactionTemplate;
+    private JdbcTemplate jdbcTemplate;
+
+    @Setup
+    public void setUp() {
+        database = BenchmarkDatabase.start(Map.of());
+        customerDao = database.context().getBean("jdbc", CustomerDao.class);
+        jdbcTemplate = database.context().getBean(JdbcTemplate.class);
+        transactionTemplate = new TransactionTemplate(database.context().getBean(PlatformTransactionManager.class));
+        Long existing = jdbcTemplate.queryForObject("SELECT count(*) FROM customer", Long.class);
+        if (existing == null || existing < customers) {
+            // generated server-side, sending 10M rows over JDBC would dominate the setup
+            jdbcTemplate.update("""
+                    INSERT INTO customer (name, email, age)
+                    SELECT (?::text[])[(1 + i % 20)::int] || ' ' || (?::text[])[(1 + i / 20 % 20)::int] || ' ' || i,
+                           'customer' || i || '@example.com',
+                           18 + i % 60
+                    FROM generate_series(?, ?) AS i
+                    """,
+                    FIRST_NAMES, LAST_NAMES, existing == null ? 1 : existing + 1, (long) customers);
+            jdbcTemplate.execute("VACUUM ANALYZE customer");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public List<CustomerSearchHit> emailPrefix() {
+        return customerDao.searchCustomers(new CustomerSearchQuery("customer424242"), null, 21);
+    }
+
+    @Benchmark
+    public List<CustomerSearchHit> namePrefix() {
+        return customerDao.searchCustomers(new CustomerSearchQuery("Grace Wilson 77"), null, 21);
+    }
+
+    @Benchmark
+    public List<CustomerSearchHit> misspeltName() {
+        return customerDao.searchCustomers(new CustomerSearchQuery("Grcae Wilsno 7731"), null, 21);
+    }
+
+    @Benchmark
+    public List<CustomerSearchHit> misspeltNameWithoutIndexes() {
+        return transactionTemplate.execute(status -> {
+            jdbcTemplate.execute("SET LOCAL enable_indexscan = off");
+            jdbcTemplate.execute("SET LOCAL enable_bitmapscan = off");
+            return customerDao.searchCustomers(new CustomerSearchQuery("Grcae Wilsno 7731"), null, 21);
+        });
+    }
+}
@@ -0,0 +1,86 @@
+package com.atom.fullstack.customer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link CustomerService} over {@link InMemoryCustomerDao}: validation, paging,
+ * mapping and logging, with the database taken out of the picture.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CustomerServiceBenchmark {
+
+    @Param({"10000"})
+    public int customers;
+
+    private final AtomicLong registrations = new AtomicLong();
+    private CustomerService customerService;
+    private String secondPage;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        // fresh data per iteration so inserts do not grow the maps without bound
+        customerService = new CustomerService(new InMemoryCustomerDao());
+        for (int i = 0; i < customers; i++) {
+            customerService.addCustomer(new CustomerRegistrationRequest(
+                    "Customer " + i, "customer" + i + "@example.com", 18 + i % 60));
+        }
+        secondPage = customerService.getCustomers(null, null, null).nextCursor();
+    }
+
+    @Benchmark
+    public Customer getCustomerById() {
+        return customerService.getCustomerById(randomId());
+    }
+
+    @Benchmark
+    public CustomerPage getFirstPage() {
+        return customerService.getCustomers(null, null, null);
+    }
+
+    @Benchmark
+    public CustomerPage getPageAfterCursor() {
+        return customerService.getCustomers(secondPage, null, null);
+    }
+
+    @Benchmark
+    public void addCustomer() {
+        long n = registrations.incrementAndGet();
+        customerService.addCustomer(new CustomerRegistrationRequest("New " + n, "new" + n + "@example.com", 30));
+    }
+
+    @Benchmark
+    public Customer updateCustomer() {
+        return customerService.updateCustomer(randomId(),
+                new CustomerUpdateRequest(null, null, ThreadLocalRandom.current().nextInt(18, 78)), null);
+    }
+
+    @Benchmark
+    public void exportCustomers(Blackhole blackhole) {
+        customerService.exportCustomers(blackhole::consume);
+    }
+
+    private long randomId() {
+        return ThreadLocalRandom.current().nextLong(1, customers + 1);
+    }
+}
@@ -0,0 +1,245 @@
+package com.atom.fullstack.customer;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.IntSummaryStatistics;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * {@link CustomerDao} over maps, so service benchmarks measure the service and
+ * not the database. Rows are copied in and out like a real store would.
+ */
+class InMemoryCustomerDao implements CustomerDao {
+
+    private final ConcurrentNavigableMap<Long, Customer> customers = new ConcurrentSkipListMap<>();
+    private final Map<String, Long> idsByEmail = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong changes = new AtomicLong();
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return customers.values().stream().map(InMemoryCustomerDao::copy).toList();
+    }
+
+    @Override
+    public List<Customer> selectCustomers(CustomerCursor cursor, int limit) {
+        Stream<Customer> rows = switch (cursor.sortKey()) {
+            case ID -> (cursor.isFirst() ? customers : customers.tailMap(cursor.lastId(), false)).values().stream();
+            case EMAIL -> customers.values().stream()
+                    .filter(customer -> cursor.isFirst() || customer.getEmail().compareTo(cursor.lastKey()) > 0)
+                    .sorted(Comparator.comparing(Customer::getEmail));
+        };
+        return rows.limit(limit).map(InMemoryCustomerDao::copy).toList();
+    }
+
+    @Override
+    public Stream<Customer> streamAllCustomers() {
+        return customers.values().stream().map(InMemoryCustomerDao::copy);
+    }
+
+    /**
+     * Prefix matches score 1, other substring matches 0.5: a stand-in for
+     * trigram similarity, good enough to exercise the service.
+     */
+    @Override
+    public List<CustomerSearchHit> searchCustomers(CustomerSearchQuery query, CustomerSearchCursor after, int limit) {
+        String text = query.prefixLow();
+        return customers.values().stream()
+                .map(customer -> {
+                    String name = customer.getName().toLowerCase(Locale.ROOT);
+                    String email = customer.getEmail().toLowerCase(Locale.ROOT);
+                    double score = name.startsWith(text) || email.startsWith(text) ? 1
+                            : name.contains(text) || email.contains(text) ? 0.5 : 0;
+                    return new CustomerSearchHit(copy(customer), score);
+                })
+                .filter(hit -> hit.score() > 0)
+                .filter(hit -> after == null || hit.score() < after.score()
+                        || (hit.score() == after.score() && hit.customer().getId() > after.lastId()))
+                .sorted(Comparator.comparingDouble(CustomerSearchHit::score).reversed()
+                        .thenComparing(hit -> hit.customer().getId()))
+                .limit(limit)
+                .toList();
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Long id) {
+        return Optional.ofNullable(customers.get(id)).map(InMemoryCustomerDao::copy);
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Long> ids) {
+        return ids.stream()
+                .map(customers::get)
+                .filter(Objects::nonNull)
+                .map(InMemoryCustomerDao::copy)
+                .toList();
+    }
+
+    @Override
+    public List<CustomerProjection> selectCustomerProjections(CustomerCursor cursor, int limit,
+                                                              CustomerFields fields) {
+        return selectCustomers(cursor, limit).stream()
+                .map(customer -> CustomerProjection.of(customer, fields))
+                .toList();
+    }
+
+    @Override
+    public Optional<CustomerProjection> selectCustomerProjectionById(Long id, CustomerFields fields) {
+        return Optional.ofNullable(customers.get(id)).map(customer -> CustomerProjection.of(customer, fields));
+    }
+
+    @Override
+    public List<CustomerProjection> selectCustomerProjectionsByIds(Collection<Long> ids, CustomerFields fields) {
+        return ids.stream()
+                .map(customers::get)
+                .filter(Objects::nonNull)
+                .map(customer -> CustomerProjection.of(customer, fields))
+                .toList();
+    }
+
+    @Override
+    public Optional<Long> selectCustomerVersion(Long id) {
+        return Optional.ofNullable(customers.get(id)).map(Customer::getVersion);
+    }
+
+    @Override
+    public long selectCustomersChangeCount() {
+        return changes.get();
+    }
+
+    @Override
+    public List<CustomerAgeBucket> selectCustomerAgeBuckets(int minAge, int maxAge, int bucketWidth) {
+        Map<Integer, List<Integer>> agesByBucket = customers.values().stream()
+                .map(Customer::getAge)
+                .filter(age -> age >= minAge && age <= maxAge)
+                .collect(Collectors.groupingBy(age -> Math.floorDiv(age, bucketWidth) * bucketWidth,
+                        TreeMap::new, Collectors.toList()));
+        return agesByBucket.entrySet().stream()
+                .map(bucket -> {
+                    IntSummaryStatistics ages = bucket.getValue().stream()
+                            .mapToInt(Integer::intValue)
+                            .summaryStatistics();
+                    return new CustomerAgeBucket(bucket.getKey(), ages.getCount(),
+                            ages.getMin(), ages.getMax(), ages.getSum());
+                })
+                .toList();
+    }
+
+    @Override
+    public long countCustomers(int minAge, int maxAge) {
+        return customers.values().stream()
+                .filter(customer -> customer.getAge() >= minAge && customer.getAge() <= maxAge)
+                .count();
+    }
+
+    @Override
+    public Optional<Long> estimateCustomerCount() {
+        return Optional.of((long) customers.size());
+    }
+
+    @Override
+    public boolean insertCustomer(Customer customer) {
+        long id = sequence.incrementAndGet();
+        if (idsByEmail.putIfAbsent(customer.getEmail(), id) != null) {
+            return false;
+        }
+        customer.setId(id);
+        customer.setVersion(0L);
+        customers.put(id, new Customer(id, customer.getName(), customer.getEmail(), customer.getAge(), 0L));
+        changes.incrementAndGet();
+        return true;
+    }
+
+    @Override
+    public void insertCustomers(List<Customer> customers) {
+        customers.forEach(this::insertCustomer);
+    }
+
+    @Override
+    public int insertCustomersIfEmailAbsent(List<Customer> customers) {
+        int inserted = 0;
+        for (Customer customer : customers) {
+            if (insertCustomer(customer)) {
+                inserted++;
+            }
+        }
+        return inserted;
+    }
+
+    @Override
+    public boolean existsCustomerByEmail(String email) {
+        return idsByEmail.containsKey(email);
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return emails.stream().filter(idsByEmail::containsKey).collect(Collectors.toSet());
+    }
+
+    @Override
+    public boolean existsCustomerById(Long id) {
+        return customers.containsKey(id);
+    }
+
+    @Override
+    public boolean deleteCustomer(Long id) {
+        Customer removed = customers.remove(id);
+        if (removed == null) {
+            return false;
+        }
+        idsByEmail.remove(removed.getEmail(), id);
+        changes.incrementAndGet();
+        return true;
+    }
+
+    @Override
+    public boolean deleteCustomerIfVersion(Long id, Long version) {
+        Customer current = customers.get(id);
+        if (current == null || !current.getVersion().equals(version) || !customers.remove(id, current)) {
+            return false;
+        }
+        idsByEmail.remove(current.getEmail(), id);
+        changes.incrementAndGet();
+        return true;
+    }
+
+    @Override
+    public Optional<Customer> updateCustomer(Customer update) {
+        Customer[] stored = new Customer[1];
+        customers.computeIfPresent(update.getId(), (id, current) -> {
+            if (update.getVersion() != null && !update.getVersion().equals(current.getVersion())) {
+                return current;
+            }
+            Customer next = new Customer(id,
+                    update.getName() != null ? update.getName() : current.getName(),
+                    update.getEmail() != null ? update.getEmail() : current.getEmail(),
+                    update.getAge() != null ? update.getAge() : current.getAge(),
+                    current.getVersion() + 1);
+            if (!next.getEmail().equals(current.getEmail())) {
+                idsByEmail.remove(current.getEmail(), id);
+                idsByEmail.put(next.getEmail(), id);
+            }
+            stored[0] = next;
+            changes.incrementAndGet();
+            return next;
+        });
+        return Optional.ofNullable(stored[0]).map(InMemoryCustomerDao::copy);
+    }
+
+    private static Customer copy(Customer customer) {
+        return new Customer(customer.getId(), customer.getName(), customer.getEmail(), customer.getAge(),
+                customer.getVersion());
+    }
+}
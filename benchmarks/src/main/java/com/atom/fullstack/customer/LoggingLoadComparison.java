@@ -0,0 +1,125 @@
+package com.atom.fullstack.customer;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Throughput of customer lookups with the logging we had (Boot's console
+ * pattern, SQL and web DEBUG on) against the prod profile (JSON through an
+ * async appender, sampled service events, stackless 404s). One lookup in five
+ * misses, so the 404 path is part of the load. Both runs use the current
+ * code, so this measures the configuration only; the lookups themselves no
+ * longer log at INFO or fill in stack traces either way.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar com.atom.fullstack.customer.LoggingLoadComparison > app.log
+ * </pre>
+ * <p>
+ * The applications log to stdout as they would in a container, so send it to
+ * a file; the report goes to stderr.
+ */
+public final class LoggingLoadComparison {
+
+    private static final int CUSTOMERS = 1_000;
+    private static final int CONCURRENCY = 32;
+    private static final Duration WARMUP = Duration.ofSeconds(10);
+    private static final Duration MEASUREMENT = Duration.ofSeconds(30);
+
+    private LoggingLoadComparison() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> report = new ArrayList<>();
+        report.add(run("today", Map.of(
+                "spring.jpa.show-sql", "true",
+                "logging.level.org.springframework.web", "DEBUG")));
+        report.add(run("prod", Map.of(
+                "spring.profiles.active", "prod")));
+        System.err.println();
+        report.forEach(System.err::println);
+    }
+
+    private static String run(String mode, Map<String, Object> modeProperties) throws Exception {
+        Map<String, Object> properties = new HashMap<>(modeProperties);
+        properties.put("server.port", "0");
+        // the benchmarks' own logback.xml would win over the application's
+        properties.put("logging.config", "classpath:logback-spring.xml");
+        properties.put("customer.limit.enabled", "false");
+        try (BenchmarkDatabase database = BenchmarkDatabase.start(WebApplicationType.SERVLET, properties)) {
+            ConfigurableApplicationContext context = database.context();
+            CustomerDao customerDao = context.getBean("jdbc", CustomerDao.class);
+            List<Long> ids = new ArrayList<>(CUSTOMERS);
+            String run = UUID.randomUUID().toString();
+            for (int i = 0; i < CUSTOMERS; i++) {
+                Customer customer = new Customer("Logged " + i, "logged-" + i + "-" + run + "@example.com", 30);
+                customerDao.insertCustomer(customer);
+                ids.add(customer.getId());
+            }
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            HttpClient client = HttpClient.newHttpClient();
+
+            load(client, baseUrl, ids, WARMUP, new ArrayList<>(), new AtomicInteger());
+            List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+            AtomicInteger failures = new AtomicInteger();
+            load(client, baseUrl, ids, MEASUREMENT, latencies, failures);
+
+            return "%-6s %,.0f requests/s p50=%.2fms p99=%.2fms failed=%d"
+                    .formatted(mode + ":", latencies.size() / (double) MEASUREMENT.toSeconds(),
+                            percentile(latencies, 0.5) / 1e6, percentile(latencies, 0.99) / 1e6,
+                            failures.get());
+        }
+    }
+
+    /**
+     * Keeps {@link #CONCURRENCY} lookups in flight for the duration. A 404 for
+     * a missing id counts as a success, it is the answer we asked for.
+     */
+    private static void load(HttpClient client, String baseUrl, List<Long> ids, Duration duration,
+                             List<Long> latencies, AtomicInteger failures) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(CONCURRENCY);
+        long end = System.nanoTime() + duration.toNanos();
+        while (System.nanoTime() < end) {
+            inFlight.acquire();
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long id = random.nextInt(5) == 0 ? -1 - random.nextInt(CUSTOMERS) : ids.get(random.nextInt(ids.size()));
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/v1/customer/" + id))
+                    .GET()
+                    .build();
+            long start = System.nanoTime();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        if (error == null && (response.statusCode() == 200 || response.statusCode() == 404)) {
+                            latencies.add(System.nanoTime() - start);
+                        } else {
+                            failures.incrementAndGet();
+                        }
+                        inFlight.release();
+                    });
+        }
+        inFlight.acquire(CONCURRENCY);
+    }
+
+    private static long percentile(List<Long> latencies, double percentile) {
+        if (latencies.isEmpty()) {
+            return 0;
+        }
+        List<Long> sorted = latencies.stream().sorted().toList();
+        int index = (int) Math.ceil(percentile * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1)));
+    }
+}
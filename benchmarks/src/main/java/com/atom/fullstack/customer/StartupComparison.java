@@ -0,0 +1,136 @@
+package com.atom.fullstack.customer;
+
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.Network;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.containers.wait.strategy.AbstractWaitStrategy;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Time to first successful customer request and heap in use right after, for
+ * the plain image against the AOT and CDS one ({@code mvn -Pcds verify}). Each
+ * image is started {@link #RUNS} times under a 512MB memory limit, next to a
+ * Postgres it shares with no other run, and the medians are reported.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar com.atom.fullstack.customer.StartupComparison
+ * </pre>
+ * <p>
+ * {@code -Dstartup.images=a,b} compares other images.
+ */
+public final class StartupComparison {
+
+    private static final String IMAGES = "iatom/atom-api:1.0-SNAPSHOT,iatom/atom-api:1.0-SNAPSHOT-cds";
+    private static final int RUNS = 5;
+    private static final long MEMORY_LIMIT = 512L * 1024 * 1024;
+    private static final Duration TIMEOUT = Duration.ofMinutes(2);
+    private static final Pattern MEASUREMENT = Pattern.compile("\"value\"\\s*:\\s*([0-9.eE+-]+)");
+
+    private StartupComparison() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> report = new ArrayList<>();
+        for (String image : System.getProperty("startup.images", IMAGES).split(",")) {
+            List<Run> runs = new ArrayList<>();
+            for (int i = 0; i < RUNS; i++) {
+                runs.add(run(image.trim()));
+            }
+            report.add("%s: first request %.0fms, ready (as reported) %.0fms, heap used %.1fMB"
+                    .formatted(image.trim(),
+                            median(runs.stream().map(Run::firstRequestMillis).toList()),
+                            median(runs.stream().map(Run::readyMillis).toList()),
+                            median(runs.stream().map(Run::heapBytes).toList()) / (1024 * 1024)));
+        }
+        report.forEach(System.out::println);
+    }
+
+    private static Run run(String image) throws Exception {
+        try (Network network = Network.newNetwork();
+             PostgreSQLContainer<?> database = new PostgreSQLContainer<>("postgres:16.2")
+                     .withNetwork(network)
+                     .withNetworkAliases("db")
+                     .withDatabaseName("customers")
+                     .withUsername("atom")
+                     .withPassword("atom")) {
+            database.start();
+            try (GenericContainer<?> application = new GenericContainer<>(image)
+                    .withNetwork(network)
+                    .withExposedPorts(8080)
+                    .withEnv("SPRING_DATASOURCE_URL", "jdbc:postgresql://db:5432/customers")
+                    .withEnv("SPRING_DATASOURCE_USERNAME", "atom")
+                    .withEnv("SPRING_DATASOURCE_PASSWORD", "atom")
+                    .withCreateContainerCmdModifier(command -> command.getHostConfig()
+                            .withMemory(MEMORY_LIMIT)
+                            .withMemorySwap(MEMORY_LIMIT))
+                    // we time readiness ourselves
+                    .waitingFor(new AbstractWaitStrategy() {
+                        @Override
+                        protected void waitUntilReady() {
+                        }
+                    })) {
+                long start = System.nanoTime();
+                application.start();
+                String baseUrl = "http://" + application.getHost() + ":" + application.getMappedPort(8080);
+                HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+                long firstRequest = firstSuccess(client, baseUrl + "/api/v1/customer?size=1", start);
+                double heap = metric(client, baseUrl + "/actuator/metrics/jvm.memory.used?tag=area:heap");
+                double ready = metric(client, baseUrl + "/actuator/metrics/application.ready.time");
+                return new Run(firstRequest / 1e6, ready * 1000, heap);
+            }
+        }
+    }
+
+    /**
+     * Nanoseconds from {@code start} until {@code url} first answers 200,
+     * polled about every 10ms.
+     */
+    private static long firstSuccess(HttpClient client, String url, long start) throws InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url)).GET().build();
+        long deadline = start + TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline) {
+            try {
+                if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return System.nanoTime() - start;
+                }
+            } catch (IOException e) {
+                // not listening yet
+            }
+            Thread.sleep(10);
+        }
+        throw new IllegalStateException(url + " did not answer within " + TIMEOUT);
+    }
+
+    private static double metric(HttpClient client, String url) throws Exception {
+        String body = client.send(HttpRequest.newBuilder(URI.create(url)).GET().build(),
+                HttpResponse.BodyHandlers.ofString()).body();
+        Matcher matcher = MEASUREMENT.matcher(body);
+        if (!matcher.find()) {
+            throw new IllegalStateException("No measurement in " + url + ": " + body);
+        }
+        return Double.parseDouble(matcher.group(1));
+    }
+
+    private static double median(List<Double> values) {
+        List<Double> sorted = values.stream().sorted().toList();
+        int middle = sorted.size() / 2;
+        return sorted.size() % 2 == 1 ? sorted.get(middle) : (sorted.get(middle - 1) + sorted.get(middle)) / 2;
+    }
+
+    /**
+     * {@code readyMillis} is the application's own application.ready.time,
+     * which leaves out JVM startup and class loading before main.
+     */
+    private record Run(double firstRequestMillis, double readyMillis, double heapBytes) {
+    }
+}
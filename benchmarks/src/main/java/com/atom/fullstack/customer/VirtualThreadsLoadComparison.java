@@ -0,0 +1,141 @@
+package com.atom.fullstack.customer;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.sql.DataSource;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Replays a slow-Postgres incident against the application in platform-thread
+ * and virtual-thread mode and reports how customer requests and a health check
+ * that never touches the database fare. The incident is a transaction holding
+ * an exclusive lock on the customer table, so every customer query blocks
+ * until it ends.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar com.atom.fullstack.customer.VirtualThreadsLoadComparison
+ * </pre>
+ * <p>
+ * Both modes get the same pool (20 connections, 2s wait) so the thread model
+ * is the only difference. Virtual-thread mode is skipped below Java 21.
+ */
+public final class VirtualThreadsLoadComparison {
+
+    private static final int CUSTOMER_REQUESTS = 600;
+    private static final Duration INCIDENT = Duration.ofSeconds(10);
+    private static final Duration PING_INTERVAL = Duration.ofMillis(100);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private VirtualThreadsLoadComparison() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> report = new ArrayList<>();
+        report.add(run(false));
+        if (Runtime.version().feature() >= 21) {
+            report.add(run(true));
+        } else {
+            report.add("virtual: skipped, needs Java 21 (running " + Runtime.version() + ")");
+        }
+        System.out.println();
+        report.forEach(System.out::println);
+    }
+
+    private static String run(boolean virtualThreads) throws Exception {
+        Map<String, Object> properties = Map.of(
+                "server.port", "0",
+                "atom.virtual-threads.enabled", String.valueOf(virtualThreads),
+                "spring.datasource.hikari.maximum-pool-size", "20",
+                "spring.datasource.hikari.connection-timeout", "2000");
+        try (BenchmarkDatabase database = BenchmarkDatabase.start(WebApplicationType.SERVLET, properties)) {
+            ConfigurableApplicationContext context = database.context();
+            Customer customer = new Customer("Load", "load-" + UUID.randomUUID() + "@example.com", 30);
+            context.getBean("jdbc", CustomerDao.class).insertCustomer(customer);
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            HttpClient client = HttpClient.newBuilder().connectTimeout(REQUEST_TIMEOUT).build();
+
+            CompletableFuture<Void> incident = CompletableFuture.runAsync(
+                    () -> holdCustomerTableLock(context.getBean(DataSource.class)));
+            // let the lock land before the load starts
+            Thread.sleep(500);
+
+            List<Long> customerLatencies = Collections.synchronizedList(new ArrayList<>());
+            AtomicInteger customerFailures = new AtomicInteger();
+            List<CompletableFuture<?>> customerCalls = new ArrayList<>(CUSTOMER_REQUESTS);
+            for (int i = 0; i < CUSTOMER_REQUESTS; i++) {
+                customerCalls.add(timed(client, baseUrl + "/api/v1/customer/" + customer.getId(),
+                        customerLatencies, customerFailures));
+            }
+
+            List<Long> pingLatencies = Collections.synchronizedList(new ArrayList<>());
+            AtomicInteger pingFailures = new AtomicInteger();
+            List<CompletableFuture<?>> pings = new ArrayList<>();
+            while (!incident.isDone()) {
+                pings.add(timed(client, baseUrl + "/actuator/health/ping", pingLatencies, pingFailures));
+                Thread.sleep(PING_INTERVAL.toMillis());
+            }
+            CompletableFuture.allOf(customerCalls.toArray(CompletableFuture[]::new)).join();
+            CompletableFuture.allOf(pings.toArray(CompletableFuture[]::new)).join();
+
+            return "%-8s customers ok=%d failed=%d p50=%dms p99=%dms | health ping ok=%d failed=%d p50=%dms p99=%dms max=%dms"
+                    .formatted(virtualThreads ? "virtual:" : "platform:",
+                            customerLatencies.size(), customerFailures.get(),
+                            percentile(customerLatencies, 0.5), percentile(customerLatencies, 0.99),
+                            pingLatencies.size(), pingFailures.get(),
+                            percentile(pingLatencies, 0.5), percentile(pingLatencies, 0.99),
+                            percentile(pingLatencies, 1));
+        }
+    }
+
+    private static void holdCustomerTableLock(DataSource dataSource) {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            connection.setAutoCommit(false);
+            statement.execute("LOCK TABLE customer IN ACCESS EXCLUSIVE MODE");
+            Thread.sleep(INCIDENT.toMillis());
+            connection.rollback();
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static CompletableFuture<?> timed(HttpClient client, String url,
+                                              List<Long> latencies, AtomicInteger failures) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url)).timeout(REQUEST_TIMEOUT).GET().build();
+        long start = System.nanoTime();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .handle((response, error) -> {
+                    if (error == null && response.statusCode() == 200) {
+                        latencies.add(Duration.ofNanos(System.nanoTime() - start).toMillis());
+                    } else {
+                        failures.incrementAndGet();
+                    }
+                    return null;
+                });
+    }
+
+    private static long percentile(List<Long> latencies, double percentile) {
+        if (latencies.isEmpty()) {
+            return 0;
+        }
+        List<Long> sorted = latencies.stream().sorted().toList();
+        int index = (int) Math.ceil(percentile * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1)));
+    }
+}